@@ -1,15 +1,17 @@
 package pl.maciejpajak.api;
 
-import java.util.Collection;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import pl.maciejpajak.dto.BetDto;
 import pl.maciejpajak.service.BetService;
+import pl.maciejpajak.service.BetSnapshotCache;
 
 @RestController
 @RequestMapping("/bets")
@@ -17,9 +19,12 @@ public class BetApi {
     
     private final BetService betService;
     
+    private final BetSnapshotCache betSnapshotCache;
+    
     @Autowired
-    public BetApi(BetService betService) {
+    public BetApi(BetService betService, BetSnapshotCache betSnapshotCache) {
         this.betService = betService;
+        this.betSnapshotCache = betSnapshotCache;
     }
     
     @GetMapping("/{betId}")
@@ -28,8 +33,10 @@ public class BetApi {
     }
 
     @GetMapping("/by-game/{gameId}")
-    private Collection<BetDto> getBetableBetsByGame(@PathVariable(name = "gameId", required = true) Long gameId) {
-        return betService.findAllBetableByGameIdAndVisible(gameId);
+    private ResponseEntity<byte[]> getBetableBetsByGame(@PathVariable(name = "gameId", required = true) Long gameId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return JsonSnapshotResponses.toResponse(betSnapshotCache.getBetableBets(gameId), ifNoneMatch, acceptEncoding);
     }
     
 }
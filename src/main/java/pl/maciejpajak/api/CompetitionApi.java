@@ -1,14 +1,14 @@
 package pl.maciejpajak.api;
 
-import java.util.Collection;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import pl.maciejpajak.domain.game.Competition;
 import pl.maciejpajak.service.CompetitionService;
 
 @RestController
@@ -23,10 +23,12 @@ public class CompetitionApi {
     }
 
     @GetMapping("/all")
-    public Collection<Competition> getAllCompetitions(
+    public ResponseEntity<byte[]> getAllCompetitions(
             @RequestParam(name = "sportId", required = false) Long sportId,
-            @RequestParam(name = "scopeId", required = false) Long scopeId) {
-        return competitionService.findAllCompetitions(sportId, scopeId);
+            @RequestParam(name = "scopeId", required = false) Long scopeId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return JsonSnapshotResponses.toResponse(competitionService.findAllCompetitionsJson(sportId, scopeId), ifNoneMatch, acceptEncoding);
     }
     
 }
@@ -1,21 +1,29 @@
 package pl.maciejpajak.api;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 
 import javax.validation.Valid;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import pl.maciejpajak.domain.util.CouponStatus;
 import pl.maciejpajak.dto.BidAmountBonusDto;
+import pl.maciejpajak.dto.CouponHistoryPageDto;
 import pl.maciejpajak.dto.CouponPlaceDto;
 import pl.maciejpajak.dto.CouponShowDto;
 import pl.maciejpajak.dto.GroupCouponPlaceDto;
 import pl.maciejpajak.security.CurrentUser;
+import pl.maciejpajak.service.CouponHistoryService;
 import pl.maciejpajak.service.CouponService;
 
 @RestController
@@ -24,8 +32,11 @@ public class CouponApi {
     
     private final CouponService couponService;
     
-    public CouponApi(CouponService couponService) {
+    private final CouponHistoryService couponHistoryService;
+    
+    public CouponApi(CouponService couponService, CouponHistoryService couponHistoryService) {
         this.couponService = couponService;
+        this.couponHistoryService = couponHistoryService;
     }
     
     @GetMapping("/all-individual")
@@ -48,6 +59,41 @@ public class CouponApi {
         return couponService.findInvitedGroupCoupons(user.getId());
     }
 
+    @GetMapping("/{couponId}")
+    public CouponShowDto findCoupon(@PathVariable(name = "couponId", required = true) Long couponId, 
+            @AuthenticationPrincipal CurrentUser user) {
+        return couponService.findOneCoupon(couponId, user.getId());
+    }
+
+    /**
+     * Page of individual coupons, newest first. Next page is requested with {@code beforeCreated} and {@code beforeId}
+     * taken from {@code nextCreated} and {@code nextId} of previous page.
+     */
+    @GetMapping("/history/individual")
+    public CouponHistoryPageDto findIndividualCouponHistory(@AuthenticationPrincipal CurrentUser user,
+            @RequestParam(name = "status", required = false) Collection<CouponStatus> status,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "beforeCreated", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime beforeCreated,
+            @RequestParam(name = "beforeId", required = false) Long beforeId,
+            @RequestParam(name = "size", required = false) Integer size) {
+        return couponHistoryService.findCouponHistory(user.getId(), false, status, from, to, beforeCreated, beforeId, size);
+    }
+    
+    /**
+     * Page of group coupons owned by user or user was invited to, newest first.
+     */
+    @GetMapping("/history/group")
+    public CouponHistoryPageDto findGroupCouponHistory(@AuthenticationPrincipal CurrentUser user,
+            @RequestParam(name = "status", required = false) Collection<CouponStatus> status,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "beforeCreated", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime beforeCreated,
+            @RequestParam(name = "beforeId", required = false) Long beforeId,
+            @RequestParam(name = "size", required = false) Integer size) {
+        return couponHistoryService.findCouponHistory(user.getId(), true, status, from, to, beforeCreated, beforeId, size);
+    }
+
     @PostMapping("/create")
     public void createCoupon(@RequestBody @Valid CouponPlaceDto couponDto, @AuthenticationPrincipal CurrentUser principal) {
         couponService.createCoupon(couponDto, principal.getId());
@@ -1,9 +1,17 @@
 package pl.maciejpajak.api;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -11,6 +19,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import pl.maciejpajak.domain.util.EventType;
 import pl.maciejpajak.dto.EventDto;
 import pl.maciejpajak.engine.EventProcessor;
@@ -26,13 +36,55 @@ import pl.maciejpajak.engine.SubscriptionMailGenerator;
 @RequestMapping("/demo")
 public class EventReceiveRestController {
     
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int NDJSON_CHUNK_SIZE = 500;
+    
     @Autowired
     private EventProcessor eventProcessor;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("/feed-event")
     @ResponseStatus(value = HttpStatus.OK)
-    public void feedEvent(@RequestBody EventDto eventDto) {
-        eventProcessor.process(eventDto);
+    public CompletableFuture<Void> feedEvent(@RequestBody EventDto eventDto) {
+        return eventProcessor.process(eventDto);
+    }
+    
+    /**
+     * Receives batch of events as JSON array. Responds when events are saved, so feed can resend them on error.
+     */
+    @PostMapping(value = "/feed-events", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(value = HttpStatus.OK)
+    public CompletableFuture<Void> feedEvents(@RequestBody List<EventDto> events) {
+        return eventProcessor.processAll(events);
+    }
+    
+    /**
+     * Receives stream of events as newline delimited JSON, events are processed in chunks while stream is read.
+     */
+    @PostMapping(value = "/feed-events", consumes = NDJSON_VALUE)
+    @ResponseStatus(value = HttpStatus.OK)
+    public CompletableFuture<Void> feedEventsStream(HttpServletRequest request) throws IOException {
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        List<EventDto> chunk = new ArrayList<>(NDJSON_CHUNK_SIZE);
+        try (BufferedReader reader = request.getReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                chunk.add(objectMapper.readValue(line, EventDto.class));
+                if (chunk.size() == NDJSON_CHUNK_SIZE) {
+                    results.add(eventProcessor.processAll(chunk));
+                    chunk = new ArrayList<>(NDJSON_CHUNK_SIZE);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.add(eventProcessor.processAll(chunk));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]));
     }
     
     @GetMapping("/show-example")
@@ -2,16 +2,22 @@ package pl.maciejpajak.api;
 
 import java.util.Collection;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import pl.maciejpajak.domain.game.Game;
 import pl.maciejpajak.domain.game.score.GameScore;
 import pl.maciejpajak.domain.game.score.PartScore;
 import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.engine.LiveGameFeed;
 import pl.maciejpajak.service.GameService;
 
 @RestController
@@ -20,8 +26,11 @@ public class GameApi {
     
     private final GameService gameService;
     
-    public GameApi(GameService gameService) {
+    private final LiveGameFeed liveGameFeed;
+    
+    public GameApi(GameService gameService, LiveGameFeed liveGameFeed) {
         this.gameService = gameService;
+        this.liveGameFeed = liveGameFeed;
     }
     
     @GetMapping("/{gameId}")
@@ -40,21 +49,36 @@ public class GameApi {
         return gameService.findLatestPartScore(gameId, partId);
     }
     
+    /**
+     * Streams score, closed bets and odds changes of game as server-sent events.
+     */
+    @GetMapping(path = "/{gameId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private SseEmitter streamGame(@PathVariable(name = "gameId", required = true) Long gameId) {
+        return liveGameFeed.subscribeGame(gameId);
+    }
+    
+    /**
+     * Streams changes of all live games of competition as server-sent events.
+     */
+    @GetMapping(path = "/live/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private SseEmitter streamCompetition(@RequestParam(name = "competitionId", required = true) Long competitionId) {
+        return liveGameFeed.subscribeCompetition(competitionId);
+    }
+    
     @GetMapping("/live")
-    private Collection<Game> getAllLiveGamesByCompetition(@RequestParam(name = "competitionId", required = false) Long competitionId) {
-        return gameService.getAllLiveGamesByCompetition(competitionId);
+    private ResponseEntity<byte[]> getAllLiveGamesByCompetition(@RequestParam(name = "competitionId", required = false) Long competitionId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return JsonSnapshotResponses.toResponse(gameService.getAllLiveGamesByCompetitionJson(competitionId), ifNoneMatch, acceptEncoding);
     }
     
     @GetMapping("/all")
-    private Collection<Game> getAllGames(
+    private ResponseEntity<byte[]> getAllGames(
             @RequestParam(name = "status", required = false) Collection<GameStatus> status,
-            @RequestParam(name = "competitionId", required = false) Long competitionId) {
-        
-        if (competitionId == null) {
-            return gameService.findAll();
-        } else {
-            return gameService.findAllByCompetitionId(competitionId);
-        }
+            @RequestParam(name = "competitionId", required = false) Long competitionId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return JsonSnapshotResponses.toResponse(gameService.findAllJson(status, competitionId), ifNoneMatch, acceptEncoding);
     }
 
 }
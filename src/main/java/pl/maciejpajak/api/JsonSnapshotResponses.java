@@ -0,0 +1,60 @@
+package pl.maciejpajak.api;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import pl.maciejpajak.service.JsonSnapshot;
+
+/**
+ * Builds responses from {@link JsonSnapshot}: body as is, or gzipped when client accepts it, 
+ * 304 when {@code If-None-Match} matches ETag of chosen representation.
+ * 
+ * @author mac
+ *
+ */
+public final class JsonSnapshotResponses {
+
+    private JsonSnapshotResponses() {}
+    
+    public static ResponseEntity<byte[]> toResponse(JsonSnapshot snapshot, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = snapshot.getGzippedBody() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? snapshot.getGzippedEtag() : snapshot.getEtag();
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzippedBody());
+        }
+        return builder.body(snapshot.getBody());
+    }
+    
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            // gzip applied by proxies weakens ETag, weak comparison is enough for If-None-Match
+            if (t.startsWith("W/")) {
+                t = t.substring(2);
+            }
+            if (t.equals("*") || t.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -4,13 +4,18 @@ import java.util.Collection;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import pl.maciejpajak.domain.notification.Notification;
 import pl.maciejpajak.security.CurrentUser;
 import pl.maciejpajak.service.NotificationService;
+import pl.maciejpajak.service.NotificationStreamRegistry;
 
 @RestController
 @RequestMapping("/notifications")
@@ -19,8 +24,22 @@ public class NotificationApi {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private NotificationStreamRegistry notificationStreamRegistry;
+    
     @GetMapping("/unread")
     public Collection<Notification> getAllUnread(@AuthenticationPrincipal CurrentUser principal) {
         return notificationService.getUsersUnreadNotifications(principal.getId());
     }
+    
+    /**
+     * Streams notifications of current user as server-sent events. Reconnecting client sends id of last
+     * received notification in {@code Last-Event-ID} header (or {@code lastId} parameter) and gets only newer ones.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@AuthenticationPrincipal CurrentUser principal,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(name = "lastId", required = false) Long lastId) {
+        return notificationStreamRegistry.subscribe(principal.getId(), lastEventId != null ? lastEventId : lastId);
+    }
 }
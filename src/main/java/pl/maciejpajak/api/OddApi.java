@@ -1,29 +1,55 @@
 package pl.maciejpajak.api;
 
+import java.util.List;
+
+import javax.validation.Valid;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import pl.maciejpajak.domain.bet.Odd;
+import pl.maciejpajak.dto.OddShowDto;
+import pl.maciejpajak.dto.OddsPublishDto;
 import pl.maciejpajak.exception.BaseEntityNotFoundException;
-import pl.maciejpajak.repository.OddRepository;
+import pl.maciejpajak.service.LatestOddCache;
+import pl.maciejpajak.service.OddService;
 
 @RestController
 @RequestMapping("/odds")
 public class OddApi {
     
-    private final OddRepository oddRepository;
+    private final LatestOddCache latestOddCache;
+    private final OddService oddService;
     
     @Autowired
-    public OddApi(OddRepository oddRepository) {
-        this.oddRepository = oddRepository;
+    public OddApi(LatestOddCache latestOddCache, OddService oddService) {
+        this.latestOddCache = latestOddCache;
+        this.oddService = oddService;
+    }
+    
+    /**
+     * Publishes batch of odds.
+     * @return current odds of published bet options, with versions
+     */
+    @PostMapping
+    public List<OddShowDto> publishOdds(@RequestBody @Valid OddsPublishDto oddsDto) {
+        return oddService.publish(oddsDto.getOdds());
     }
 
     @GetMapping("/{betOptionId}")
-    public Odd getNewestOddByBetId(@PathVariable(name = "betOptionId", required = true) Long betOptionId) {
-        return oddRepository.findFirstByBetOptionIdOrderByCreatedDesc(betOptionId).orElseThrow(() -> new BaseEntityNotFoundException(betOptionId));
+    public OddShowDto getNewestOddByBetId(@PathVariable(name = "betOptionId", required = true) Long betOptionId) {
+        return latestOddCache.find(betOptionId)
+                .map(o -> {
+                    OddShowDto dto = new OddShowDto();
+                    dto.setId(o.getOddId());
+                    dto.setValue(o.getValue());
+                    return dto;
+                })
+                .orElseThrow(() -> new BaseEntityNotFoundException(betOptionId));
     }
     
 }
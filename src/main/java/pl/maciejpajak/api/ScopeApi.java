@@ -9,27 +9,27 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import pl.maciejpajak.domain.game.Scope;
-import pl.maciejpajak.repository.ScopeRepository;
+import pl.maciejpajak.service.CatalogCache;
 
 @RestController
 @RequestMapping("/scopes")
 public class ScopeApi {
     
-    private final ScopeRepository scopeRepository;
+    private final CatalogCache catalogCache;
     
     @Autowired
-    public ScopeApi(ScopeRepository scopeRepository) {
-        this.scopeRepository = scopeRepository;
+    public ScopeApi(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
     }
 
     @GetMapping("/all")
     public Collection<Scope> getAllScopes() {
-        return scopeRepository.findAllByVisible(true);
+        return catalogCache.getScopes();
     }
     
     @GetMapping("/allForSport")
     public Collection<Scope> getAllScopesBySport(@RequestParam(name = "sportId", required = true) Long sportId) {
-        return scopeRepository.findAllByCompetitonsSportIdAndVisible(sportId, true);
+        return catalogCache.getScopesBySport(sportId);
     }
 
 }
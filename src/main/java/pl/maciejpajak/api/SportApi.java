@@ -8,22 +8,22 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import pl.maciejpajak.domain.game.Sport;
-import pl.maciejpajak.repository.SportRepository;
+import pl.maciejpajak.service.CatalogCache;
 
 @RestController
 @RequestMapping("/sports")
 public class SportApi {
     
-    private final SportRepository sportRepository;
+    private final CatalogCache catalogCache;
     
     @Autowired
-    public SportApi(SportRepository sportRepository) {
-        this.sportRepository = sportRepository;
+    public SportApi(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
     }
 
     @GetMapping("/all")
     public Collection<Sport> getAllSports() {
-        return sportRepository.findAllByVisible(true);
+        return catalogCache.getSports();
     }
     
 }
@@ -1,10 +1,100 @@
 package pl.maciejpajak.config;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurerSupport;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 @EnableAsync
-public class AsyncConfig {
+public class AsyncConfig extends AsyncConfigurerSupport {
+    
+    public static final String SETTLEMENT_EXECUTOR = "settlementExecutor";
+    
+    public static final String ASYNC_EXECUTOR = "asyncExecutor";
+    
+    public static final String SETTLEMENT_COORDINATOR_EXECUTOR = "settlementCoordinatorExecutor";
+    
+    @Value("${settlement.executor.pool-size:0}")
+    private int settlementPoolSize;
+    
+    @Value("${settlement.executor.queue-capacity:64}")
+    private int settlementQueueCapacity;
+    
+    @Value("${settlement.coordinator.pool-size:2}")
+    private int coordinatorPoolSize;
+    
+    @Value("${settlement.coordinator.queue-capacity:" + Integer.MAX_VALUE + "}")
+    private int coordinatorQueueCapacity;
+    
+    @Value("${async.executor.pool-size:4}")
+    private int asyncPoolSize;
+    
+    @Value("${async.executor.queue-capacity:100}")
+    private int asyncQueueCapacity;
 
+    /**
+     * Executor for bet settlement partitions. Pool and queue are bounded, when both are full
+     * partition is run by submitting thread, which slows down producer instead of dropping work.
+     * Pool size defaults to number of available processors.
+     */
+    @Bean(name = SETTLEMENT_EXECUTOR)
+    public ThreadPoolTaskExecutor settlementExecutor() {
+        int poolSize = settlementPoolSize > 0 ? settlementPoolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(settlementQueueCapacity);
+        executor.setThreadNamePrefix("settlement-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+    
+    /**
+     * Executor for settlement coordinators ({@link pl.maciejpajak.engine.BetResolver#resolve}). Kept apart from 
+     * settlement executor, coordinators block waiting for their partitions and would starve partition pool if they shared it.
+     * Coordinator is never run by calling thread, which is lane of live events; runs wait in queue and when queue is full
+     * they are rejected with {@link org.springframework.core.task.TaskRejectedException}.
+     */
+    @Bean(name = SETTLEMENT_COORDINATOR_EXECUTOR)
+    public ThreadPoolTaskExecutor settlementCoordinatorExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coordinatorPoolSize);
+        executor.setMaxPoolSize(coordinatorPoolSize);
+        executor.setQueueCapacity(coordinatorQueueCapacity);
+        executor.setThreadNamePrefix("settlement-coordinator-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+    
+    /**
+     * Executor for other {@code @Async} methods. When pool and queue are full, call is run by calling thread.
+     */
+    @Bean(name = ASYNC_EXECUTOR)
+    public ThreadPoolTaskExecutor asyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncPoolSize);
+        executor.setMaxPoolSize(asyncPoolSize);
+        executor.setQueueCapacity(asyncQueueCapacity);
+        executor.setThreadNamePrefix("async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+    
+    @Override
+    public Executor getAsyncExecutor() {
+        return asyncExecutor();
+    }
+    
 }
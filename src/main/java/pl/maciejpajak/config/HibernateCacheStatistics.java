@@ -0,0 +1,92 @@
+package pl.maciejpajak.config;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hit and miss counts of second-level and query cache, read from Hibernate statistics.
+ * Counts are zero when {@code hibernate.generate_statistics} is off.
+ *
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=HibernateCacheStatistics", description = "Second-level and query cache statistics")
+public class HibernateCacheStatistics {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @PostConstruct
+    public void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ManagedAttribute(description = "Number of entities and collections found in second-level cache")
+    public long getSecondLevelCacheHitCount() {
+        return statistics.getSecondLevelCacheHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of entities and collections not found in second-level cache")
+    public long getSecondLevelCacheMissCount() {
+        return statistics.getSecondLevelCacheMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of entities and collections put into second-level cache")
+    public long getSecondLevelCachePutCount() {
+        return statistics.getSecondLevelCachePutCount();
+    }
+
+    @ManagedAttribute(description = "Number of query results found in query cache")
+    public long getQueryCacheHitCount() {
+        return statistics.getQueryCacheHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of query results not found in query cache")
+    public long getQueryCacheMissCount() {
+        return statistics.getQueryCacheMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of query results put into query cache")
+    public long getQueryCachePutCount() {
+        return statistics.getQueryCachePutCount();
+    }
+
+    /**
+     * @return hits, misses, puts and entries in memory of every region, by region name
+     */
+    @ManagedAttribute(description = "Hits, misses, puts and entries in memory of every region")
+    public Map<String, String> getRegions() {
+        Map<String, String> regions = new TreeMap<>();
+        Arrays.stream(statistics.getSecondLevelCacheRegionNames()).forEach(name -> {
+            SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(name);
+            if (region == null) {
+                return;
+            }
+            regions.put(name, String.format("hits = %d, misses = %d, puts = %d, in memory = %d",
+                    region.getHitCount(), region.getMissCount(), region.getPutCount(), region.getElementCountInMemory()));
+        });
+        return regions;
+    }
+
+    @ManagedOperation(description = "Resets all Hibernate statistics")
+    public void clear() {
+        statistics.clear();
+    }
+
+}
@@ -0,0 +1,83 @@
+package pl.maciejpajak.config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrates tables which used to have AUTO_INCREMENT ids to pooled table generator. On startup, after schema update and before any id
+ * is generated, moves each generator's value above the greatest existing id of its table.
+ * Does nothing when generator is already ahead, so it is safe to run on every start and on many nodes.
+ * Also restores AUTO_INCREMENT of id column of tables which went back from pooled table generator to identity,
+ * schema update does not change existing columns.
+ * 
+ * @author mac
+ *
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdGeneratorMigration {
+    
+    private static final Logger log = LoggerFactory.getLogger(IdGeneratorMigration.class);
+    
+    /**
+     * Must be equal to {@code allocationSize} of table generators.
+     */
+    private static final int ALLOCATION_SIZE = 50;
+    
+    /**
+     * Tables using pooled table generator, generator's {@code pkColumnValue} is the same as table name.
+     */
+    private static final String[] TABLES = { 
+            "coupon", "placed_bet", "coupon_invitation", "score", "settlement_checkpoint" };
+    
+    /**
+     * Tables which used pooled table generator and went back to AUTO_INCREMENT ids.
+     */
+    private static final String[] AUTO_INCREMENT_TABLES = { "notification" };
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @PostConstruct
+    public void migrate() {
+        for (String table : AUTO_INCREMENT_TABLES) {
+            if (!isAutoIncrement(table)) {
+                // MySQL continues above greatest existing id
+                jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY id BIGINT NOT NULL AUTO_INCREMENT");
+                log.info("id column of table {} changed to AUTO_INCREMENT", table);
+            }
+        }
+        for (String table : TABLES) {
+            // pooled optimizer hands out ids (value - allocation size, value], first value read must be above max id
+            long nextValue = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class) + ALLOCATION_SIZE + 1;
+            int updated = jdbcTemplate.update("UPDATE id_generator SET next_val = ? WHERE sequence_name = ? AND next_val < ?", 
+                    nextValue, table, nextValue);
+            if (updated == 0 && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM id_generator WHERE sequence_name = ?", Integer.class, table) == 0) {
+                jdbcTemplate.update("INSERT INTO id_generator (sequence_name, next_val) VALUES (?, ?)", table, nextValue);
+                updated = 1;
+            }
+            if (updated > 0) {
+                log.info("id generator of table {} moved to {}", table, nextValue);
+            }
+        }
+    }
+    
+    private boolean isAutoIncrement(String table) {
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (ResultSet columns = connection.getMetaData().getColumns(connection.getCatalog(), null, table, "id")) {
+                // table not created yet or column not found, nothing to migrate
+                return !columns.next() || "YES".equals(columns.getString("IS_AUTOINCREMENT"));
+            }
+        });
+    }
+
+}
@@ -2,6 +2,7 @@ package pl.maciejpajak.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableResourceServer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.ResourceServerConfigurerAdapter;
@@ -27,6 +28,7 @@ public class ResourceServerConfig extends ResourceServerConfigurerAdapter {
             .antMatchers("/subscriptions/**").authenticated()
             .antMatchers("/notifications/**").authenticated()
             .antMatchers("/register").permitAll()
+            .antMatchers(HttpMethod.POST, "/odds/**").hasAnyRole("TRADER", "ADMIN")
             .antMatchers("/**").permitAll();
     }
 
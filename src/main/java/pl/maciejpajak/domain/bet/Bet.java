@@ -34,11 +34,11 @@ public class Bet {
     @JsonIgnore
     private boolean visible = true;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore(value = false)
     private Game game;
     
-    @OneToMany(mappedBy = "bet", fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "bet")
     private Set<BetOption> betOptions;
     
     private String description;
@@ -9,6 +9,7 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -16,6 +17,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.engine.condition.ValidWinCondition;
 
 @Entity
 @Getter
@@ -31,6 +33,7 @@ public class BetOption {
     private boolean visible =  true;
     
     @JsonIgnore
+    @ValidWinCondition
     private String winCondition;
     
     @JsonIgnore
@@ -46,4 +49,15 @@ public class BetOption {
     @Enumerated(EnumType.STRING)
     private BetOptionStatus status;
     
+    /**
+     * Version of current odd, incremented with every published odd.
+     */
+    @JsonIgnore
+    private long oddVersion;
+    
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "current_odd_id")
+    private Odd currentOdd;
+    
 }
@@ -40,5 +40,10 @@ public class Odd {
     private LocalDateTime created;
     
     private BigDecimal value;
+    
+    /**
+     * Version of odd within its bet option.
+     */
+    private long version;
 
 }
@@ -7,6 +7,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.TableGenerator;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -26,7 +27,9 @@ import pl.maciejpajak.domain.coupon.Coupon;
 public class PlacedBet {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "placed_bet_id")
+    @TableGenerator(name = "placed_bet_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "placed_bet", allocationSize = 50)
     protected Long id;
     
     @JsonIgnore
@@ -36,11 +39,11 @@ public class PlacedBet {
 //    @JoinColumn(name = "bet_id")
 //    private Bet bet;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "bet_option_id")
     private BetOption betOption;
     
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "odd_id")
     private Odd odd;
     
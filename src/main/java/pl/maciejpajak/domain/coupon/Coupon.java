@@ -8,15 +8,19 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -29,6 +33,7 @@ import pl.maciejpajak.domain.util.CouponStatus;
 
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@Table(indexes = @Index(name = "idx_coupon_owner_id_created_id", columnList = "owner_id, created, id"))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -36,7 +41,9 @@ import pl.maciejpajak.domain.util.CouponStatus;
 public abstract class Coupon {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "coupon_id")
+    @TableGenerator(name = "coupon_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "coupon", allocationSize = 50)
     protected Long id;
 
     protected boolean visible;
@@ -48,11 +55,11 @@ public abstract class Coupon {
     
     protected int unsersolvedBetsCount;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     protected User owner;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     protected Transaction ownerTransaction;
 
     @Enumerated(EnumType.STRING)
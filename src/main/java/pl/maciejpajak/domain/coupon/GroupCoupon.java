@@ -6,6 +6,9 @@ import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 
 import lombok.Builder;
@@ -17,10 +20,26 @@ import pl.maciejpajak.domain.user.User;
 import pl.maciejpajak.domain.util.CouponStatus;
 
 @Entity
+@NamedEntityGraph(name = GroupCoupon.WITH_BETS_AND_INVITATIONS, 
+    attributeNodes = {
+        @NamedAttributeNode("ownerTransaction"),
+        @NamedAttributeNode(value = "placedBets", subgraph = "placedBet"),
+        @NamedAttributeNode(value = "intivations", subgraph = "invitation")
+    },
+    subgraphs = {
+        @NamedSubgraph(name = "placedBet", attributeNodes = { @NamedAttributeNode("betOption"), @NamedAttributeNode("odd") }),
+        @NamedSubgraph(name = "invitation", attributeNodes = { @NamedAttributeNode("invitedUser"), @NamedAttributeNode("betTransaction") })
+    })
 @Getter
 @Setter
 public class GroupCoupon extends Coupon {
     
+    /**
+     * Everything shown with coupon: owner transaction, placed bets with their bet options and odds,
+     * invitations with invited users and their transactions.
+     */
+    public static final String WITH_BETS_AND_INVITATIONS = "GroupCoupon.withBetsAndInvitations";
+    
     @OneToMany(mappedBy = "groupCoupon", cascade = CascadeType.PERSIST)
     private Set<CouponInvitation> intivations;
     
@@ -5,6 +5,9 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 
 import lombok.Builder;
 import pl.maciejpajak.domain.bet.PlacedBet;
@@ -13,7 +16,18 @@ import pl.maciejpajak.domain.user.User;
 import pl.maciejpajak.domain.util.CouponStatus;
 
 @Entity
+@NamedEntityGraph(name = UserCoupon.WITH_BETS, 
+    attributeNodes = {
+        @NamedAttributeNode("ownerTransaction"),
+        @NamedAttributeNode(value = "placedBets", subgraph = "placedBet")
+    },
+    subgraphs = @NamedSubgraph(name = "placedBet", attributeNodes = { @NamedAttributeNode("betOption"), @NamedAttributeNode("odd") }))
 public class UserCoupon extends Coupon {
+    
+    /**
+     * Everything shown with coupon: owner transaction, placed bets with their bet options and odds.
+     */
+    public static final String WITH_BETS = "UserCoupon.withBets";
 
     public UserCoupon() {
         super();
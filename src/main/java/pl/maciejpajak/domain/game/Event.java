@@ -34,6 +34,8 @@ public class Event {
     @ManyToOne
     private Game game;
     
+    private Long sequence;
+    
     @Enumerated(EnumType.STRING)
     private EventType eventType;
     
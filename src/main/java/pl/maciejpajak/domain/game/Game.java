@@ -3,14 +3,20 @@ package pl.maciejpajak.domain.game;
 import java.time.LocalDateTime;
 import java.util.Set;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 
@@ -24,12 +30,31 @@ import pl.maciejpajak.domain.util.GameStatus;
 import pl.maciejpajak.domain.util.ScoreType;
 
 @Entity
+@NamedEntityGraph(name = Game.WITH_DETAILS, 
+    attributeNodes = {
+        @NamedAttributeNode(value = "competition", subgraph = "competition"),
+        @NamedAttributeNode(value = "partyOne", subgraph = "party"),
+        @NamedAttributeNode(value = "partyTwo", subgraph = "party"),
+        @NamedAttributeNode("gameFinalScore"),
+        @NamedAttributeNode(value = "gameParts", subgraph = "gamePart")
+    },
+    subgraphs = {
+        @NamedSubgraph(name = "competition", attributeNodes = { @NamedAttributeNode("sport"), @NamedAttributeNode("scope") }),
+        @NamedSubgraph(name = "party", attributeNodes = @NamedAttributeNode("sport")),
+        @NamedSubgraph(name = "gamePart", attributeNodes = @NamedAttributeNode("finalPartScore"))
+    })
 @Getter
 @Setter
 public class Game {
+    
+    /**
+     * Everything serialized with game: competition, parties, final score and game parts with their final scores.
+     */
+    public static final String WITH_DETAILS = "Game.withDetails";
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Access(AccessType.PROPERTY)
     private Long id;
     
     @JsonIgnore
@@ -46,14 +71,14 @@ public class Game {
     
     private String description;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Competition competition;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "party_one_id")
     private PlayingParty partyOne;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "party_two_id")
     private PlayingParty partyTwo;
     
@@ -63,7 +88,7 @@ public class Game {
     @Enumerated(EnumType.STRING)
     private ScoreType scoreType;
     
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     private GameScore gameFinalScore;
     
 }
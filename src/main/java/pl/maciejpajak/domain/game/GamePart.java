@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -37,7 +38,7 @@ public class GamePart {
     
     private boolean visible;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore
     private Game game;
     
@@ -51,7 +52,7 @@ public class GamePart {
     
     private Duration duration;
     
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     private PartScore finalPartScore;
     
 }
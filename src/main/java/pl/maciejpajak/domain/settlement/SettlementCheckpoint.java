@@ -0,0 +1,58 @@
+package pl.maciejpajak.domain.settlement;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.TableGenerator;
+import javax.persistence.UniqueConstraint;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.maciejpajak.domain.util.SettlementPhase;
+
+/**
+ * Completed partition of settlement run. Saved in the same transaction as partition's work, 
+ * so partition with checkpoint is never processed again.
+ * 
+ * @author mac
+ *
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "settlement_run_id", "phase", "partition_index" }))
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "settlement_checkpoint_id")
+    @TableGenerator(name = "settlement_checkpoint_id", table = "id_generator", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "settlement_checkpoint", allocationSize = 50)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "settlement_run_id")
+    private SettlementRun run;
+    
+    @Enumerated(EnumType.STRING)
+    private SettlementPhase phase;
+    
+    private int partitionIndex;
+    
+    private LocalDateTime completed;
+    
+}
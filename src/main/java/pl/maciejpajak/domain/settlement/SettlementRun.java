@@ -0,0 +1,53 @@
+package pl.maciejpajak.domain.settlement;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.SettlementRunStatus;
+
+/**
+ * Settlement of bets of one game. Number of partitions is fixed when run starts,
+ * so interrupted run is resumed with the same assignment of bet options and coupons to partitions.
+ * 
+ * @author mac
+ *
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SettlementRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Game game;
+    
+    @Enumerated(EnumType.STRING)
+    private SettlementRunStatus status;
+    
+    private int partitionsCount;
+    
+    private LocalDateTime started;
+    
+    private LocalDateTime finished;
+    
+}
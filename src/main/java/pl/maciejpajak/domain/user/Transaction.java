@@ -5,9 +5,13 @@ import java.time.LocalDateTime;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
@@ -19,7 +23,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = @Index(name = "idx_transactions_balance_pending_owner_id", columnList = "balance_pending, owner_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,7 +37,7 @@ public class Transaction {
     
     private boolean visible = true;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User owner;
     
     @NotNull
@@ -44,6 +48,22 @@ public class Transaction {
     
 //    @ManyToOne
 //    @JoinColumn(name = "type_id")
+    /**
+     * Stored as ordinal, the same value is written by {@code TransactionService.commitPayouts} with JDBC.
+     * New types must be added at the end of {@link TransactionType}.
+     */
+    @Enumerated(EnumType.ORDINAL)
     private TransactionType type;
+    
+    /**
+     * Unique key of payout, prevents paying out the same prize twice. Null for other transactions.
+     */
+    @Column(unique = true)
+    private String payoutKey;
+    
+    /**
+     * True while amount is not yet included in {@code users.balance}, set only by write-behind wallet.
+     */
+    private boolean balancePending;
 
 }
@@ -2,6 +2,9 @@ package pl.maciejpajak.domain.user;
 
 import java.math.BigDecimal;
 
+/**
+ * Stored as ordinal, new types must be added at the end.
+ */
 public enum TransactionType {
 
     PLACE_BET(false), WIN(true), RECHARGE(true), WITHDRAW(false), CANCEL_BET(true);
@@ -14,6 +14,9 @@ import javax.persistence.ManyToMany;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotBlank;
 
@@ -28,6 +31,7 @@ import pl.maciejpajak.security.Role;
 
 @Entity
 @Table(name = "users")
+@DynamicUpdate
 @Getter
 @Setter
 @Builder
@@ -66,11 +70,15 @@ public class User {
     private Set<CouponInvitation> couponInvitations;
     
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Role> roles;
     
     @OneToMany(mappedBy = "user")
     private Set<SpecialOffer> specialOffers;
     
+    /**
+     * Projection of balance kept by wallet, updated by wallet only.
+     */
     private BigDecimal balance;
     
     @OneToMany(mappedBy = "owner")
@@ -0,0 +1,7 @@
+package pl.maciejpajak.domain.util;
+
+public enum SettlementPhase {
+    
+    BET_OPTIONS, COUPONS
+
+}
@@ -0,0 +1,7 @@
+package pl.maciejpajak.domain.util;
+
+public enum SettlementRunStatus {
+    
+    RUNNING, COMPLETED
+
+}
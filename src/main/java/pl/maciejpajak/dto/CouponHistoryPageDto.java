@@ -0,0 +1,28 @@
+package pl.maciejpajak.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Page of coupon history. Next page is requested with {@code beforeCreated = nextCreated} and
+ * {@code beforeId = nextId}, both are null on last page.
+ * 
+ * @author mac
+ *
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponHistoryPageDto {
+
+    private List<CouponShowDto> coupons;
+    private LocalDateTime nextCreated;
+    private Long nextId;
+    
+}
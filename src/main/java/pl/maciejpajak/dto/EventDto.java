@@ -10,6 +10,11 @@ public class EventDto {
     
     private Long gameId;
     
+    /**
+     * Sequence number of event within game, optional. Events with number not greater than last received one are dropped.
+     */
+    private Long sequence;
+    
     private EventType eventType;
     
     private String message;
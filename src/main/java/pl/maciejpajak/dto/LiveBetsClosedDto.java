@@ -0,0 +1,18 @@
+package pl.maciejpajak.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.maciejpajak.domain.util.BetLastCall;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveBetsClosedDto {
+
+    private Long gameId;
+    private BetLastCall lastCall;
+    
+}
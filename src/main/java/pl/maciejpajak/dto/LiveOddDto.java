@@ -0,0 +1,22 @@
+package pl.maciejpajak.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveOddDto {
+
+    private Long gameId;
+    private Long betOptionId;
+    private Long oddId;
+    private BigDecimal value;
+    private long version;
+    
+}
@@ -0,0 +1,27 @@
+package pl.maciejpajak.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import pl.maciejpajak.domain.util.GameStatus;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveScoreDto {
+
+    private Long gameId;
+    private GameStatus gameStatus;
+    private Long gamePartId;
+    private GameStatus partStatus;
+    private int partPartyOneScore;
+    private int partPartyTwoScore;
+    private int gamePartyOneScore;
+    private int gamePartyTwoScore;
+    private LocalDateTime time;
+    
+}
@@ -0,0 +1,20 @@
+package pl.maciejpajak.dto;
+
+import java.math.BigDecimal;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+import lombok.Data;
+
+@Data
+public class OddPublishDto {
+    
+    @NotNull
+    private Long betOptionId;
+    
+    @NotNull
+    @DecimalMin(value = "1.0", inclusive = false)
+    private BigDecimal value;
+
+}
@@ -11,5 +11,6 @@ public class OddShowDto {
 
     private Long id;
     private BigDecimal value;
+    private Long version;
     
 }
@@ -0,0 +1,18 @@
+package pl.maciejpajak.dto;
+
+import java.util.List;
+
+import javax.validation.Valid;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import lombok.Data;
+
+@Data
+public class OddsPublishDto {
+    
+    @NotEmpty
+    @Valid
+    private List<OddPublishDto> odds;
+
+}
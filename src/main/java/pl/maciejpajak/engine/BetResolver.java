@@ -1,47 +1,45 @@
 package pl.maciejpajak.engine;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Arrays;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-import javax.transaction.Transactional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import pl.maciejpajak.config.AsyncConfig;
 import pl.maciejpajak.domain.bet.Bet;
-import pl.maciejpajak.domain.bet.BetOption;
-import pl.maciejpajak.domain.bet.PlacedBet;
-import pl.maciejpajak.domain.coupon.Coupon;
-import pl.maciejpajak.domain.coupon.GroupCoupon;
 import pl.maciejpajak.domain.game.Game;
-import pl.maciejpajak.domain.offers.BidAmountBonus;
-import pl.maciejpajak.domain.user.TransactionType;
-import pl.maciejpajak.domain.user.User;
-import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.domain.settlement.SettlementRun;
 import pl.maciejpajak.domain.util.CouponStatus;
-import pl.maciejpajak.domain.util.NotificationType;
-import pl.maciejpajak.event.NotifyUserEvent;
+import pl.maciejpajak.domain.util.SettlementPhase;
+import pl.maciejpajak.domain.util.SettlementRunStatus;
 import pl.maciejpajak.repository.BetOptionRepository;
-import pl.maciejpajak.repository.BidAmountBonusRepository;
 import pl.maciejpajak.repository.CouponRepository;
-import pl.maciejpajak.service.TransactionService;
+import pl.maciejpajak.repository.SettlementCheckpointRepository;
+import pl.maciejpajak.repository.SettlementRunRepository;
 
+/**
+ * Resolves bets of ended game. Bet options and coupons are partitioned by id hash 
+ * and processed in parallel on settlement executor, each partition in its own transaction
+ * which also saves partition's checkpoint.
+ * 
+ * @author mac
+ *
+ */
 @Component
 public class BetResolver {
 
@@ -54,139 +52,122 @@ public class BetResolver {
     private CouponRepository couponRepository;
     
     @Autowired
-    private TransactionService transactionService;
+    private BetSettlementWorker settlementWorker;
+    
+    @Autowired
+    private SettlementMetrics settlementMetrics;
     
     @Autowired
-    private BidAmountBonusRepository bidAmountBonusRepository;
+    private SettlementRunRepository settlementRunRepository;
     
     @Autowired
-    private ApplicationEventPublisher applicationEventPublisher;
+    private SettlementCheckpointRepository settlementCheckpointRepository;
+    
+    @Autowired
+    @Qualifier(AsyncConfig.SETTLEMENT_EXECUTOR)
+    private ThreadPoolTaskExecutor settlementExecutor;
+    
+    /**
+     * Coupon may contain bets on many games. Within one run every coupon belongs to exactly one partition,
+     * this lock makes sure coupon settlement of different games does not run concurrently.
+     * Lock is local to this JVM, it does not serialize settlements running on different nodes.
+     */
+    private final Lock couponSettlementLock = new ReentrantLock(true);
 
     /**
      * Resolves all bets for {@code game} in {@code bets}
-     * Also updates coupons with those bets, resolve them if necessary and pays out prizes
+     * Also updates coupons with those bets, resolve them if necessary and pays out prizes.
+     * Progress is recorded in {@link SettlementRun}, interrupted run is resumed, completed run is not repeated.
      * @param game
      * @param bets
-     * @throws ScriptException
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
      */
-    @Async
-    @Transactional(rollbackOn = {})
-    public void resolve(Game game, Collection<Bet> bets) throws ScriptException, IllegalAccessException, InvocationTargetException {
-
-        Long start = System.nanoTime();
+    @Async(AsyncConfig.SETTLEMENT_COORDINATOR_EXECUTOR)
+    public void resolve(Game game, Collection<Bet> bets) {
+        if (bets.isEmpty()) {
+            return;
+        }
+        SettlementRun run = settlementRunRepository.findTopByGameIdOrderByIdDesc(game.getId())
+                .orElseGet(() -> settlementRunRepository.save(SettlementRun.builder()
+                        .game(game)
+                        .status(SettlementRunStatus.RUNNING)
+                        .partitionsCount(settlementExecutor.getMaxPoolSize())
+                        .started(LocalDateTime.now())
+                        .build()));
+        if (run.getStatus() == SettlementRunStatus.COMPLETED) {
+            log.warn("bets of game (id = {}) are already settled", game.getId());
+            return;
+        }
+        long start = System.nanoTime();
+        Long runId = run.getId();
 
-        ScriptEngineManager mgr = new ScriptEngineManager();
-        ScriptEngine engine = mgr.getEngineByName("JavaScript");
+        List<Long> betOptionsIds = betOptionRepository.findAllIdsByBetInAndVisible(bets, true);
+        runPartitions(run, SettlementPhase.BET_OPTIONS, betOptionsIds, 
+                (partition, ids) -> settlementWorker.resolveBetOptions(runId, partition, game, ids));
         
-        List<BetOption> betOptions = betOptionRepository.findAllByBetInAndVisible(bets, true);
-
-        for (BetOption bo : betOptions) {
-            String winCondition = bo.getWinCondition();
-            Pattern r = Pattern.compile("\\{([^\\}]+)\\}");
-            Matcher m = r.matcher(winCondition);
-            while (m.find( )) {
-               Object o = game;
-               String[] names = m.group(1).split("\\.");
-               for (int j = 0 ; j < names.length - 1 ; j++) {
-                   String name = names[j+1];
-                   Method method = Arrays.asList(o.getClass().getMethods()).stream()
-                           .filter(meth -> meth.getName().equalsIgnoreCase("get" + name)).findFirst().orElseThrow(() -> new RuntimeException());
-                   o = method.invoke(o, null);
-               }
-               winCondition = winCondition.replace(m.group(0), o.toString());               
-            }
-            boolean isWinConditionSatisfied = (boolean) engine.eval(winCondition);
-            log.debug("initial win condition: {}", bo.getWinCondition());
-            log.debug("parsed win condition: {}", winCondition);
-            log.debug("win result: {}", isWinConditionSatisfied);
-            
-            bo.setStatus(isWinConditionSatisfied ? BetOptionStatus.WON : BetOptionStatus.LOST);
-            
-            updateCouponByBetOption(bo);
+        Set<Long> resolvedBetOptionsIds = new HashSet<>(betOptionsIds);
+        List<Long> couponsIds;
+        couponSettlementLock.lock();
+        try {
+            // coupons of completed partitions which have bets on other games are still placed, 
+            // they fall into the same partitions again and are skipped
+            couponsIds = couponRepository.findAllIdsForSettlement(CouponStatus.PLACED, game.getId(), true);
+            log.debug("found {} coupons to settle for game (id = {})", couponsIds.size(), game.getId());
+            runPartitions(run, SettlementPhase.COUPONS, couponsIds, 
+                    (partition, ids) -> settlementWorker.settleCoupons(runId, partition, ids, resolvedBetOptionsIds));
+        } finally {
+            couponSettlementLock.unlock();
         }
-        betOptionRepository.save(betOptions);
         
-        Long stop = (System.nanoTime() - start) / 1000000;
-        log.debug("bets resolving time {} ms", stop);
-    }
-    
-    private void updateCouponByBetOption(BetOption betOption) {
+        run.setStatus(SettlementRunStatus.COMPLETED);
+        run.setFinished(LocalDateTime.now());
+        settlementRunRepository.save(run);
         
-        Collection<Coupon> coupons = couponRepository.findAllByStatusAndPlacedBetsBetOptionIdAndVisible(CouponStatus.PLACED, betOption.getId(), true);
-        log.debug("found coupons {} for betOption id = {}", coupons.size(), betOption.getId());
-        coupons.forEach(c -> {
-            log.debug("setting unsersolvedBetsCount for coupon (id = {}) to {}", c.getId(), c.getUnsersolvedBetsCount() - 1); 
-            c.setUnsersolvedBetsCount(c.getUnsersolvedBetsCount() - 1);
-            couponRepository.save(c);
-            if (c.getUnsersolvedBetsCount() == 0) {
-                resolveCoupon(c);
-            } 
-        });
+        long elapsed = System.nanoTime() - start;
+        settlementMetrics.recordRun(betOptionsIds.size(), couponsIds.size(), elapsed);
+        log.debug("bets resolving time {} ms", elapsed / 1000000);
     }
-
-    private void resolveCoupon(Coupon coupon) {
-        log.debug("resolving coupon (id = {})", coupon.getId());
-        if (isCouponWon(coupon)) {
-            log.debug("coupon (id = {}) WON, going go pay out prize", coupon.getId());
-            coupon.setStatus(CouponStatus.WON);
-            payOutPrize(coupon);
-        } else {
-            log.debug("coupon (id = {}) LOST", coupon.getId());
-            coupon.setStatus(CouponStatus.WON);
-            coupon.setBonus(BigDecimal.ZERO);
-            coupon.setTotalPrize(BigDecimal.ZERO);
-            if (coupon instanceof GroupCoupon) {
-                ((GroupCoupon) coupon).getIntivations().forEach(inv -> {
-                    applicationEventPublisher.publishEvent(new NotifyUserEvent(this, inv.getInvitedUser().getId(), coupon.getId(), NotificationType.COUPON_LOST));
-                });
-            } 
-            applicationEventPublisher.publishEvent(new NotifyUserEvent(this, coupon.getOwner().getId(), coupon.getId(), NotificationType.COUPON_LOST));
+    
+    /**
+     * Runs {@code task} on settlement executor for each non empty partition without checkpoint
+     * in {@code phase} and waits for all of them.
+     * @throws java.util.concurrent.CompletionException if any partition failed
+     */
+    private void runPartitions(SettlementRun run, SettlementPhase phase, List<Long> ids, BiConsumer<Integer, List<Long>> task) {
+        Set<Integer> completed = settlementCheckpointRepository.findAllCompletedPartitions(run.getId(), phase);
+        if (!completed.isEmpty()) {
+            log.info("resuming settlement run (id = {}), {} partitions of phase {} already completed", run.getId(), completed.size(), phase);
         }
-        log.debug("saving coupon (id = {})", coupon.getId());
-        couponRepository.save(coupon); 
+        List<List<Long>> partitions = partition(ids, run.getPartitionsCount());
+        CompletableFuture<?>[] futures = IntStream.range(0, partitions.size())
+                .filter(i -> !partitions.get(i).isEmpty() && !completed.contains(i))
+                .mapToObj(i -> CompletableFuture.runAsync(() -> task.accept(i, partitions.get(i)), settlementExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
     }
-
-    private boolean isCouponWon(Coupon coupon) {
-        log.debug("checking id coupon (id = {}) is won", coupon.getId());
-        boolean isCouponWon = true;
-        for (PlacedBet pb : coupon.getPlacedBets()) {
-            if(pb.getBetOption().getStatus().equals(BetOptionStatus.LOST)) {
-                isCouponWon = false;
-                break;
-            }
+    
+    /**
+     * Splits {@code ids} into {@code partitionsCount} partitions by id hash.
+     */
+    static List<List<Long>> partition(Collection<Long> ids, int partitionsCount) {
+        List<List<Long>> partitions = new ArrayList<>(partitionsCount);
+        for (int i = 0 ; i < partitionsCount ; i++) {
+            partitions.add(new ArrayList<>());
         }
-        return isCouponWon;
-    }
-
-    private void payOutPrize(Coupon coupon) {
-        log.debug("inside payOutPrize for coupon (id = {})", coupon.getId());
-        BigDecimal totalPrize = coupon.getValue();
-        for (PlacedBet pb : coupon.getPlacedBets()) {
-            totalPrize = totalPrize.multiply(pb.getOdd().getValue());
+        for (Long id : ids) {
+            partitions.get(Math.floorMod(id.hashCode(), partitionsCount)).add(id);
         }
-        BigDecimal bonus = bidAmountBonusRepository
-                .findTopByMinimalBidIsLessThanEqualAndVisibleOrderByMinimalBidDesc(totalPrize, true)
-                .orElse(new BidAmountBonus()).getRelativeRevenuBonus();
-        totalPrize = totalPrize.multiply(bonus.add(BigDecimal.ONE)).setScale(2, RoundingMode.CEILING);
-        coupon.setBonus(bonus);
-        coupon.setTotalPrize(totalPrize);
-        log.debug("bonus: {}", bonus);
-        log.debug("total prize: {}", totalPrize);
-        if (coupon instanceof GroupCoupon) {
-            Map<User, BigDecimal> usersAmounts = new HashMap<>();
-            usersAmounts.put(coupon.getOwner(), coupon.getOwnerTransaction().getAmount());
-            ((GroupCoupon) coupon).getIntivations().forEach(inv -> {
-                usersAmounts.put(inv.getInvitedUser(), inv.getBetTransaction().getAmount().negate());
-                applicationEventPublisher.publishEvent(new NotifyUserEvent(this, inv.getInvitedUser().getId(), coupon.getId(), NotificationType.COUPON_WON));
-            });
-            usersAmounts.forEach((u, a) -> 
-                transactionService.createTransaction(coupon.getTotalPrize().multiply(a).divide(coupon.getValue()).setScale(2, RoundingMode.CEILING), u, TransactionType.WIN));
-        } else {
-            transactionService.createTransaction(coupon.getTotalPrize(), coupon.getOwner(), TransactionType.WIN);
+        return partitions;
+    }
+    
+    /**
+     * Splits {@code ids} into consecutive chunks of at most {@code chunkSize} elements.
+     */
+    static List<List<Long>> chunks(List<Long> ids, int chunkSize) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0 ; i < ids.size() ; i += chunkSize) {
+            chunks.add(ids.subList(i, Math.min(i + chunkSize, ids.size())));
         }
-        applicationEventPublisher.publishEvent(new NotifyUserEvent(this, coupon.getOwner().getId(), coupon.getId(), NotificationType.COUPON_WON));
+        return chunks;
     }
     
 }
@@ -0,0 +1,226 @@
+package pl.maciejpajak.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.bet.PlacedBet;
+import pl.maciejpajak.domain.coupon.Coupon;
+import pl.maciejpajak.domain.coupon.GroupCoupon;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.settlement.SettlementCheckpoint;
+import pl.maciejpajak.domain.settlement.SettlementRun;
+import pl.maciejpajak.domain.offers.BidAmountBonus;
+import pl.maciejpajak.domain.user.User;
+import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.domain.util.CouponStatus;
+import pl.maciejpajak.domain.util.NotificationType;
+import pl.maciejpajak.domain.util.SettlementPhase;
+import pl.maciejpajak.engine.condition.WinConditionCompiler;
+import pl.maciejpajak.event.NotifyUserEvent;
+import pl.maciejpajak.repository.BetOptionRepository;
+import pl.maciejpajak.repository.BidAmountBonusRepository;
+import pl.maciejpajak.repository.CouponRepository;
+import pl.maciejpajak.repository.SettlementCheckpointRepository;
+import pl.maciejpajak.service.PayoutJournal;
+import pl.maciejpajak.service.TransactionService;
+
+/**
+ * Processes single partition of settlement run started by {@link BetResolver}.
+ * Each method call runs in its own transaction.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class BetSettlementWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(BetSettlementWorker.class);
+    
+    @Autowired
+    private BetOptionRepository betOptionRepository;
+    
+    @Autowired
+    private CouponRepository couponRepository;
+    
+    @Autowired
+    private TransactionService transactionService;
+    
+    @Autowired
+    private BidAmountBonusRepository bidAmountBonusRepository;
+    
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    
+    @Autowired
+    private WinConditionCompiler winConditionCompiler;
+    
+    @Autowired
+    private SettlementCheckpointRepository settlementCheckpointRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${settlement.chunk-size:500}")
+    private int chunkSize;
+    
+    /**
+     * Evaluates win conditions of bet options with {@code betOptionsIds} against {@code game} 
+     * and sets their status.
+     * @param runId - settlement run
+     * @param partition - index of partition, saved as checkpoint
+     * @param game
+     * @param betOptionsIds
+     */
+    @Transactional(rollbackOn = {})
+    public void resolveBetOptions(Long runId, int partition, Game game, List<Long> betOptionsIds) {
+        for (List<Long> chunk : BetResolver.chunks(betOptionsIds, chunkSize)) {
+            for (BetOption bo : betOptionRepository.findAll(chunk)) {
+                boolean isWinConditionSatisfied = winConditionCompiler.compile(bo.getWinCondition()).isSatisfiedBy(game);
+                log.debug("bet option (id = {}) win condition: {}, result: {}", bo.getId(), bo.getWinCondition(), isWinConditionSatisfied);
+                bo.setStatus(isWinConditionSatisfied ? BetOptionStatus.WON : BetOptionStatus.LOST);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        saveCheckpoint(runId, SettlementPhase.BET_OPTIONS, partition);
+    }
+    
+    /**
+     * Decrements unresolved bets count of placed coupons with {@code couponsIds} by number of their bets
+     * on bet options resolved in this run and resolves coupons which have no unresolved bets left.
+     * Coupons are loaded in chunks, changes are flushed in JDBC batches after each chunk.
+     * Prizes are collected in {@link PayoutJournal} and paid out at the end, in the same transaction.
+     * @param runId - settlement run
+     * @param partition - index of partition, saved as checkpoint
+     * @param couponsIds
+     * @param resolvedBetOptionsIds - ids of bet options resolved in this run
+     */
+    @Transactional(rollbackOn = {})
+    public void settleCoupons(Long runId, int partition, List<Long> couponsIds, Set<Long> resolvedBetOptionsIds) {
+        PayoutJournal journal = new PayoutJournal();
+        TreeMap<BigDecimal, BigDecimal> bonuses = loadBonuses();
+        for (List<Long> chunk : BetResolver.chunks(couponsIds, chunkSize)) {
+            for (Coupon c : couponRepository.findAllForSettlement(chunk, CouponStatus.PLACED)) {
+                int resolvedBetsCount = 0;
+                for (PlacedBet pb : c.getPlacedBets()) {
+                    if (resolvedBetOptionsIds.contains(pb.getBetOption().getId())) {
+                        resolvedBetsCount++;
+                    }
+                }
+                c.setUnsersolvedBetsCount(c.getUnsersolvedBetsCount() - resolvedBetsCount);
+                if (c.getUnsersolvedBetsCount() == 0) {
+                    resolveCoupon(c, journal, bonuses);
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        }
+        transactionService.commitPayouts(journal);
+        saveCheckpoint(runId, SettlementPhase.COUPONS, partition);
+    }
+    
+    private void saveCheckpoint(Long runId, SettlementPhase phase, int partition) {
+        settlementCheckpointRepository.save(SettlementCheckpoint.builder()
+                .run(entityManager.getReference(SettlementRun.class, runId))
+                .phase(phase)
+                .partitionIndex(partition)
+                .completed(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * @return relative revenue bonuses of visible bid amount bonuses, by minimal bid
+     */
+    private TreeMap<BigDecimal, BigDecimal> loadBonuses() {
+        TreeMap<BigDecimal, BigDecimal> bonuses = new TreeMap<>();
+        for (BidAmountBonus bab : bidAmountBonusRepository.findAllByVisible(true)) {
+            if (bab.getMinimalBid() != null) {
+                bonuses.putIfAbsent(bab.getMinimalBid(), bab.getRelativeRevenuBonus());
+            }
+        }
+        return bonuses;
+    }
+
+    private void resolveCoupon(Coupon coupon, PayoutJournal journal, TreeMap<BigDecimal, BigDecimal> bonuses) {
+        log.debug("resolving coupon (id = {})", coupon.getId());
+        if (isCouponWon(coupon)) {
+            log.debug("coupon (id = {}) WON, going go pay out prize", coupon.getId());
+            coupon.setStatus(CouponStatus.WON);
+            payOutPrize(coupon, journal, bonuses);
+        } else {
+            log.debug("coupon (id = {}) LOST", coupon.getId());
+            coupon.setStatus(CouponStatus.LOST);
+            coupon.setBonus(BigDecimal.ZERO);
+            coupon.setTotalPrize(BigDecimal.ZERO);
+            if (coupon instanceof GroupCoupon) {
+                ((GroupCoupon) coupon).getIntivations().forEach(inv -> {
+                    applicationEventPublisher.publishEvent(new NotifyUserEvent(this, inv.getInvitedUser().getId(), coupon.getId(), NotificationType.COUPON_LOST));
+                });
+            } 
+            applicationEventPublisher.publishEvent(new NotifyUserEvent(this, coupon.getOwner().getId(), coupon.getId(), NotificationType.COUPON_LOST));
+        }
+    }
+
+    private boolean isCouponWon(Coupon coupon) {
+        log.debug("checking id coupon (id = {}) is won", coupon.getId());
+        boolean isCouponWon = true;
+        for (PlacedBet pb : coupon.getPlacedBets()) {
+            if(pb.getBetOption().getStatus().equals(BetOptionStatus.LOST)) {
+                isCouponWon = false;
+                break;
+            }
+        }
+        return isCouponWon;
+    }
+
+    /**
+     * @param bonuses - relative revenue bonuses by minimal bid, bonus with greatest minimal bid not greater than prize is applied
+     */
+    private void payOutPrize(Coupon coupon, PayoutJournal journal, TreeMap<BigDecimal, BigDecimal> bonuses) {
+        log.debug("inside payOutPrize for coupon (id = {})", coupon.getId());
+        BigDecimal totalPrize = coupon.getValue();
+        for (PlacedBet pb : coupon.getPlacedBets()) {
+            totalPrize = totalPrize.multiply(pb.getOdd().getValue());
+        }
+        Map.Entry<BigDecimal, BigDecimal> bonusEntry = bonuses.floorEntry(totalPrize);
+        BigDecimal bonus = bonusEntry != null ? bonusEntry.getValue() : BigDecimal.ZERO;
+        totalPrize = totalPrize.multiply(bonus.add(BigDecimal.ONE)).setScale(2, RoundingMode.CEILING);
+        coupon.setBonus(bonus);
+        coupon.setTotalPrize(totalPrize);
+        log.debug("bonus: {}", bonus);
+        log.debug("total prize: {}", totalPrize);
+        if (coupon instanceof GroupCoupon) {
+            Map<User, BigDecimal> usersAmounts = new HashMap<>();
+            // bet transactions amounts are negative
+            usersAmounts.put(coupon.getOwner(), coupon.getOwnerTransaction().getAmount().negate());
+            ((GroupCoupon) coupon).getIntivations().forEach(inv -> {
+                usersAmounts.put(inv.getInvitedUser(), inv.getBetTransaction().getAmount().negate());
+                applicationEventPublisher.publishEvent(new NotifyUserEvent(this, inv.getInvitedUser().getId(), coupon.getId(), NotificationType.COUPON_WON));
+            });
+            usersAmounts.forEach((u, a) -> 
+                journal.add(coupon.getId(), u.getId(), coupon.getTotalPrize().multiply(a).divide(coupon.getValue(), 2, RoundingMode.CEILING)));
+        } else {
+            journal.add(coupon.getId(), coupon.getOwner().getId(), coupon.getTotalPrize());
+        }
+        applicationEventPublisher.publishEvent(new NotifyUserEvent(this, coupon.getOwner().getId(), coupon.getId(), NotificationType.COUPON_WON));
+    }
+    
+}
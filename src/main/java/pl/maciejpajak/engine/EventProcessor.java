@@ -1,54 +1,118 @@
 package pl.maciejpajak.engine;
 
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import pl.maciejpajak.domain.game.Event;
 import pl.maciejpajak.dto.EventDto;
 import pl.maciejpajak.event.GameEvent;
 import pl.maciejpajak.exception.BaseEntityNotFoundException;
-import pl.maciejpajak.repository.EventRepository;
-import pl.maciejpajak.repository.GameRepository;
 
 @Service
 public class EventProcessor {
     
     private static final Logger log = LoggerFactory.getLogger(EventProcessor.class);
     
+    private static final String INSERT_EVENT_SQL = 
+            "INSERT INTO event (visible, game_id, sequence, event_type, message, value, time) VALUES (true, ?, ?, ?, ?, ?, ?)";
+    
     @Autowired
     private ApplicationEventPublisher applicationEventPublisher;
     
     @Autowired
-    private EventRepository eventRepository;
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private GameIdCache gameIdCache;
+    
+    @Autowired
+    private GameEventSequencer gameEventSequencer;
+    
+    @Autowired
+    private LiveGameStateStore liveGameStateStore;
     
     @Autowired
-    private GameRepository gameRepository;
+    private PlatformTransactionManager transactionManager;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
     
     /**
-     * Processes new event received in system.
+     * Processes new event received in system. Event is saved and handled asynchronously,
+     * in order with other events of the same game.
      * @param event
+     * @return future completed when event is saved and handled, completed exceptionally when it could not be saved or handled
      */
-    public void process(EventDto event) {
+    public CompletableFuture<Void> process(EventDto event) {
         log.debug("System received new event {}", event);
-        saveEvent(event);
-        applicationEventPublisher.publishEvent(new GameEvent(this, event));
+        return processAll(Collections.singletonList(event));
+    }
+    
+    /**
+     * Processes batch of events received in system. Events are saved with JDBC batch inserts, 
+     * one batch per lane of {@link GameEventSequencer}, and handled in order within each game.
+     * Events of one lane are saved and handled in one transaction, when any of them can not be handled none of them 
+     * is saved, so they are not treated as duplicates when they are sent again.
+     * @param events
+     * @return future completed when events are saved and handled, completed exceptionally when any lane could not 
+     * save or handle its events
+     * @throws BaseEntityNotFoundException if any event refers to unknown game, no event is processed then
+     */
+    public CompletableFuture<Void> processAll(List<EventDto> events) {
+        for (EventDto event : events) {
+            if (!gameIdCache.contains(event.getGameId())) {
+                throw new BaseEntityNotFoundException(event.getGameId());
+            }
+        }
+        return gameEventSequencer.submit(events, this::saveAndPublish);
+    }
+    
+    private void saveAndPublish(List<EventDto> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                saveEvents(events);
+                for (EventDto event : events) {
+                    applicationEventPublisher.publishEvent(new GameEvent(this, event));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // handlers have changed live state of games before rollback, it is rebuilt from saved events
+            events.stream().map(EventDto::getGameId).distinct().forEach(liveGameStateStore::rebuild);
+            throw e;
+        }
     }
     
-    private void saveEvent(EventDto eventDto) {
-        eventRepository.save(
-                Event.builder()
-                .game(gameRepository.findOneByIdAndVisible(eventDto.getGameId(), true)
-                        .orElseThrow(() -> new BaseEntityNotFoundException(eventDto.getGameId())))
-                .message(eventDto.getMessage())
-                .time(eventDto.getTime())
-                .value(eventDto.getValue())
-                .visible(true)
-                .eventType(eventDto.getEventType())
-                .build()             
-                );
+    private void saveEvents(List<EventDto> events) {
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, events.stream()
+                .map(e -> new Object[] {
+                        e.getGameId(),
+                        e.getSequence(),
+                        e.getEventType() == null ? null : e.getEventType().name(),
+                        e.getMessage(),
+                        e.getValue(),
+                        e.getTime() == null ? null : Timestamp.valueOf(e.getTime()) })
+                .collect(Collectors.toList()));
     }
 
 }
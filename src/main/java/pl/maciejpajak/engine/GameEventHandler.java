@@ -1,24 +1,25 @@
 package pl.maciejpajak.engine;
 
-import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
+import java.util.Collection;
 
-import javax.script.ScriptException;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import pl.maciejpajak.domain.bet.Bet;
 import pl.maciejpajak.domain.game.Game;
 import pl.maciejpajak.domain.game.GamePart;
 import pl.maciejpajak.domain.game.score.GameScore;
 import pl.maciejpajak.domain.game.score.PartScore;
 import pl.maciejpajak.domain.util.BetLastCall;
 import pl.maciejpajak.domain.util.EventType;
-import pl.maciejpajak.domain.util.GameResult;
 import pl.maciejpajak.domain.util.GameStatus;
-import pl.maciejpajak.domain.util.ScoreType;
 import pl.maciejpajak.dto.EventDto;
 import pl.maciejpajak.event.GameEvent;
 import pl.maciejpajak.exception.BaseEntityNotFoundException;
@@ -27,10 +28,13 @@ import pl.maciejpajak.repository.GamePartRepository;
 import pl.maciejpajak.repository.GameRepository;
 import pl.maciejpajak.repository.GameScoreRepository;
 import pl.maciejpajak.repository.PartScoreRepository;
+import pl.maciejpajak.service.MarketIndex;
 import pl.maciejpajak.service.CouponService;
 
 @Component
 public class GameEventHandler {
+    
+    private static final Logger log = LoggerFactory.getLogger(GameEventHandler.class);
 
     @Autowired
     private GameRepository gameRepository;
@@ -53,18 +57,27 @@ public class GameEventHandler {
     @Autowired
     private CouponService couponService;
 
+    @Autowired
+    private LiveGameStateStore liveGameStateStore;
+
+    @Autowired
+    private ScoreWriter scoreWriter;
+
+    @Autowired
+    private LiveGameFeed liveGameFeed;
+
+    @Autowired
+    private MarketIndex marketIndex;
+
     /**
-     * Listens for {@code GameEvent} and updates games, game parts and scores.
+     * Listens for {@code GameEvent} and updates games, game parts and scores. Every change is published to {@link LiveGameFeed}.
+     * Called in lane thread of {@link GameEventSequencer}, so events of one game are handled in order,
+     * in transaction which saves the event.
      * 
      * @param gameEvent
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
-     * @throws ScriptException
      */
     @EventListener
-    @Async
-    public void handleGameEvent(GameEvent gameEvent)
-            throws IllegalAccessException, InvocationTargetException, ScriptException {
+    public void handleGameEvent(GameEvent gameEvent) {
         EventDto eventDto = gameEvent.getEventDto();
         Game game = gameRepository.findOneByIdAndVisible(eventDto.getGameId(), true)
                 .orElseThrow(() -> new BaseEntityNotFoundException(eventDto.getGameId()));
@@ -90,7 +103,8 @@ public class GameEventHandler {
     }
 
     private void updateBets(Game game, BetLastCall lastCall) {
-        betRepository.updateBetableFlag(false, game.getId(), lastCall, true);
+        marketIndex.closeBets(game.getId(), lastCall);
+        liveGameFeed.publishBetsClosed(game, lastCall);
     }
 
     private void startGame(Game game, EventDto eventDto) {
@@ -101,100 +115,97 @@ public class GameEventHandler {
         game.setStatus(GameStatus.LIVE);
         gameRepository.save(game);
         // create initial game score 0 : 0
-        gameScoreRepository.save(new GameScore(null, 0, 0, eventDto.getTime(), game));
+        LiveGameState state = liveGameStateStore.get(game);
+        synchronized (state) {
+            state.startGame();
+            scoreWriter.writeGameScore(game.getId(), 0, 0, eventDto.getTime());
+            liveGameFeed.publishScore(game, state, null, eventDto.getTime());
+        }
         // create new game part
         createGamePart(game, eventDto);
     }
 
-    private void endGame(Game game, EventDto eventDto)
-            throws IllegalAccessException, InvocationTargetException, ScriptException {
+    private void endGame(Game game, EventDto eventDto) {
         updateBets(game, BetLastCall.GAME_END);
-        GameScore gs = gameScoreRepository.findTopByGameIdOrderByTimeDesc(game.getId())
-                .orElseThrow(() -> new RuntimeException("no game score found for game with id = " + game.getId()));
+        LiveGameState state = liveGameStateStore.get(game);
+        // queued scores are written before final one, score writer drops rows which can not be written
+        scoreWriter.flush();
         game.setEndTime(eventDto.getTime());
         game.setStatus(GameStatus.ENDED);
-        game.setGameFinalScore(gs);
-
-        GameResult result;
-        int resDiff = gs.getPartyOneScore() - gs.getPartyTwoScore();
-        if (resDiff > 0) {
-            result = GameResult.PARTY_ONE_WON;
-        } else if (resDiff == 0) {
-            result = GameResult.DRAW;
-        } else {
-            result = GameResult.PARTY_TWO_WON;
+        synchronized (state) {
+            // final score and result are both taken from live state
+            game.setGameFinalScore(gameScoreRepository.save(new GameScore(null, 
+                    state.getGamePartyOneScore(), state.getGamePartyTwoScore(), eventDto.getTime(), game)));
+            game.setResult(state.getGameResult());
+            liveGameFeed.publishScore(game, state, GameStatus.ENDED, eventDto.getTime());
         }
-        game.setResult(result);
         gameRepository.save(game);
+        liveGameStateStore.remove(game.getId());
+        liveGameFeed.endGame(game.getId());
 
-        betResolver.resolve(game, betRepository.findAllByGameIdAndVisible(game.getId(), true));
+        Collection<Bet> bets = betRepository.findAllByGameIdAndVisible(game.getId(), true);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            resolveBets(game, bets);
+            return;
+        }
+        // settlement starts only when ended game is committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                resolveBets(game, bets);
+            }
+        });
     }
-
-    public void partyOneOrTwoScored(Game game, EventDto eventDto) {
-        GamePart gamePart = gamePartRepository.findTopByGameIdAndVisibleOrderByStartTimeDesc(game.getId(), true)
-                .orElseThrow(() -> new BaseEntityNotFoundException(
-                        "could not find game part for game id = " + game.getId()));
-
-        PartScore ps = partScoreRepository.findTopByGamePartIdOrderByTimeDesc(gamePart.getId())
-                .orElse(new PartScore(null, 0, 0, eventDto.getTime(), gamePart));
-        // update part score
-        int partyOneScored = 0;
-        int partyTwoScored = 0;
-        if (eventDto.getEventType().equals(EventType.PARTY_ONE_SCORED)) {
-            partyOneScored = eventDto.getValue();
-        } else {
-            partyTwoScored = eventDto.getValue();
+    
+    private void resolveBets(Game game, Collection<Bet> bets) {
+        try {
+            betResolver.resolve(game, bets);
+        } catch (TaskRejectedException e) {
+            log.error("settlement of game (id = {}) was rejected, its bets have to be resolved manually", game.getId(), e);
         }
+    }
 
-        partScoreRepository.save(new PartScore(null, ps.getPartyOneScore() + partyOneScored,
-                ps.getPartyTwoScore() + partyTwoScored, eventDto.getTime(), gamePart));
-
-        // update game score if necessary
-        if (game.getScoreType().equals(ScoreType.TOTAL_POINTS)) {
-            GameScore gs = gameScoreRepository.findTopByGameIdOrderByTimeDesc(game.getId())
-                    .orElseThrow(() -> new RuntimeException("game score not found"));
-            gameScoreRepository.save(new GameScore(null, gs.getPartyOneScore() + partyOneScored,
-                    gs.getPartyTwoScore() + partyTwoScored, eventDto.getTime(), game));
+    /**
+     * Applies score to in memory state of {@code game}, new part and game scores are persisted asynchronously.
+     */
+    public void partyOneOrTwoScored(Game game, EventDto eventDto) {
+        LiveGameState state = liveGameStateStore.get(game);
+        synchronized (state) {
+            if (state.getGamePartId() == 0L) {
+                throw new BaseEntityNotFoundException("could not find game part for game id = " + game.getId());
+            }
+            boolean gameScoreChanged = state.score(eventDto.getEventType() == EventType.PARTY_ONE_SCORED, eventDto.getValue());
+            scoreWriter.writePartScore(state.getGamePartId(), state.getPartPartyOneScore(), state.getPartPartyTwoScore(), eventDto.getTime());
+            // update game score if necessary
+            if (gameScoreChanged) {
+                scoreWriter.writeGameScore(game.getId(), state.getGamePartyOneScore(), state.getGamePartyTwoScore(), eventDto.getTime());
+            }
+            liveGameFeed.publishScore(game, state, GameStatus.LIVE, eventDto.getTime());
         }
     }
 
     private void endGamePart(Game game, EventDto eventDto) {
-        GamePart gamePart = gamePartRepository.findTopByGameIdAndVisibleOrderByStartTimeDesc(game.getId(), true)
-                .orElseThrow(() -> new BaseEntityNotFoundException(
-                        "could not find game part for game id = " + game.getId()));
-
-        PartScore finalScore = partScoreRepository.findTopByGamePartIdOrderByTimeDesc(gamePart.getId())
-                .orElseThrow(() -> new BaseEntityNotFoundException(
-                        "could not find part score for game part id = " + gamePart.getId()));
-        // set final score
-        gamePart.setFinalPartScore(finalScore);
-        // set part status to ENDED
-        gamePart.setStatus(GameStatus.ENDED);
-        // assess winner and set result
-        GameResult partResult;
-        int resDiff = finalScore.getPartyOneScore() - finalScore.getPartyTwoScore();
-        int partyOneScored = 0;
-        int partyTwoScored = 0;
-        if (resDiff > 0) {
-            partResult = GameResult.PARTY_ONE_WON;
-            partyOneScored = 1;
-        } else if (resDiff == 0) {
-            partResult = GameResult.DRAW;
-        } else {
-            partResult = GameResult.PARTY_TWO_WON;
-            partyTwoScored = 1;
-        }
-        gamePart.setResult(partResult);
-        gamePartRepository.save(gamePart);
-
-        // update game score if necessary
-        if (game.getScoreType().equals(ScoreType.WON_PART_POINTS)) {
-            GameScore gs = gameScoreRepository.findTopByGameIdOrderByTimeDesc(game.getId())
-                    .orElseThrow(() -> new RuntimeException("game score not found"));
-            gameScoreRepository.save(new GameScore(null, gs.getPartyOneScore() + partyOneScored,
-                    gs.getPartyTwoScore() + partyTwoScored, eventDto.getTime(), game));
+        LiveGameState state = liveGameStateStore.get(game);
+        synchronized (state) {
+            GamePart gamePart = gamePartRepository.findTopByGameIdAndVisibleOrderByStartTimeDesc(game.getId(), true)
+                    .orElseThrow(() -> new BaseEntityNotFoundException(
+                            "could not find game part for game id = " + game.getId()));
+            scoreWriter.flush();
+            // final part score and result are both taken from live state
+            gamePart.setFinalPartScore(partScoreRepository.save(new PartScore(null, 
+                    state.getPartPartyOneScore(), state.getPartPartyTwoScore(), eventDto.getTime(), gamePart)));
+            // set part status to ENDED
+            gamePart.setStatus(GameStatus.ENDED);
+            // assess winner and set result
+            gamePart.setResult(state.getPartResult());
+            gamePartRepository.save(gamePart);
+    
+            // update game score if necessary
+            if (state.endPart()) {
+                scoreWriter.writeGameScore(game.getId(), state.getGamePartyOneScore(), state.getGamePartyTwoScore(), eventDto.getTime());
+            }
+            liveGameFeed.publishScore(game, state, GameStatus.ENDED, eventDto.getTime());
         }
-
     }
 
     private void createGamePart(Game game, EventDto eventDto) {
@@ -202,8 +213,12 @@ public class GameEventHandler {
                 .startTime(eventDto.getTime()).visible(true).status(GameStatus.LIVE).build();
         gamePart = gamePartRepository.save(gamePart);
         // create initial part score 0 : 0
-        PartScore ps = new PartScore(null, 0, 0, eventDto.getTime(), gamePart);
-        partScoreRepository.save(ps);
+        LiveGameState state = liveGameStateStore.get(game);
+        synchronized (state) {
+            state.startPart(gamePart.getId());
+            scoreWriter.writePartScore(gamePart.getId(), 0, 0, eventDto.getTime());
+            liveGameFeed.publishScore(game, state, GameStatus.LIVE, eventDto.getTime());
+        }
     }
 
 }
@@ -0,0 +1,202 @@
+package pl.maciejpajak.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.domain.util.EventType;
+import pl.maciejpajak.dto.EventDto;
+import pl.maciejpajak.repository.EventRepository;
+
+/**
+ * Orders processing of live events. Every game is assigned by id hash to one single threaded lane,
+ * so events of one game are processed one by one in order of arrival, while different games are processed in parallel.
+ * Lane also assigns sequence numbers and drops duplicated events (sequence number not greater than last processed one).
+ * 
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=GameEventSequencer", description = "Live events sequencing statistics")
+public class GameEventSequencer {
+    
+    private static final Logger log = LoggerFactory.getLogger(GameEventSequencer.class);
+    
+    @Autowired
+    private EventRepository eventRepository;
+    
+    @Value("${live-feed.lanes:0}")
+    private int lanesCount;
+    
+    @Value("${live-feed.lane-queue-capacity:1000}")
+    private int laneQueueCapacity;
+    
+    private Lane[] lanes;
+    
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    
+    @PostConstruct
+    public void init() {
+        int count = lanesCount > 0 ? lanesCount : Runtime.getRuntime().availableProcessors();
+        lanes = new Lane[count];
+        for (int i = 0 ; i < count ; i++) {
+            lanes[i] = new Lane(i, laneQueueCapacity);
+        }
+    }
+    
+    /**
+     * Processes remaining events and stops lanes.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            lane.executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Queues {@code events} in lanes of their games, events of one lane are queued as one task.
+     * If lane's queue is full caller is blocked until there is space.
+     * @param events
+     * @param processor - called in lane thread with events which are not duplicates, in order, sequence numbers are already set
+     * @return future completed when events of all lanes are processed, completed exceptionally when {@code processor} failed
+     * in any lane; events of failed lane are not treated as duplicates when they are submitted again
+     */
+    public CompletableFuture<Void> submit(Collection<EventDto> events, Consumer<List<EventDto>> processor) {
+        Map<Lane, List<EventDto>> byLane = new LinkedHashMap<>();
+        for (EventDto event : events) {
+            byLane.computeIfAbsent(lanes[Math.floorMod(event.getGameId().hashCode(), lanes.length)], l -> new ArrayList<>())
+                    .add(event);
+        }
+        List<CompletableFuture<Void>> results = new ArrayList<>(byLane.size());
+        byLane.forEach((lane, laneEvents) -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            lane.executor.execute(() -> lane.process(laneEvents, processor, result));
+            results.add(result);
+        });
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]));
+    }
+    
+    @ManagedAttribute(description = "Number of processed events")
+    public long getProcessed() {
+        return processed.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of dropped duplicated events")
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of events waiting in all lanes")
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.executor.getQueue().size();
+        }
+        return depth;
+    }
+    
+    private final class Lane {
+        
+        private final ThreadPoolExecutor executor;
+        
+        /**
+         * Last sequence number of each game in this lane, accessed only by lane thread.
+         */
+        private final Map<Long, Long> lastSequences = new HashMap<>();
+        
+        private Lane(int index, int queueCapacity) {
+            executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                    r -> new Thread(r, "game-events-" + index),
+                    (r, e) -> {
+                        // block producer instead of running task out of order
+                        if (e.isShutdown()) {
+                            throw new RejectedExecutionException("game event lane is shut down");
+                        }
+                        try {
+                            e.getQueue().put(r);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(ex);
+                        }
+                    });
+        }
+        
+        private void process(List<EventDto> events, Consumer<List<EventDto>> processor, CompletableFuture<Void> result) {
+            // sequences are stored in lastSequences only after processor succeeded, so failed events can be retried
+            Map<Long, Long> sequences = new HashMap<>();
+            List<EventDto> accepted = new ArrayList<>(events.size());
+            try {
+                for (EventDto event : events) {
+                    if (assignSequence(event, sequences)) {
+                        accepted.add(event);
+                    }
+                }
+                processor.accept(accepted);
+            } catch (RuntimeException e) {
+                log.error("could not process " + events.size() + " events", e);
+                // last sequences of these games are reloaded from database, events committed before failure stay duplicates
+                sequences.keySet().forEach(lastSequences::remove);
+                result.completeExceptionally(e);
+                return;
+            }
+            processed.add(accepted.size());
+            lastSequences.putAll(sequences);
+            for (EventDto event : accepted) {
+                if (event.getEventType() == EventType.GAME_END) {
+                    // late duplicates are still detected, last sequence is reloaded from database
+                    lastSequences.remove(event.getGameId());
+                }
+            }
+            result.complete(null);
+        }
+        
+        /**
+         * @param sequences - last sequences assigned in current task, not yet processed
+         * @return false if event is a duplicate
+         */
+        private boolean assignSequence(EventDto event, Map<Long, Long> sequences) {
+            Long gameId = event.getGameId();
+            Long pending = sequences.get(gameId);
+            long last = pending != null ? pending
+                    : lastSequences.computeIfAbsent(gameId, id -> eventRepository.findMaxSequenceByGameId(id).orElse(0L));
+            if (event.getSequence() == null) {
+                event.setSequence(last + 1);
+            } else if (event.getSequence() <= last) {
+                duplicates.increment();
+                log.debug("dropping duplicated event {} of game (id = {}), last sequence {}", event.getSequence(), gameId, last);
+                return false;
+            } else if (event.getSequence() > last + 1) {
+                log.warn("missing events {} - {} of game (id = {})", last + 1, event.getSequence() - 1, gameId);
+            }
+            sequences.put(gameId, event.getSequence());
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package pl.maciejpajak.engine;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.repository.GameRepository;
+
+/**
+ * Set of visible game ids, used to validate incoming live events without database lookup.
+ * Loaded on startup, ids missing in cache are checked in database and added if game exists.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class GameIdCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(GameIdCache.class);
+    
+    @Autowired
+    private GameRepository gameRepository;
+    
+    private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void load() {
+        ids.addAll(gameRepository.findAllIdsByVisible(true));
+        log.debug("loaded {} game ids", ids.size());
+    }
+    
+    /**
+     * @param gameId
+     * @return true if visible game with {@code gameId} exists
+     */
+    public boolean contains(Long gameId) {
+        if (gameId == null) {
+            return false;
+        }
+        if (ids.contains(gameId)) {
+            return true;
+        }
+        if (gameRepository.findOneByIdAndVisible(gameId, true).isPresent()) {
+            ids.add(gameId);
+            return true;
+        }
+        return false;
+    }
+
+}
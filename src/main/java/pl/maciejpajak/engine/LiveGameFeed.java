@@ -0,0 +1,364 @@
+package pl.maciejpajak.engine;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.dto.LiveBetsClosedDto;
+import pl.maciejpajak.dto.LiveOddDto;
+import pl.maciejpajak.dto.LiveScoreDto;
+import pl.maciejpajak.exception.BaseEntityNotFoundException;
+
+/**
+ * Streams live game changes (scores, part start and end, closed bets, new odds) as server-sent events,
+ * to subscribers of one game or of whole competition.
+ * <p>
+ * Every change is serialized to JSON once and the same frame is handed to all subscribers. Frames are conflated:
+ * subscriber keeps only the newest unsent frame of every key (score of game, closed bets of game and last call, 
+ * odd of bet option), so slow client skips intermediate states instead of building up backlog. 
+ * New subscriber gets latest frames of games which are live on this node, i.e. started and not ended yet.
+ * Odds of other games are only passed to current subscribers.
+ * Idle streams get heartbeat comment every {@code live-feed.stream.heartbeat-interval-ms}, so proxies do not close them
+ * and closed connections are detected.
+ * 
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=LiveGameFeed", description = "Live game feed statistics")
+public class LiveGameFeed {
+    
+    private static final Logger log = LoggerFactory.getLogger(LiveGameFeed.class);
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private GameIdCache gameIdCache;
+    
+    @Value("${live-feed.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+    
+    @Value("${live-feed.stream.sender-threads:4}")
+    private int senderThreads;
+    
+    @Value("${live-feed.stream.heartbeat-interval-ms:25000}")
+    private long heartbeatIntervalMs;
+    
+    private final Map<Long, Set<Subscriber>> gameSubscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> competitionSubscribers = new ConcurrentHashMap<>();
+    
+    /**
+     * Latest frame of every key, by game id. Added when first live change of game is published, removed when game ends.
+     */
+    private final Map<Long, Map<String, Frame>> latestFrames = new ConcurrentHashMap<>();
+    
+    /**
+     * Competition id by game id of live games, 0 for games without competition.
+     */
+    private final Map<Long, Long> gameCompetitions = new ConcurrentHashMap<>();
+    
+    private final AtomicLong frameSequence = new AtomicLong();
+    private final AtomicInteger subscribersCount = new AtomicInteger();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    
+    private ScheduledThreadPoolExecutor sender;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        sender = new ScheduledThreadPoolExecutor(senderThreads, r -> new Thread(r, "live-feed-stream-" + threadNumber.incrementAndGet()));
+        sender.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        gameSubscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+        competitionSubscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+    }
+    
+    /**
+     * @throws BaseEntityNotFoundException if there is no visible game with {@code gameId}
+     */
+    public SseEmitter subscribeGame(Long gameId) {
+        if (!gameIdCache.contains(gameId)) {
+            throw new BaseEntityNotFoundException(gameId);
+        }
+        Subscriber subscriber = subscribe(gameSubscribers, gameId);
+        Map<String, Frame> frames = latestFrames.get(gameId);
+        if (frames != null) {
+            frames.values().forEach(subscriber::offer);
+        }
+        scheduleDrain(subscriber);
+        return subscriber.emitter;
+    }
+    
+    public SseEmitter subscribeCompetition(Long competitionId) {
+        Subscriber subscriber = subscribe(competitionSubscribers, competitionId);
+        gameCompetitions.forEach((gameId, id) -> {
+            Map<String, Frame> frames = latestFrames.get(gameId);
+            if (id.equals(competitionId) && frames != null) {
+                frames.values().forEach(subscriber::offer);
+            }
+        });
+        scheduleDrain(subscriber);
+        return subscriber.emitter;
+    }
+    
+    /**
+     * Publishes current score of live game. Must be called while holding monitor of {@code state}.
+     */
+    public void publishScore(Game game, LiveGameState state, GameStatus partStatus, LocalDateTime time) {
+        publish(game.getId(), registerLiveGame(game), "score", "score", new LiveScoreDto(game.getId(), game.getStatus(), 
+                state.getGamePartId(), partStatus, state.getPartPartyOneScore(), state.getPartPartyTwoScore(), 
+                state.getGamePartyOneScore(), state.getGamePartyTwoScore(), time));
+    }
+    
+    public void publishBetsClosed(Game game, BetLastCall lastCall) {
+        publish(game.getId(), registerLiveGame(game), "bets:" + lastCall, "bets-closed", new LiveBetsClosedDto(game.getId(), lastCall));
+    }
+    
+    /**
+     * @param competitionId - 0 for games without competition
+     */
+    public void publishOdd(Long gameId, Long competitionId, Long betOptionId, Long oddId, BigDecimal value, long version) {
+        publish(gameId, competitionId, "odd:" + betOptionId, "odd", new LiveOddDto(gameId, betOptionId, oddId, value, version));
+    }
+    
+    /**
+     * Forgets latest frames of ended game, called after its final score is published.
+     */
+    public void endGame(Long gameId) {
+        latestFrames.remove(gameId);
+        gameCompetitions.remove(gameId);
+    }
+    
+    /**
+     * Latest frame is kept only if game is live, frames of ended game are not added again.
+     */
+    private void publish(Long gameId, Long competitionId, String key, String name, Object payload) {
+        Frame frame;
+        try {
+            frame = new Frame(frameSequence.incrementAndGet(), gameId + ":" + key, name, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            log.error("could not serialize live game (id = {}) change", gameId, e);
+            return;
+        }
+        published.increment();
+        Map<String, Frame> frames = latestFrames.get(gameId);
+        if (frames != null) {
+            frames.merge(frame.key, frame, Frame::newer);
+        }
+        fanOut(gameSubscribers.get(gameId), frame);
+        fanOut(competitionSubscribers.get(competitionId), frame);
+    }
+    
+    private void fanOut(Set<Subscriber> subscribers, Frame frame) {
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(frame);
+                scheduleDrain(subscriber);
+            }
+        }
+    }
+    
+    /**
+     * Registers game as live, if it is not yet.
+     * @return competition id of game
+     */
+    private Long registerLiveGame(Game game) {
+        Long competitionId = gameCompetitions.computeIfAbsent(game.getId(), 
+                id -> game.getCompetition() != null ? game.getCompetition().getId() : 0L);
+        latestFrames.putIfAbsent(game.getId(), new ConcurrentHashMap<>());
+        return competitionId;
+    }
+    
+    private Subscriber subscribe(Map<Long, Set<Subscriber>> index, Long id) {
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter, index, id);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        index.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscribersCount.incrementAndGet();
+        return subscriber;
+    }
+    
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+    
+    private void scheduleDrain(Subscriber subscriber) {
+        if (!subscriber.pending.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Runs with {@code draining} flag set, so only one thread sends to subscriber at a time.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            for (String key : subscriber.pending.keySet()) {
+                Frame frame = subscriber.pending.remove(key);
+                if (frame != null && !subscriber.closed) {
+                    subscriber.emitter.send(SseEmitter.event().id(String.valueOf(frame.sequence)).name(frame.name)
+                            .data(frame.json, MediaType.APPLICATION_JSON));
+                    sent.increment();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("could not send live game frame, closing stream", e);
+            unregister(subscriber);
+            subscriber.emitter.complete();
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (!subscriber.closed) {
+            scheduleDrain(subscriber);
+        }
+    }
+    
+    /**
+     * Heartbeat is sent with {@code draining} flag set, so it is not sent concurrently with frames.
+     */
+    private void heartbeat() {
+        heartbeat(gameSubscribers);
+        heartbeat(competitionSubscribers);
+    }
+    
+    private void heartbeat(Map<Long, Set<Subscriber>> index) {
+        index.values().forEach(set -> set.forEach(subscriber -> {
+            if (subscriber.pending.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | RuntimeException e) {
+                    log.debug("could not send live feed heartbeat, closing stream", e);
+                    unregister(subscriber);
+                    subscriber.emitter.complete();
+                } finally {
+                    subscriber.draining.set(false);
+                }
+                if (!subscriber.closed) {
+                    scheduleDrain(subscriber);
+                }
+            }
+        }));
+    }
+    
+    private void unregister(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscriber.pending.clear();
+        Set<Subscriber> subscribers = subscriber.index.get(subscriber.id);
+        if (subscribers != null && subscribers.remove(subscriber)) {
+            subscribersCount.decrementAndGet();
+            subscriber.index.computeIfPresent(subscriber.id, (id, set) -> set.isEmpty() ? null : set);
+        }
+    }
+    
+    @ManagedAttribute(description = "Number of open live game streams")
+    public int getSubscribers() {
+        return subscribersCount.get();
+    }
+    
+    @ManagedAttribute(description = "Number of serialized changes")
+    public long getPublished() {
+        return published.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of frames sent to subscribers")
+    public long getSent() {
+        return sent.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of frames replaced by newer frame before they were sent")
+    public long getConflated() {
+        return conflated.sum();
+    }
+    
+    private static final class Frame {
+        
+        private final long sequence;
+        private final String key;
+        private final String name;
+        private final String json;
+        
+        private Frame(long sequence, String key, String name, String json) {
+            this.sequence = sequence;
+            this.key = key;
+            this.name = name;
+            this.json = json;
+        }
+        
+        private static Frame newer(Frame a, Frame b) {
+            return a.sequence >= b.sequence ? a : b;
+        }
+    }
+    
+    private final class Subscriber {
+        
+        private final SseEmitter emitter;
+        private final Map<Long, Set<Subscriber>> index;
+        private final Long id;
+        private final Map<String, Frame> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        
+        private volatile boolean closed;
+        
+        private Subscriber(SseEmitter emitter, Map<Long, Set<Subscriber>> index, Long id) {
+            this.emitter = emitter;
+            this.index = index;
+            this.id = id;
+        }
+        
+        private void offer(Frame frame) {
+            if (closed) {
+                return;
+            }
+            Frame previous = pending.put(frame.key, frame);
+            if (previous != null) {
+                conflated.increment();
+                // snapshot frame offered on subscribe may be older than live one
+                if (previous.sequence > frame.sequence) {
+                    pending.merge(frame.key, previous, Frame::newer);
+                }
+            }
+        }
+    }
+
+}
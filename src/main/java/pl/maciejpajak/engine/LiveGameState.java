@@ -0,0 +1,126 @@
+package pl.maciejpajak.engine;
+
+import pl.maciejpajak.domain.util.GameResult;
+import pl.maciejpajak.domain.util.ScoreType;
+
+/**
+ * Current scoring state of live game: current game part and running part and game scores.
+ * Events are applied in place, all mutators must be called while holding this object's monitor.
+ * 
+ * @author mac
+ *
+ */
+public final class LiveGameState {
+
+    private final long gameId;
+    private final ScoreType scoreType;
+    
+    private long gamePartId;
+    private int partPartyOneScore;
+    private int partPartyTwoScore;
+    private int gamePartyOneScore;
+    private int gamePartyTwoScore;
+    
+    LiveGameState(long gameId, ScoreType scoreType) {
+        this.gameId = gameId;
+        this.scoreType = scoreType;
+    }
+    
+    void startGame() {
+        gamePartyOneScore = 0;
+        gamePartyTwoScore = 0;
+    }
+    
+    void startPart(long gamePartId) {
+        this.gamePartId = gamePartId;
+        partPartyOneScore = 0;
+        partPartyTwoScore = 0;
+    }
+    
+    void setGamePartId(long gamePartId) {
+        this.gamePartId = gamePartId;
+    }
+    
+    /**
+     * Adds points to current part score and, for {@code TOTAL_POINTS} games, to game score.
+     * @return true if game score has changed
+     */
+    boolean score(boolean partyOne, int value) {
+        if (partyOne) {
+            partPartyOneScore += value;
+        } else {
+            partPartyTwoScore += value;
+        }
+        if (scoreType == ScoreType.TOTAL_POINTS) {
+            addToGameScore(partyOne, value);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Ends current part and, for {@code WON_PART_POINTS} games, gives one point to part winner.
+     * @return true if game score has changed
+     */
+    boolean endPart() {
+        if (scoreType == ScoreType.WON_PART_POINTS && partPartyOneScore != partPartyTwoScore) {
+            addToGameScore(partPartyOneScore > partPartyTwoScore, 1);
+            return true;
+        }
+        return false;
+    }
+    
+    private void addToGameScore(boolean partyOne, int value) {
+        if (partyOne) {
+            gamePartyOneScore += value;
+        } else {
+            gamePartyTwoScore += value;
+        }
+    }
+    
+    public GameResult getPartResult() {
+        return result(partPartyOneScore, partPartyTwoScore);
+    }
+    
+    public GameResult getGameResult() {
+        return result(gamePartyOneScore, gamePartyTwoScore);
+    }
+    
+    private static GameResult result(int partyOneScore, int partyTwoScore) {
+        if (partyOneScore > partyTwoScore) {
+            return GameResult.PARTY_ONE_WON;
+        } else if (partyOneScore == partyTwoScore) {
+            return GameResult.DRAW;
+        }
+        return GameResult.PARTY_TWO_WON;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    public ScoreType getScoreType() {
+        return scoreType;
+    }
+
+    public long getGamePartId() {
+        return gamePartId;
+    }
+
+    public int getPartPartyOneScore() {
+        return partPartyOneScore;
+    }
+
+    public int getPartPartyTwoScore() {
+        return partPartyTwoScore;
+    }
+
+    public int getGamePartyOneScore() {
+        return gamePartyOneScore;
+    }
+
+    public int getGamePartyTwoScore() {
+        return gamePartyTwoScore;
+    }
+    
+}
@@ -0,0 +1,117 @@
+package pl.maciejpajak.engine;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.domain.game.Event;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.game.GamePart;
+import pl.maciejpajak.domain.util.EventType;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.repository.EventRepository;
+import pl.maciejpajak.repository.GamePartRepository;
+import pl.maciejpajak.repository.GameRepository;
+
+/**
+ * Holds {@link LiveGameState} of live games, keyed by game id.
+ * On startup state of live games is rebuilt by replaying their events from database.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class LiveGameStateStore {
+    
+    private static final Logger log = LoggerFactory.getLogger(LiveGameStateStore.class);
+    
+    @Autowired
+    private EventRepository eventRepository;
+    
+    @Autowired
+    private GamePartRepository gamePartRepository;
+    
+    @Autowired
+    private GameRepository gameRepository;
+    
+    private final Map<Long, LiveGameState> states = new ConcurrentHashMap<>();
+    
+    /**
+     * Rebuilds state of all live games, runs before application starts receiving events.
+     */
+    @PostConstruct
+    public void rebuildAll() {
+        gameRepository.findAllByStatusAndVisible(GameStatus.LIVE, true).forEach(g -> states.put(g.getId(), rebuild(g)));
+        log.debug("rebuilt state of {} live games", states.size());
+    }
+    
+    /**
+     * Returns state of {@code game}, creates empty state for game which has just started.
+     * @param game
+     * @return live game state
+     */
+    public LiveGameState get(Game game) {
+        return states.computeIfAbsent(game.getId(), id -> new LiveGameState(id, game.getScoreType()));
+    }
+    
+    /**
+     * Returns state of game with {@code gameId} or null if game is not live.
+     */
+    public LiveGameState find(Long gameId) {
+        return states.get(gameId);
+    }
+    
+    public void remove(Long gameId) {
+        states.remove(gameId);
+    }
+    
+    /**
+     * Rebuilds state of game from its saved events, or removes it if game is not live. 
+     * Called when handling of game's events was rolled back.
+     */
+    public void rebuild(Long gameId) {
+        Optional<Game> game = gameRepository.findOneByIdAndVisible(gameId, true).filter(g -> g.getStatus() == GameStatus.LIVE);
+        if (game.isPresent()) {
+            states.put(gameId, rebuild(game.get()));
+        } else {
+            states.remove(gameId);
+        }
+    }
+    
+    private LiveGameState rebuild(Game game) {
+        LiveGameState state = new LiveGameState(game.getId(), game.getScoreType());
+        for (Event e : eventRepository.findAllByGameIdAndVisibleOrderByTimeAscIdAsc(game.getId(), true)) {
+            switch (e.getEventType()) {
+            case GAME_START:
+                state.startGame();
+                break;
+            case GAME_PART_START:
+                state.startPart(0L);
+                break;
+            case GAME_PART_END:
+                state.endPart();
+                break;
+            case PARTY_ONE_SCORED:
+            case PARTY_TWO_SCORED:
+                state.score(e.getEventType() == EventType.PARTY_ONE_SCORED, e.getValue());
+                break;
+            case GAME_END:
+                break;
+            }
+        }
+        // events do not carry part ids, current part is taken from database
+        gamePartRepository.findTopByGameIdAndVisibleOrderByStartTimeDesc(game.getId(), true)
+                .map(GamePart::getId)
+                .ifPresent(state::setGamePartId);
+        log.debug("rebuilt state of game (id = {}) from events", game.getId());
+        return state;
+    }
+
+}
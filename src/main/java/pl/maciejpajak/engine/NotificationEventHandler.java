@@ -5,13 +5,10 @@ import java.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import pl.maciejpajak.domain.notification.Notification;
-import pl.maciejpajak.domain.user.User;
 import pl.maciejpajak.event.NotifyUserEvent;
-import pl.maciejpajak.repository.NotificationRepository;
 
 @Component
 public class NotificationEventHandler {
@@ -19,24 +16,18 @@ public class NotificationEventHandler {
     private static final Logger log = LoggerFactory.getLogger(NotificationEventHandler.class);
 
     @Autowired
-    private NotificationRepository notificationRepository;
+    private NotificationWriter notificationWriter;
 
     /**
-     * Creates new user notification and saves it in database.
+     * Creates new user notification and queues it for writing. Events published in transaction
+     * are handled after commit, so rolled back work does not notify anybody.
      * @param event
      */
-    @EventListener
+    @TransactionalEventListener(fallbackExecution = true)
     public void handleNotifyUserEvent(NotifyUserEvent event) {
-        log.debug("Saving user (id = {}) notification (type = {})", event.getUserId(), event.getNotificationType());
-        notificationRepository.save(
-                Notification.builder()
-                    .created(LocalDateTime.now())
-                    .objectId(event.getObjectId())
-                    .read(false)
-                    .user(User.builder().id(event.getUserId()).build())
-                    .objectId(event.getObjectId())
-                    .message(event.getNotificationType().getMessage())
-                    .build());
+        log.debug("Queueing user (id = {}) notification (type = {})", event.getUserId(), event.getNotificationType());
+        notificationWriter.write(event.getUserId(), event.getObjectId(),
+                event.getNotificationType().getMessage(), LocalDateTime.now());
     }
     
 }
@@ -0,0 +1,294 @@
+package pl.maciejpajak.engine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.domain.notification.Notification;
+import pl.maciejpajak.service.NotificationStreamRegistry;
+
+/**
+ * Persists user notifications asynchronously. Notifications are queued in bounded queue and inserted
+ * in batches by single writer thread every {@code notification.flush-interval-ms}, or as soon as full
+ * batch is waiting. When queue is full producer waits up to {@code notification.offer-timeout-ms},
+ * after that notification is dropped and counted. Queued notifications are written on shutdown.
+ * Each batch is inserted with one JDBC batch and AUTO_INCREMENT ids are read back as generated keys.
+ * Persisted notifications are pushed to {@link NotificationStreamRegistry}.
+ * 
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=NotificationWriter", description = "Notification writer statistics")
+public class NotificationWriter {
+    
+    private static final Logger log = LoggerFactory.getLogger(NotificationWriter.class);
+    
+    private static final String INSERT_NOTIFICATION_SQL = 
+            "INSERT INTO notification (user_id, object_id, message, created, is_read) VALUES (?, ?, ?, ?, false)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private NotificationStreamRegistry notificationStreamRegistry;
+    
+    @Value("${notification.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${notification.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${notification.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    @Value("${notification.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+    
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    
+    private BlockingQueue<PendingNotification> pending;
+    
+    /**
+     * Set while early flush is queued in scheduler, so full queue requests only one.
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    
+    private ScheduledExecutorService scheduler;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "notification-writer"));
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("notification writer stopped, written = {}, dropped = {}", written.sum(), dropped.sum());
+    }
+    
+    /**
+     * Queues notification for writing.
+     * @return {@code false} if queue stayed full for whole offer timeout and notification was dropped
+     */
+    public boolean write(Long userId, Long objectId, String message, LocalDateTime created) {
+        PendingNotification notification = new PendingNotification(userId, objectId, message, created);
+        boolean queued;
+        try {
+            queued = pending.offer(notification) || pending.offer(notification, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            dropped.increment();
+            log.warn("notification queue full, dropped notification for user (id = {})", userId);
+            return false;
+        }
+        enqueued.increment();
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    // cleared before flush, notifications queued meanwhile may request next one
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down, queue is flushed in shutdown()
+                flushRequested.set(false);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Inserts all queued notifications. Batch which could not be inserted is inserted row by row, 
+     * only rows which still fail are dropped.
+     */
+    public synchronized void flush() {
+        List<PendingNotification> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        while (pending.drainTo(batch, batchSize) > 0) {
+            List<Notification> persisted;
+            try {
+                persisted = insert(batch);
+                batches.increment();
+            } catch (RuntimeException e) {
+                log.warn("could not persist batch of {} notifications, inserting them one by one", batch.size(), e);
+                try {
+                    insertOneByOne(batch);
+                } finally {
+                    batch.clear();
+                }
+                continue;
+            }
+            publish(batch, persisted);
+            batch.clear();
+        }
+    }
+    
+    private void insertOneByOne(List<PendingNotification> batch) {
+        for (int i = 0 ; i < batch.size() ; i++) {
+            List<PendingNotification> row = batch.subList(i, i + 1);
+            List<Notification> persisted;
+            try {
+                persisted = insert(row);
+            } catch (CannotCreateTransactionException | TransientDataAccessException e) {
+                // database is unavailable, not this row
+                failed.add(batch.size() - i);
+                throw e;
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("dropping notification for user (id = {}) which could not be persisted", row.get(0).userId, e);
+                continue;
+            }
+            publish(row, persisted);
+        }
+    }
+    
+    private void publish(List<PendingNotification> rows, List<Notification> persisted) {
+        written.add(persisted.size());
+        for (int i = 0 ; i < persisted.size() ; i++) {
+            notificationStreamRegistry.publish(rows.get(i).userId, persisted.get(i));
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("could not persist notifications", e);
+        }
+    }
+    
+    /**
+     * Inserts rows in one JDBC batch and reads their AUTO_INCREMENT ids back, in one transaction.
+     * @throws IllegalStateException if driver did not return id of every row, nothing is inserted then
+     */
+    private List<Notification> insert(List<PendingNotification> rows) {
+        List<Notification> persisted = transactionTemplate.execute(status -> jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_NOTIFICATION_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PendingNotification pn : rows) {
+                    ps.setObject(1, pn.userId, Types.BIGINT);
+                    ps.setObject(2, pn.objectId, Types.BIGINT);
+                    ps.setString(3, pn.message);
+                    ps.setTimestamp(4, pn.created == null ? null : Timestamp.valueOf(pn.created));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Notification> result = new ArrayList<>(rows.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next() && result.size() < rows.size()) {
+                        PendingNotification pn = rows.get(result.size());
+                        result.add(Notification.builder()
+                                .id(keys.getLong(1))
+                                .objectId(pn.objectId)
+                                .message(pn.message)
+                                .created(pn.created)
+                                .read(false)
+                                .build());
+                    }
+                }
+                if (result.size() != rows.size()) {
+                    throw new IllegalStateException("driver returned " + result.size() + " ids of " + rows.size() + " inserted notifications");
+                }
+                return result;
+            }
+        }));
+        log.debug("persisted {} notifications", rows.size());
+        return persisted;
+    }
+    
+    @ManagedAttribute(description = "Number of queued notifications")
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of persisted notifications")
+    public long getWritten() {
+        return written.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of notifications dropped because queue was full")
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of notifications lost because they could not be inserted")
+    public long getFailed() {
+        return failed.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of inserted batches")
+    public long getBatches() {
+        return batches.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of notifications waiting in queue")
+    public int getQueueDepth() {
+        return pending.size();
+    }
+    
+    private static final class PendingNotification {
+        
+        private final Long userId;
+        private final Long objectId;
+        private final String message;
+        private final LocalDateTime created;
+        
+        private PendingNotification(Long userId, Long objectId, String message, LocalDateTime created) {
+            this.userId = userId;
+            this.objectId = objectId;
+            this.message = message;
+            this.created = created;
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package pl.maciejpajak.engine;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.game.GamePart;
+import pl.maciejpajak.domain.game.score.GameScore;
+import pl.maciejpajak.domain.game.score.PartScore;
+
+/**
+ * Persists score rows of live games asynchronously. Scores are queued by {@link GameEventHandler}
+ * and inserted in batches, one transaction per batch, every {@code live-score.flush-interval-ms}.
+ * Batch which could not be inserted is retried row by row, rows which still fail are logged as dead letters
+ * and dropped, so one bad row does not stop score persistence of all games.
+ * 
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=ScoreWriter", description = "Live score writer statistics")
+public class ScoreWriter {
+    
+    private static final Logger log = LoggerFactory.getLogger(ScoreWriter.class);
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${live-score.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    @Value("${live-score.batch-size:500}")
+    private int batchSize;
+    
+    private final LinkedBlockingDeque<PendingScore> pending = new LinkedBlockingDeque<>();
+    
+    private final LongAdder written = new LongAdder();
+    private final LongAdder deadLetters = new LongAdder();
+    
+    private ScheduledExecutorService scheduler;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // flush is also called by event handlers, failed row must not roll back their transaction
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "score-writer"));
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+    
+    public void writePartScore(long gamePartId, int partyOneScore, int partyTwoScore, LocalDateTime time) {
+        pending.add(new PendingScore(false, gamePartId, partyOneScore, partyTwoScore, time));
+    }
+    
+    public void writeGameScore(long gameId, int partyOneScore, int partyTwoScore, LocalDateTime time) {
+        pending.add(new PendingScore(true, gameId, partyOneScore, partyTwoScore, time));
+    }
+    
+    /**
+     * Inserts all queued scores. Called before reading latest score rows from database.
+     * When a batch could not be inserted its rows are inserted one by one and rows which fail are dead-lettered.
+     * When database can not be reached remaining rows are put back at the head of the queue and exception is rethrown.
+     */
+    public synchronized void flush() {
+        List<PendingScore> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        while (pending.drainTo(batch, batchSize) > 0) {
+            try {
+                insert(batch);
+                written.add(batch.size());
+            } catch (RuntimeException e) {
+                log.warn("could not persist batch of {} live scores, inserting them one by one", batch.size(), e);
+                insertOneByOne(batch);
+            }
+            batch.clear();
+        }
+    }
+    
+    private void insertOneByOne(List<PendingScore> batch) {
+        for (int i = 0 ; i < batch.size() ; i++) {
+            PendingScore ps = batch.get(i);
+            try {
+                insert(Collections.singletonList(ps));
+                written.increment();
+            } catch (CannotCreateTransactionException | TransientDataAccessException e) {
+                // database is unavailable, not this row
+                requeue(batch.subList(i, batch.size()));
+                throw e;
+            } catch (RuntimeException e) {
+                deadLetters.increment();
+                log.error("dropping live score which could not be persisted: {}", ps, e);
+            }
+        }
+    }
+    
+    private void requeue(List<PendingScore> rows) {
+        for (int i = rows.size() - 1 ; i >= 0 ; i--) {
+            pending.addFirst(rows.get(i));
+        }
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("could not reach database, {} live scores will be retried", pending.size(), e);
+        }
+    }
+    
+    private void insert(List<PendingScore> batch) {
+        transactionTemplate.execute(status -> {
+            for (PendingScore ps : batch) {
+                if (ps.gameScore) {
+                    entityManager.persist(new GameScore(null, ps.partyOneScore, ps.partyTwoScore, ps.time,
+                            entityManager.getReference(Game.class, ps.ownerId)));
+                } else {
+                    entityManager.persist(new PartScore(null, ps.partyOneScore, ps.partyTwoScore, ps.time,
+                            entityManager.getReference(GamePart.class, ps.ownerId)));
+                }
+            }
+            return null;
+        });
+        log.debug("persisted {} live scores", batch.size());
+    }
+    
+    @ManagedAttribute(description = "Number of persisted live scores")
+    public long getWritten() {
+        return written.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of live scores dropped because they could not be persisted")
+    public long getDeadLetters() {
+        return deadLetters.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of live scores waiting in queue")
+    public int getQueueDepth() {
+        return pending.size();
+    }
+    
+    private static final class PendingScore {
+        
+        private final boolean gameScore;
+        private final long ownerId;
+        private final int partyOneScore;
+        private final int partyTwoScore;
+        private final LocalDateTime time;
+        
+        private PendingScore(boolean gameScore, long ownerId, int partyOneScore, int partyTwoScore, LocalDateTime time) {
+            this.gameScore = gameScore;
+            this.ownerId = ownerId;
+            this.partyOneScore = partyOneScore;
+            this.partyTwoScore = partyTwoScore;
+            this.time = time;
+        }
+        
+        @Override
+        public String toString() {
+            return (gameScore ? "game" : "game part") + " (id = " + ownerId + ") " + partyOneScore + " : " + partyTwoScore + " at " + time;
+        }
+    }
+
+}
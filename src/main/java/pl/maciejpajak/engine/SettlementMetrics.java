@@ -0,0 +1,90 @@
+package pl.maciejpajak.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.config.AsyncConfig;
+
+/**
+ * Bet settlement statistics, exported over JMX.
+ * 
+ * @author mac
+ *
+ */
+@Component
+@ManagedResource(objectName = "pl.maciejpajak:type=Settlement", description = "Bet settlement statistics")
+public class SettlementMetrics {
+    
+    private final ThreadPoolTaskExecutor settlementExecutor;
+    
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder resolvedBetOptions = new LongAdder();
+    private final LongAdder settledCoupons = new LongAdder();
+    private final LongAdder totalTimeNanos = new LongAdder();
+    
+    private volatile long lastRunMillis;
+    private volatile double lastRunCouponsPerSecond;
+    
+    @Autowired
+    public SettlementMetrics(@Qualifier(AsyncConfig.SETTLEMENT_EXECUTOR) ThreadPoolTaskExecutor settlementExecutor) {
+        this.settlementExecutor = settlementExecutor;
+    }
+    
+    public void recordRun(int betOptionsCount, int couponsCount, long elapsedNanos) {
+        runs.increment();
+        resolvedBetOptions.add(betOptionsCount);
+        settledCoupons.add(couponsCount);
+        totalTimeNanos.add(elapsedNanos);
+        lastRunMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        lastRunCouponsPerSecond = elapsedNanos > 0 ? couponsCount * 1e9 / elapsedNanos : 0;
+    }
+
+    @ManagedAttribute(description = "Number of finished settlement runs")
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    @ManagedAttribute(description = "Number of resolved bet options")
+    public long getResolvedBetOptions() {
+        return resolvedBetOptions.sum();
+    }
+
+    @ManagedAttribute(description = "Number of processed coupons")
+    public long getSettledCoupons() {
+        return settledCoupons.sum();
+    }
+    
+    @ManagedAttribute(description = "Average number of processed coupons per second")
+    public double getCouponsPerSecond() {
+        long nanos = totalTimeNanos.sum();
+        return nanos > 0 ? settledCoupons.sum() * 1e9 / nanos : 0;
+    }
+
+    @ManagedAttribute(description = "Duration of last settlement run in milliseconds")
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    @ManagedAttribute(description = "Number of processed coupons per second in last run")
+    public double getLastRunCouponsPerSecond() {
+        return lastRunCouponsPerSecond;
+    }
+    
+    @ManagedAttribute(description = "Number of settlement partitions waiting in executor queue")
+    public int getQueueDepth() {
+        return settlementExecutor.getThreadPoolExecutor().getQueue().size();
+    }
+    
+    @ManagedAttribute(description = "Number of settlement partitions being processed")
+    public int getActivePartitions() {
+        return settlementExecutor.getActiveCount();
+    }
+    
+}
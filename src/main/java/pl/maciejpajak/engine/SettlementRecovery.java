@@ -0,0 +1,53 @@
+package pl.maciejpajak.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.SettlementRunStatus;
+import pl.maciejpajak.repository.BetRepository;
+import pl.maciejpajak.repository.GameRepository;
+import pl.maciejpajak.repository.SettlementRunRepository;
+
+/**
+ * Resumes settlement runs interrupted by shutdown or crash, from their last checkpoints.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class SettlementRecovery {
+    
+    private static final Logger log = LoggerFactory.getLogger(SettlementRecovery.class);
+    
+    @Autowired
+    private SettlementRunRepository settlementRunRepository;
+    
+    @Autowired
+    private GameRepository gameRepository;
+    
+    @Autowired
+    private BetRepository betRepository;
+    
+    @Autowired
+    private BetResolver betResolver;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRuns() {
+        for (Long gameId : settlementRunRepository.findAllGamesIdsByStatus(SettlementRunStatus.RUNNING)) {
+            Game game = gameRepository.findOneWithFinalScoreById(gameId).orElse(null);
+            if (game == null) {
+                log.warn("could not resume settlement, game (id = {}) not found", gameId);
+                continue;
+            }
+            log.info("resuming interrupted settlement of game (id = {})", gameId);
+            // resolved asynchronously, final score is fetched as win conditions read it from detached game
+            betResolver.resolve(game, betRepository.findAllByGameIdAndVisible(gameId, true));
+        }
+    }
+
+}
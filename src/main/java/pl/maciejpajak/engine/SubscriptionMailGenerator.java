@@ -1,20 +1,39 @@
 package pl.maciejpajak.engine;
 
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
-import javax.transaction.Transactional;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import pl.maciejpajak.repository.CompetitionNewsRepository;
-import pl.maciejpajak.repository.UserRepository;
+import pl.maciejpajak.repository.SubscriptionDigestRow;
 
 /**
  * Class handles sending emails with subscriptions.
+ * <p>
+ * Unsent news are matched with subscribers in one streamed query ordered by user. Users are cut into chunks of
+ * {@code subscription-mail.chunk-size}, every chunk is turned into digests and sent in batch by one of 
+ * {@code subscription-mail.threads} workers. News are marked as sent only after all chunks are sent, so failed run 
+ * is repeated in full next time.
  * 
  * @author mac
  *
@@ -24,53 +43,118 @@ public class SubscriptionMailGenerator {
     
     private static final Logger log = LoggerFactory.getLogger(SubscriptionMailGenerator.class);
     
-//    @Autowired
-//    private JavaMailSender javaMailSender;
+    private static final String SUBJECT = "Subscription";
     
     @Autowired
-    private UserRepository userRepository;
+    private CompetitionNewsRepository competitionNewsRepository;
     
     @Autowired
-    private CompetitionNewsRepository competitionNewsRepository;
+    private SubscriptionMailSender subscriptionMailSender;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${subscription-mail.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${subscription-mail.threads:4}")
+    private int threads;
+    
+    private ThreadPoolExecutor executor;
+    
+    private TransactionTemplate readOnlyTransactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // reader runs chunk itself when workers fall behind, so at most few chunks are held in memory
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads),
+                r -> new Thread(r, "subscription-mail-" + threadNumber.incrementAndGet()), new ThreadPoolExecutor.CallerRunsPolicy());
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
     
     /**
      * Creates email messages with subscriptions and sends them to users,
      * every day at midnight.
      */
-    @Transactional
-    @Scheduled(cron = "0 0 * * * *")
+    @Scheduled(cron = "0 0 0 * * *")
     public void sendSubscriptions() {
-        userRepository.findAllByVisible(true).forEach(u -> {
-            StringBuilder sb = new StringBuilder();
-            competitionNewsRepository
-                .findAllBySentAndCompetitionCompetitionPreferencesUserIdAndCompetitionCompetitionPreferencesSubscribed(false, u.getId(), true)
-                .stream().forEach(n -> 
-                    sb.append(n.getContent()).append("\n")
-                );
-            if (sb.length() != 0) {
-                sendSimpleMessage(u.getEmail(), "Subscription", sb.toString());
+        Long maxNewsId = competitionNewsRepository.findMaxUnsentId();
+        if (maxNewsId == null) {
+            return;
+        }
+        List<Future<?>> chunks = new ArrayList<>();
+        AtomicInteger usersCount = new AtomicInteger();
+        readOnlyTransactionTemplate.execute(status -> {
+            try (Stream<SubscriptionDigestRow> rows = competitionNewsRepository.streamAllUnsentForSubscribers(maxNewsId)) {
+                Iterator<SubscriptionDigestRow> it = rows.iterator();
+                List<Digest> chunk = new ArrayList<>(chunkSize);
+                Digest digest = null;
+                while (it.hasNext()) {
+                    SubscriptionDigestRow row = it.next();
+                    if (digest == null || !digest.userId.equals(row.getUserId())) {
+                        if (chunk.size() == chunkSize) {
+                            chunks.add(submit(chunk));
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                        digest = new Digest(row.getUserId(), row.getEmail());
+                        chunk.add(digest);
+                        usersCount.incrementAndGet();
+                    }
+                    digest.content.append(row.getContent()).append("\n");
+                }
+                if (!chunk.isEmpty()) {
+                    chunks.add(submit(chunk));
+                }
             }
+            return null;
         });
-        competitionNewsRepository.save(competitionNewsRepository
-                            .findAllBySent(false).stream().peek(n -> n.setSent(true)).collect(Collectors.toList()));
+        
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (ExecutionException e) {
+                log.error("could not send subscriptions, news up to id = {} stay unsent", maxNewsId, e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        int marked = competitionNewsRepository.markSentUpTo(maxNewsId);
+        log.debug("sent subscriptions to {} users in {} chunks, {} news marked as sent", usersCount.get(), chunks.size(), marked);
     }
     
-    /**
-     * Sends email {@code to} with {@code subject} and content {@code text}
-     * @param to - recipient email
-     * @param subject - message subject
-     * @param text - message content
-     */
-    private void sendSimpleMessage (
-            String to, String subject, String text) {
-        log.debug("sending new message TO: {}\nSUBJECT: {}\nCONTENT: {}", to, subject, text);
+    private Future<?> submit(List<Digest> chunk) {
+        return executor.submit(() -> {
+            List<SimpleMailMessage> messages = new ArrayList<>(chunk.size());
+            for (Digest digest : chunk) {
+                SimpleMailMessage message = new SimpleMailMessage();
+                message.setTo(digest.email);
+                message.setSubject(SUBJECT);
+                message.setText(digest.content.toString());
+                messages.add(message);
+            }
+            subscriptionMailSender.sendAll(messages);
+        });
+    }
+    
+    private static final class Digest {
+        
+        private final Long userId;
+        private final String email;
+        private final StringBuilder content = new StringBuilder();
         
-        // for demonstration purposes email sending is only mocked
-//        SimpleMailMessage message = new SimpleMailMessage();
-//        message.setTo(to);
-//        message.setSubject(subject);
-//        message.setText(text);
-//        javaMailSender.send(message);
+        private Digest(Long userId, String email) {
+            this.userId = userId;
+            this.email = email;
+        }
     }
 
 }
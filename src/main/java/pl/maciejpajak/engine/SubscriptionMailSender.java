@@ -0,0 +1,42 @@
+package pl.maciejpajak.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends subscription emails in batches, one SMTP connection per batch. 
+ * When no mail server is configured ({@code spring.mail.host}) sending is only mocked.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class SubscriptionMailSender {
+    
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionMailSender.class);
+    
+    @Autowired(required = false)
+    private JavaMailSender javaMailSender;
+    
+    public void sendAll(List<SimpleMailMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (javaMailSender == null) {
+            // for demonstration purposes email sending is only mocked
+            messages.forEach(m -> log.debug("sending new message TO: {}\nSUBJECT: {}\nCONTENT: {}", 
+                    Arrays.toString(m.getTo()), m.getSubject(), m.getText()));
+            return;
+        }
+        javaMailSender.send(messages.toArray(new SimpleMailMessage[messages.size()]));
+        log.debug("sent {} subscription messages", messages.size());
+    }
+
+}
@@ -0,0 +1,32 @@
+package pl.maciejpajak.engine.condition;
+
+/**
+ * Node of compiled win condition tree. Parser guarantees that only the accessor
+ * matching {@link #getType()} is ever called, so numeric and boolean nodes are
+ * evaluated on primitives only.
+ */
+abstract class Expression {
+    
+    private final ValueType type;
+    
+    Expression(ValueType type) {
+        this.type = type;
+    }
+    
+    ValueType getType() {
+        return type;
+    }
+    
+    double asNumber(Object root) {
+        throw new UnsupportedOperationException(type + " expression is not a number");
+    }
+    
+    boolean asBoolean(Object root) {
+        throw new UnsupportedOperationException(type + " expression is not a boolean");
+    }
+    
+    String asString(Object root) {
+        throw new UnsupportedOperationException(type + " expression is not a string");
+    }
+    
+}
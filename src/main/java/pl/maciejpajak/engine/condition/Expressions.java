@@ -0,0 +1,233 @@
+package pl.maciejpajak.engine.condition;
+
+/**
+ * Node implementations of compiled win condition tree.
+ */
+final class Expressions {
+    
+    private Expressions() {}
+    
+    static final class NumberLiteral extends Expression {
+        private final double value;
+        NumberLiteral(double value) {
+            super(ValueType.NUMBER);
+            this.value = value;
+        }
+        @Override
+        double asNumber(Object root) {
+            return value;
+        }
+    }
+    
+    static final class BooleanLiteral extends Expression {
+        private final boolean value;
+        BooleanLiteral(boolean value) {
+            super(ValueType.BOOLEAN);
+            this.value = value;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return value;
+        }
+    }
+    
+    static final class StringLiteral extends Expression {
+        private final String value;
+        StringLiteral(String value) {
+            super(ValueType.STRING);
+            this.value = value;
+        }
+        @Override
+        String asString(Object root) {
+            return value;
+        }
+    }
+    
+    /**
+     * Placeholder used outside of string literal, ex. {@code {game.gameFinalScore.partyOneScore} > 1}.
+     */
+    static final class PathValue extends Expression {
+        private final PropertyAccessor accessor;
+        PathValue(PropertyAccessor accessor) {
+            super(accessor.getType());
+            this.accessor = accessor;
+        }
+        @Override
+        double asNumber(Object root) {
+            return accessor.getNumber(root);
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return accessor.getBoolean(root);
+        }
+        @Override
+        String asString(Object root) {
+            return accessor.get(root).toString();
+        }
+    }
+    
+    /**
+     * String literal with placeholders inside, ex. {@code '{game.result}' == 'DRAW'}.
+     * Parts are either {@code String} or {@link PropertyAccessor}.
+     */
+    static final class StringTemplate extends Expression {
+        private final Object[] parts;
+        StringTemplate(Object[] parts) {
+            super(ValueType.STRING);
+            this.parts = parts;
+        }
+        @Override
+        String asString(Object root) {
+            StringBuilder sb = new StringBuilder();
+            for (Object part : parts) {
+                sb.append(part instanceof PropertyAccessor ? ((PropertyAccessor) part).get(root) : part);
+            }
+            return sb.toString();
+        }
+    }
+    
+    static final class Not extends Expression {
+        private final Expression operand;
+        Not(Expression operand) {
+            super(ValueType.BOOLEAN);
+            this.operand = operand;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return !operand.asBoolean(root);
+        }
+    }
+    
+    static final class Negate extends Expression {
+        private final Expression operand;
+        Negate(Expression operand) {
+            super(ValueType.NUMBER);
+            this.operand = operand;
+        }
+        @Override
+        double asNumber(Object root) {
+            return -operand.asNumber(root);
+        }
+    }
+    
+    static final class Arithmetic extends Expression {
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+        Arithmetic(Operator operator, Expression left, Expression right) {
+            super(ValueType.NUMBER);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        double asNumber(Object root) {
+            double l = left.asNumber(root);
+            double r = right.asNumber(root);
+            switch (operator) {
+            case ADD: return l + r;
+            case SUB: return l - r;
+            case MUL: return l * r;
+            case DIV: return l / r;
+            case MOD: return l % r;
+            default: throw new IllegalStateException("not an arithmetic operator: " + operator);
+            }
+        }
+    }
+    
+    static final class NumberComparison extends Expression {
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+        NumberComparison(Operator operator, Expression left, Expression right) {
+            super(ValueType.BOOLEAN);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            double l = left.asNumber(root);
+            double r = right.asNumber(root);
+            switch (operator) {
+            case EQ: return l == r;
+            case NE: return l != r;
+            case LT: return l < r;
+            case LE: return l <= r;
+            case GT: return l > r;
+            case GE: return l >= r;
+            default: throw new IllegalStateException("not a comparison operator: " + operator);
+            }
+        }
+    }
+    
+    static final class StringComparison extends Expression {
+        private final Operator operator;
+        private final Expression left;
+        private final Expression right;
+        StringComparison(Operator operator, Expression left, Expression right) {
+            super(ValueType.BOOLEAN);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            int cmp = left.asString(root).compareTo(right.asString(root));
+            switch (operator) {
+            case EQ: return cmp == 0;
+            case NE: return cmp != 0;
+            case LT: return cmp < 0;
+            case LE: return cmp <= 0;
+            case GT: return cmp > 0;
+            case GE: return cmp >= 0;
+            default: throw new IllegalStateException("not a comparison operator: " + operator);
+            }
+        }
+    }
+    
+    static final class BooleanEquality extends Expression {
+        private final boolean negated;
+        private final Expression left;
+        private final Expression right;
+        BooleanEquality(boolean negated, Expression left, Expression right) {
+            super(ValueType.BOOLEAN);
+            this.negated = negated;
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return (left.asBoolean(root) == right.asBoolean(root)) != negated;
+        }
+    }
+    
+    static final class And extends Expression {
+        private final Expression left;
+        private final Expression right;
+        And(Expression left, Expression right) {
+            super(ValueType.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return left.asBoolean(root) && right.asBoolean(root);
+        }
+    }
+    
+    static final class Or extends Expression {
+        private final Expression left;
+        private final Expression right;
+        Or(Expression left, Expression right) {
+            super(ValueType.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+        @Override
+        boolean asBoolean(Object root) {
+            return left.asBoolean(root) || right.asBoolean(root);
+        }
+    }
+    
+}
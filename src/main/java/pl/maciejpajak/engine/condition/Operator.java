@@ -0,0 +1,31 @@
+package pl.maciejpajak.engine.condition;
+
+/**
+ * Binary and unary operators of win condition language.
+ * Strict operators ({@code ===}, {@code !==}) are accepted for compatibility with the
+ * former JavaScript conditions and behave like their loose counterparts, because
+ * operand types are checked when condition is compiled.
+ */
+enum Operator {
+    
+    OR("||"), AND("&&"),
+    EQ("=="), NE("!="),
+    LT("<"), LE("<="), GT(">"), GE(">="),
+    ADD("+"), SUB("-"), MUL("*"), DIV("/"), MOD("%"),
+    NOT("!");
+    
+    private final String symbol;
+    
+    private Operator(String symbol) {
+        this.symbol = symbol;
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    boolean isComparison() {
+        return this == LT || this == LE || this == GT || this == GE;
+    }
+    
+}
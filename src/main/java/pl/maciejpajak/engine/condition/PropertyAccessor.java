@@ -0,0 +1,119 @@
+package pl.maciejpajak.engine.condition;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Precomputed getter chain for placeholder such as {@code {game.gameFinalScore.partyOneScore}}.
+ * Getters are composed into single {@link MethodHandle}, adapted to primitive return type
+ * for numeric and boolean paths, so reading them neither scans methods nor boxes values.
+ * Instances are immutable and obtained from {@link PropertyAccessorRegistry}.
+ */
+final class PropertyAccessor {
+    
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType NUMBER_GETTER = MethodType.methodType(double.class, Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class, Object.class);
+    
+    private final String path;
+    private final ValueType type;
+    private final MethodHandle getter;
+    private final MethodHandle typedGetter;
+    
+    PropertyAccessor(String path, MethodHandle chain) {
+        this.path = path;
+        Class<?> returnType = chain.type().returnType();
+        this.type = typeOf(returnType);
+        this.getter = chain.asType(OBJECT_GETTER);
+        switch (type) {
+        case NUMBER:
+            this.typedGetter = toNumberGetter(chain, returnType);
+            break;
+        case BOOLEAN:
+            this.typedGetter = chain.asType(BOOLEAN_GETTER);
+            break;
+        default:
+            this.typedGetter = getter;
+        }
+    }
+    
+    private static ValueType typeOf(Class<?> cls) {
+        if (cls == boolean.class || cls == Boolean.class) {
+            return ValueType.BOOLEAN;
+        }
+        if ((cls.isPrimitive() && cls != char.class && cls != void.class) || Number.class.isAssignableFrom(cls)) {
+            return ValueType.NUMBER;
+        }
+        return ValueType.STRING;
+    }
+    
+    private static MethodHandle toNumberGetter(MethodHandle chain, Class<?> returnType) {
+        if (returnType.isPrimitive()) {
+            return chain.asType(NUMBER_GETTER);
+        }
+        // boxed and arbitrary Number types (ex. BigDecimal)
+        try {
+            MethodHandle doubleValue = MethodHandles.publicLookup()
+                    .findVirtual(Number.class, "doubleValue", MethodType.methodType(double.class));
+            return MethodHandles.filterReturnValue(chain.asType(chain.type().changeReturnType(Number.class)), doubleValue)
+                    .asType(NUMBER_GETTER);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    String getPath() {
+        return path;
+    }
+
+    ValueType getType() {
+        return type;
+    }
+    
+    double getNumber(Object root) {
+        try {
+            return (double) typedGetter.invokeExact(root);
+        } catch (NullPointerException e) {
+            throw nullOnPath(e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("could not read " + path, t);
+        }
+    }
+    
+    boolean getBoolean(Object root) {
+        try {
+            return (boolean) typedGetter.invokeExact(root);
+        } catch (NullPointerException e) {
+            throw nullOnPath(e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("could not read " + path, t);
+        }
+    }
+
+    Object get(Object root) {
+        Object value;
+        try {
+            value = (Object) getter.invokeExact(root);
+        } catch (NullPointerException e) {
+            throw nullOnPath(e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("could not read " + path, t);
+        }
+        if (value == null) {
+            throw nullOnPath(null);
+        }
+        return value;
+    }
+    
+    private IllegalStateException nullOnPath(NullPointerException cause) {
+        return new IllegalStateException("null value on path " + path, cause);
+    }
+    
+}
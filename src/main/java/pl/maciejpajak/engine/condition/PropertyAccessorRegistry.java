@@ -0,0 +1,73 @@
+package pl.maciejpajak.engine.condition;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import pl.maciejpajak.exception.InvalidWinConditionException;
+
+/**
+ * Registry of {@link PropertyAccessor}s. Each distinct path is resolved against declared
+ * return types once and shared by all conditions and games using it.
+ * Kept static, because it is also used by bean validation of {@code BetOption}, which is
+ * not managed by Spring.
+ * 
+ * @author mac
+ *
+ */
+final class PropertyAccessorRegistry {
+    
+    private static final ConcurrentMap<String, PropertyAccessor> ACCESSORS = new ConcurrentHashMap<>();
+    
+    private PropertyAccessorRegistry() {}
+    
+    /**
+     * Returns accessor for {@code path}, building it on first use.
+     * @param rootType - class of the object passed to evaluation
+     * @param path - dot separated path, first segment names the root object, ex. game.gameFinalScore.partyOneScore
+     * @return accessor for path
+     * @throws InvalidWinConditionException if any segment has no matching getter
+     */
+    static PropertyAccessor forPath(Class<?> rootType, String path) {
+        String normalizedPath = path.trim();
+        return ACCESSORS.computeIfAbsent(rootType.getName() + '#' + normalizedPath, 
+                key -> build(rootType, normalizedPath));
+    }
+    
+    static int size() {
+        return ACCESSORS.size();
+    }
+    
+    private static PropertyAccessor build(Class<?> rootType, String path) {
+        String[] names = path.split("\\.");
+        MethodHandle chain = MethodHandles.identity(rootType);
+        Class<?> current = rootType;
+        for (int i = 1 ; i < names.length ; i++) {
+            Method getter = findGetter(current, names[i], path);
+            MethodHandle next;
+            try {
+                next = MethodHandles.publicLookup().unreflect(getter);
+            } catch (IllegalAccessException e) {
+                throw new InvalidWinConditionException(path, "property " + names[i] + " is not accessible");
+            }
+            next = next.asType(next.type().changeParameterType(0, current));
+            chain = MethodHandles.filterReturnValue(chain, next);
+            current = getter.getReturnType();
+        }
+        return new PropertyAccessor(path, chain.asType(chain.type().changeParameterType(0, Object.class)));
+    }
+    
+    private static Method findGetter(Class<?> type, String name, String path) {
+        String getterName = "get" + name;
+        return Arrays.stream(type.getMethods())
+                .filter(m -> m.getName().equalsIgnoreCase(getterName))
+                .filter(m -> m.getParameterCount() == 0 && !Modifier.isStatic(m.getModifiers()))
+                .findFirst()
+                .orElseThrow(() -> new InvalidWinConditionException(path, "unknown property " + name + " of " + type.getSimpleName()));
+    }
+    
+}
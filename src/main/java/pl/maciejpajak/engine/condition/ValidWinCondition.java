@@ -0,0 +1,33 @@
+package pl.maciejpajak.engine.condition;
+
+import static java.lang.annotation.ElementType.ANNOTATION_TYPE;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+
+/**
+ * Used to validate that win condition compiles, including all {@code {game...}} paths,
+ * so invalid bet options are rejected when saved instead of when game ends.
+ * @author mac
+ *
+ */
+@Target({ FIELD, METHOD, ANNOTATION_TYPE })
+@Retention(RUNTIME)
+@Constraint(validatedBy = WinConditionValidator.class)
+@Documented
+public @interface ValidWinCondition {
+
+    String message() default "Invalid win condition";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+}
@@ -0,0 +1,10 @@
+package pl.maciejpajak.engine.condition;
+
+/**
+ * Static type of a win condition expression, assigned while parsing.
+ */
+enum ValueType {
+    
+    NUMBER, BOOLEAN, STRING;
+    
+}
@@ -0,0 +1,44 @@
+package pl.maciejpajak.engine.condition;
+
+import pl.maciejpajak.domain.game.Game;
+
+/**
+ * Compiled, immutable and thread safe form of {@code BetOption.winCondition}.
+ * 
+ * @author mac
+ *
+ */
+public final class WinCondition {
+    
+    private final String source;
+    private final Expression expression;
+    
+    private WinCondition(String source, Expression expression) {
+        this.source = source;
+        this.expression = expression;
+    }
+    
+    /**
+     * Parses {@code source} into expression tree evaluated against {@link Game}.
+     * @param source - win condition, ex. {@code {game.gameFinalScore.partyOneScore} > {game.gameFinalScore.partyTwoScore}}
+     * @return compiled condition
+     * @throws pl.maciejpajak.exception.InvalidWinConditionException if condition is not valid
+     */
+    public static WinCondition compile(String source) {
+        return new WinCondition(source, new WinConditionParser(source, Game.class).parse());
+    }
+    
+    public boolean isSatisfiedBy(Game game) {
+        return expression.asBoolean(game);
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    @Override
+    public String toString() {
+        return source;
+    }
+    
+}
@@ -0,0 +1,44 @@
+package pl.maciejpajak.engine.condition;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import pl.maciejpajak.exception.InvalidWinConditionException;
+
+/**
+ * Compiles win conditions and caches them by condition text, so each distinct
+ * condition is parsed only once no matter how many bet options use it.
+ * 
+ * @author mac
+ *
+ */
+@Component
+public class WinConditionCompiler {
+
+    private final ConcurrentMap<String, WinCondition> cache = new ConcurrentHashMap<>();
+    
+    /**
+     * Returns compiled {@code winCondition}, parsing it on first use.
+     * @param winCondition
+     * @return compiled condition
+     * @throws pl.maciejpajak.exception.InvalidWinConditionException if condition is not valid
+     */
+    public WinCondition compile(String winCondition) {
+        if (winCondition == null) {
+            throw new InvalidWinConditionException("win condition is null");
+        }
+        WinCondition compiled = cache.get(winCondition);
+        if (compiled == null) {
+            compiled = WinCondition.compile(winCondition);
+            cache.putIfAbsent(winCondition, compiled);
+        }
+        return compiled;
+    }
+    
+    public int size() {
+        return cache.size();
+    }
+    
+}
@@ -0,0 +1,334 @@
+package pl.maciejpajak.engine.condition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.maciejpajak.engine.condition.Expressions.And;
+import pl.maciejpajak.engine.condition.Expressions.Arithmetic;
+import pl.maciejpajak.engine.condition.Expressions.BooleanEquality;
+import pl.maciejpajak.engine.condition.Expressions.BooleanLiteral;
+import pl.maciejpajak.engine.condition.Expressions.Negate;
+import pl.maciejpajak.engine.condition.Expressions.Not;
+import pl.maciejpajak.engine.condition.Expressions.NumberComparison;
+import pl.maciejpajak.engine.condition.Expressions.NumberLiteral;
+import pl.maciejpajak.engine.condition.Expressions.Or;
+import pl.maciejpajak.engine.condition.Expressions.PathValue;
+import pl.maciejpajak.engine.condition.Expressions.StringComparison;
+import pl.maciejpajak.engine.condition.Expressions.StringLiteral;
+import pl.maciejpajak.engine.condition.Expressions.StringTemplate;
+import pl.maciejpajak.exception.InvalidWinConditionException;
+
+/**
+ * Recursive descent parser of win conditions. Supported syntax is the subset of JavaScript
+ * used by conditions so far, with {@code {game.x.y}} placeholders both as values
+ * and inside string literals. Operator precedence (lowest first):
+ * <pre>
+ * ||
+ * &amp;&amp;
+ * ==  !=  ===  !==
+ * &lt;  &lt;=  &gt;  &gt;=
+ * +  -
+ * *  /  %
+ * !  - (unary)
+ * </pre>
+ * 
+ * @author mac
+ *
+ */
+class WinConditionParser {
+    
+    private final String source;
+    private final Class<?> rootType;
+    private int pos;
+    
+    WinConditionParser(String source, Class<?> rootType) {
+        this.source = source;
+        this.rootType = rootType;
+    }
+    
+    /**
+     * Parses whole condition, which has to evaluate to boolean.
+     * @return root of expression tree
+     * @throws InvalidWinConditionException if condition is malformed or not a boolean expression
+     */
+    Expression parse() {
+        if (source == null) {
+            throw new InvalidWinConditionException("win condition is null");
+        }
+        Expression expression = parseOr();
+        skipWhitespace();
+        if (pos < source.length()) {
+            throw error("unexpected character '" + source.charAt(pos) + "'");
+        }
+        expect(expression, ValueType.BOOLEAN, "win condition");
+        return expression;
+    }
+    
+    private Expression parseOr() {
+        Expression left = parseAnd();
+        while (accept("||")) {
+            Expression right = parseAnd();
+            expect(left, ValueType.BOOLEAN, "||");
+            expect(right, ValueType.BOOLEAN, "||");
+            left = new Or(left, right);
+        }
+        return left;
+    }
+    
+    private Expression parseAnd() {
+        Expression left = parseEquality();
+        while (accept("&&")) {
+            Expression right = parseEquality();
+            expect(left, ValueType.BOOLEAN, "&&");
+            expect(right, ValueType.BOOLEAN, "&&");
+            left = new And(left, right);
+        }
+        return left;
+    }
+    
+    private Expression parseEquality() {
+        Expression left = parseRelational();
+        while (true) {
+            Operator operator;
+            if (accept("===") || accept("==")) {
+                operator = Operator.EQ;
+            } else if (accept("!==") || accept("!=")) {
+                operator = Operator.NE;
+            } else {
+                return left;
+            }
+            Expression right = parseRelational();
+            left = comparison(operator, left, right);
+        }
+    }
+    
+    private Expression parseRelational() {
+        Expression left = parseAdditive();
+        while (true) {
+            Operator operator;
+            if (accept("<=")) {
+                operator = Operator.LE;
+            } else if (accept(">=")) {
+                operator = Operator.GE;
+            } else if (accept("<")) {
+                operator = Operator.LT;
+            } else if (accept(">")) {
+                operator = Operator.GT;
+            } else {
+                return left;
+            }
+            Expression right = parseAdditive();
+            left = comparison(operator, left, right);
+        }
+    }
+    
+    private Expression parseAdditive() {
+        Expression left = parseMultiplicative();
+        while (true) {
+            Operator operator;
+            if (accept("+")) {
+                operator = Operator.ADD;
+            } else if (accept("-")) {
+                operator = Operator.SUB;
+            } else {
+                return left;
+            }
+            left = arithmetic(operator, left, parseMultiplicative());
+        }
+    }
+    
+    private Expression parseMultiplicative() {
+        Expression left = parseUnary();
+        while (true) {
+            Operator operator;
+            if (accept("*")) {
+                operator = Operator.MUL;
+            } else if (accept("/")) {
+                operator = Operator.DIV;
+            } else if (accept("%")) {
+                operator = Operator.MOD;
+            } else {
+                return left;
+            }
+            left = arithmetic(operator, left, parseUnary());
+        }
+    }
+    
+    private Expression parseUnary() {
+        skipWhitespace();
+        if (peek('!') && !peekAt(1, '=')) {
+            pos++;
+            Expression operand = parseUnary();
+            expect(operand, ValueType.BOOLEAN, "!");
+            return new Not(operand);
+        }
+        if (accept("-")) {
+            Expression operand = parseUnary();
+            expect(operand, ValueType.NUMBER, "-");
+            return new Negate(operand);
+        }
+        if (accept("+")) {
+            Expression operand = parseUnary();
+            expect(operand, ValueType.NUMBER, "+");
+            return operand;
+        }
+        return parsePrimary();
+    }
+    
+    private Expression parsePrimary() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("unexpected end of condition");
+        }
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Expression inner = parseOr();
+            if (!accept(")")) {
+                throw error("missing ')'");
+            }
+            return inner;
+        }
+        if (c == '{') {
+            return new PathValue(parsePlaceholder());
+        }
+        if (c == '\'' || c == '"') {
+            return parseString(c);
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        }
+        if (acceptWord("true")) {
+            return new BooleanLiteral(true);
+        }
+        if (acceptWord("false")) {
+            return new BooleanLiteral(false);
+        }
+        throw error("unexpected character '" + c + "'");
+    }
+    
+    private PropertyAccessor parsePlaceholder() {
+        int end = source.indexOf('}', pos);
+        if (end < 0) {
+            throw error("missing '}'");
+        }
+        String path = source.substring(pos + 1, end);
+        pos = end + 1;
+        return PropertyAccessorRegistry.forPath(rootType, path);
+    }
+    
+    private Expression parseString(char quote) {
+        pos++;
+        List<Object> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= source.length()) {
+                throw error("unterminated string");
+            }
+            char c = source.charAt(pos);
+            if (c == quote) {
+                pos++;
+                break;
+            }
+            if (c == '\\' && pos + 1 < source.length()) {
+                sb.append(source.charAt(pos + 1));
+                pos += 2;
+            } else if (c == '{') {
+                if (sb.length() > 0) {
+                    parts.add(sb.toString());
+                    sb.setLength(0);
+                }
+                parts.add(parsePlaceholder());
+            } else {
+                sb.append(c);
+                pos++;
+            }
+        }
+        if (parts.isEmpty()) {
+            return new StringLiteral(sb.toString());
+        }
+        if (sb.length() > 0) {
+            parts.add(sb.toString());
+        }
+        return new StringTemplate(parts.toArray());
+    }
+    
+    private Expression parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        try {
+            return new NumberLiteral(Double.parseDouble(source.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            throw error("malformed number " + source.substring(start, pos));
+        }
+    }
+    
+    private Expression comparison(Operator operator, Expression left, Expression right) {
+        if (left.getType() != right.getType()) {
+            throw error("cannot compare " + left.getType() + " with " + right.getType());
+        }
+        switch (left.getType()) {
+        case NUMBER:
+            return new NumberComparison(operator, left, right);
+        case STRING:
+            return new StringComparison(operator, left, right);
+        default:
+            if (operator.isComparison()) {
+                throw error("operator " + operator.getSymbol() + " is not applicable to booleans");
+            }
+            return new BooleanEquality(operator == Operator.NE, left, right);
+        }
+    }
+    
+    private Expression arithmetic(Operator operator, Expression left, Expression right) {
+        expect(left, ValueType.NUMBER, operator.getSymbol());
+        expect(right, ValueType.NUMBER, operator.getSymbol());
+        return new Arithmetic(operator, left, right);
+    }
+    
+    private void expect(Expression expression, ValueType type, String context) {
+        if (expression.getType() != type) {
+            throw error(context + " requires " + type + " but got " + expression.getType());
+        }
+    }
+    
+    private boolean accept(String token) {
+        skipWhitespace();
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+    
+    private boolean acceptWord(String word) {
+        int end = pos + word.length();
+        if (source.startsWith(word, pos) 
+                && (end >= source.length() || !Character.isJavaIdentifierPart(source.charAt(end)))) {
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+    
+    private boolean peek(char c) {
+        return peekAt(0, c);
+    }
+    
+    private boolean peekAt(int offset, char c) {
+        return pos + offset < source.length() && source.charAt(pos + offset) == c;
+    }
+    
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+    
+    private InvalidWinConditionException error(String reason) {
+        return new InvalidWinConditionException(source, reason + " at position " + pos);
+    }
+    
+}
@@ -0,0 +1,39 @@
+package pl.maciejpajak.engine.condition;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+import pl.maciejpajak.exception.InvalidWinConditionException;
+
+/**
+ * Validates win condition by compiling it. {@code null} is considered valid.
+ * @author mac
+ *
+ */
+public class WinConditionValidator implements ConstraintValidator<ValidWinCondition, String> {
+
+    @Override
+    public void initialize(final ValidWinCondition constraintAnnotation) {
+        //
+    }
+
+    @Override
+    public boolean isValid(final String winCondition, final ConstraintValidatorContext context) {
+        if (winCondition == null) {
+            return true;
+        }
+        try {
+            WinCondition.compile(winCondition);
+            return true;
+        } catch (InvalidWinConditionException e) {
+            context.disableDefaultConstraintViolation();
+            context.buildConstraintViolationWithTemplate(escape(e.getMessage())).addConstraintViolation();
+            return false;
+        }
+    }
+    
+    private static String escape(String message) {
+        return message.replace("\\", "\\\\").replace("{", "\\{").replace("}", "\\}").replace("$", "\\$");
+    }
+
+}
@@ -0,0 +1,23 @@
+package pl.maciejpajak.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import lombok.Getter;
+
+/**
+ * Published by {@link pl.maciejpajak.service.MarketIndex} when bets of game were closed or changed.
+ * 
+ * @author mac
+ *
+ */
+@Getter
+public class MarketsChangedEvent extends ApplicationEvent {
+
+    private Long gameId;
+    
+    public MarketsChangedEvent(Object source, Long gameId) {
+        super(source);
+        this.gameId = gameId;
+    }
+
+}
@@ -2,6 +2,10 @@ package pl.maciejpajak.exception;
 
 import javax.persistence.EntityNotFoundException;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
 public class BaseEntityNotFoundException extends EntityNotFoundException {
 
     private static final String MESSAGE_PATTERN = "Entity with id %s can not be found";
@@ -0,0 +1,15 @@
+package pl.maciejpajak.exception;
+
+public class InvalidWinConditionException extends RuntimeException {
+
+    private static final String MESSAGE_PATTERN = "Invalid win condition \"%s\": %s";
+
+    public InvalidWinConditionException(String condition, String reason) {
+        super(String.format(MESSAGE_PATTERN, condition, reason));
+    }
+
+    public InvalidWinConditionException(String message) {
+        super(message);
+    }
+    
+}
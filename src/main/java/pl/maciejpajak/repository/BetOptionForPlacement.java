@@ -0,0 +1,21 @@
+package pl.maciejpajak.repository;
+
+import pl.maciejpajak.domain.util.GameStatus;
+
+/**
+ * Data of bet option needed to validate coupon placement, read by {@link pl.maciejpajak.service.MarketIndex#findAllForPlacement}.
+ * 
+ * @author mac
+ *
+ */
+public interface BetOptionForPlacement {
+    
+    Long getBetOptionId();
+    
+    Long getBetId();
+    
+    boolean isBetable();
+    
+    GameStatus getGameStatus();
+
+}
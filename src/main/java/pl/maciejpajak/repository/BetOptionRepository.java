@@ -4,7 +4,12 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.bet.Bet;
 import pl.maciejpajak.domain.bet.BetOption;
@@ -15,4 +20,16 @@ public interface BetOptionRepository extends JpaRepository<BetOption, Long>{
     public List<BetOption> findAllByBetGameIdAndVisible(Long id, boolean isVisible);
     public List<BetOption> findAllByBetInAndVisible(Collection<Bet> bets, boolean isVisible);
     
+    /**
+     * Locks visible bet options, in order of ids so concurrent publications do not deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bo FROM BetOption bo WHERE bo.id IN :ids AND bo.visible = true ORDER BY bo.id")
+    public List<BetOption> findAllForOddsPublication(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT bo.id FROM BetOption bo WHERE bo.bet IN :bets AND bo.visible = :isVisible")
+    public List<Long> findAllIdsByBetInAndVisible(@Param("bets") Collection<Bet> bets, @Param("isVisible") boolean isVisible);
+    
+    @Query("SELECT DISTINCT b.game.id FROM BetOption bo JOIN bo.bet b WHERE bo.id IN :ids")
+    public List<Long> findAllGamesIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -1,8 +1,10 @@
 package pl.maciejpajak.repository;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,9 +12,11 @@ import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.bet.Bet;
 import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.GameStatus;
 
 public interface BetRepository extends JpaRepository<Bet, Long> {
 
+    @EntityGraph(attributePaths = "betOptions")
     public Optional<Bet> findOneByIdAndVisible(Long betId, boolean isVisible);
     
     public Collection<Bet> findAllByGameIdAndBetableAndVisible(Long gameId, boolean isBetable, boolean isVisible);
@@ -27,4 +31,16 @@ public interface BetRepository extends JpaRepository<Bet, Long> {
                                     @Param("gameId") Long gameId,
                                     @Param("lastCall") BetLastCall lastCall,
                                     @Param("isVisible") boolean isVisible);
+    
+    /**
+     * Reads visible bets of games with their visible options, one row per option.
+     */
+    @Query("SELECT g.id AS gameId, g.status AS gameStatus, b.id AS betId, b.description AS description, b.lastCall AS lastCall, "
+            + "b.betable AS betable, bo.id AS betOptionId, bo.description AS betOptionDescription, bo.status AS betOptionStatus "
+            + "FROM Bet b JOIN b.game g LEFT JOIN b.betOptions bo WITH bo.visible = true "
+            + "WHERE g.id IN :gamesIds AND b.visible = true ORDER BY b.id, bo.id")
+    public List<MarketRow> findAllMarketRows(@Param("gamesIds") Collection<Long> gamesIds);
+    
+    @Query("SELECT DISTINCT g.id FROM Bet b JOIN b.game g WHERE g.status IN :statuses AND g.visible = true AND b.visible = true")
+    public List<Long> findAllGamesIdsWithBetsByGameStatusIn(@Param("statuses") Collection<GameStatus> statuses);
 }
@@ -4,12 +4,16 @@ import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Optional;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import pl.maciejpajak.domain.offers.BidAmountBonus;
 
 public interface BidAmountBonusRepository extends JpaRepository<BidAmountBonus, Long> {
     
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     public Collection<BidAmountBonus> findAllByVisible(boolean isVisible);
     public Optional<BidAmountBonus> findTopByMinimalBidIsLessThanEqualAndVisibleOrderByMinimalBidDesc(BigDecimal minimalBid, boolean isVisible);
 
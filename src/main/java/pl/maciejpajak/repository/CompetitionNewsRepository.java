@@ -1,8 +1,16 @@
 package pl.maciejpajak.repository;
 
 import java.util.Collection;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+import javax.transaction.Transactional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.news.CompetitionNews;
 
@@ -14,5 +22,25 @@ public interface CompetitionNewsRepository extends JpaRepository<CompetitionNews
 
     public Collection<CompetitionNews> findAllBySent(boolean isSent);
     
+    @Query("SELECT MAX(n.id) FROM CompetitionNews n WHERE n.sent = false AND n.visible = true")
+    public Long findMaxUnsentId();
+    
+    /**
+     * Streams unsent news up to {@code maxId} joined with users subscribed to their competitions, ordered by user,
+     * so rows of one user are adjacent. Fetch size {@code Integer.MIN_VALUE} makes MySQL driver stream rows
+     * instead of reading whole result. Must be called in transaction and the stream must be closed.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT DISTINCT u.id AS userId, u.email AS email, n.id AS newsId, n.content AS content "
+            + "FROM CompetitionNews n, CompetitionPreference p JOIN p.user u "
+            + "WHERE p.competition = n.competition AND p.subscribed = true AND u.visible = true "
+            + "AND n.sent = false AND n.visible = true AND n.id <= :maxId "
+            + "ORDER BY u.id, n.id")
+    public Stream<SubscriptionDigestRow> streamAllUnsentForSubscribers(@Param("maxId") Long maxId);
+    
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CompetitionNews n SET n.sent = true WHERE n.sent = false AND n.id <= :maxId")
+    public int markSentUpTo(@Param("maxId") Long maxId);
+    
 }
-
@@ -1,8 +1,10 @@
 package pl.maciejpajak.repository;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import pl.maciejpajak.domain.game.Competition;
 
@@ -12,6 +14,9 @@ public interface CompetitionRepository extends JpaRepository<Competition, Long>
     public Collection<Competition> findAllBySportIdAndVisible(Long sportId, boolean isVisible);
     public Collection<Competition> findAllByScopeIdAndVisible(Long scopeId, boolean isVisible);
     public Collection<Competition> findAllBySportIdAndScopeIdAndVisible(Long sportId, Long scopeId, boolean isVisible);
+    
+    @Query("SELECT c FROM Competition c LEFT JOIN FETCH c.sport LEFT JOIN FETCH c.scope WHERE c.visible = true")
+    public List<Competition> findAllForCatalog();
 //    public Collection<Compe>
     
 }
@@ -0,0 +1,33 @@
+package pl.maciejpajak.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import pl.maciejpajak.domain.util.CouponStatus;
+
+/**
+ * Coupon columns shown in coupon history, read by {@link CouponRepository#findUserCouponHistory}
+ * and {@link CouponRepository#findGroupCouponHistory}.
+ * 
+ * @author mac
+ *
+ */
+public interface CouponHistoryRow {
+    
+    Long getId();
+    
+    LocalDateTime getCreated();
+    
+    Long getOwnerId();
+    
+    BigDecimal getOwnerTransactionAmount();
+    
+    CouponStatus getStatus();
+    
+    BigDecimal getValue();
+    
+    BigDecimal getBonus();
+    
+    BigDecimal getTotalPrize();
+
+}
@@ -1,8 +1,13 @@
 package pl.maciejpajak.repository;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.bet.Bet;
 import pl.maciejpajak.domain.coupon.Coupon;
@@ -15,6 +20,76 @@ public interface CouponRepository extends JpaRepository<Coupon, Long>{
 //    public List<Coupon> findAllByIntivationsInvitedUserIdAndVisible(Long userId, boolean isVisible);
 //    public Collection<Coupon> findAllByStatusAndPlacedBetsBetOptionId(CouponStatus couponStatus, Long betOptionId);
     
-    public Collection<Coupon> findAllByStatusAndPlacedBetsBetOptionIdAndVisible(CouponStatus couponStatus, Long betOptionId, boolean isVisible);
     public Collection<Coupon> findAllByStatusIsAndPlacedBetsBetOptionBetInAndVisible(CouponStatus couponStatus, Collection<Bet> bets, boolean isVisible);
+    
+    @Query("SELECT DISTINCT pb.coupon.id FROM PlacedBet pb "
+            + "WHERE pb.coupon.status = :status AND pb.coupon.visible = :isVisible AND pb.betOption.bet.game.id = :gameId")
+    public List<Long> findAllIdsForSettlement(@Param("status") CouponStatus couponStatus, 
+                                            @Param("gameId") Long gameId, 
+                                            @Param("isVisible") boolean isVisible);
+    
+    /**
+     * Finds coupons with {@code ids} together with all their placed bets, bet options, odds, 
+     * owners and owner transactions, in a single query.
+     */
+    @Query("SELECT DISTINCT c FROM Coupon c "
+            + "JOIN FETCH c.placedBets pb JOIN FETCH pb.betOption JOIN FETCH pb.odd "
+            + "JOIN FETCH c.owner LEFT JOIN FETCH c.ownerTransaction "
+            + "WHERE c.id IN :ids AND c.status = :status")
+    public List<Coupon> findAllForSettlement(@Param("ids") Collection<Long> ids, @Param("status") CouponStatus couponStatus);
+    
+    /**
+     * Finds page of user's individual coupons older than {@code (beforeCreated, beforeId)}, newest first. 
+     * Page size is taken from {@code pageable}, its page number must be 0.
+     */
+    @Query("SELECT c.id AS id, c.created AS created, c.owner.id AS ownerId, t.amount AS ownerTransactionAmount, "
+            + "c.status AS status, c.value AS value, c.bonus AS bonus, c.totalPrize AS totalPrize "
+            + "FROM Coupon c LEFT JOIN c.ownerTransaction t "
+            + "WHERE TYPE(c) = UserCoupon AND c.owner.id = :userId AND c.visible = true AND c.status IN :statuses "
+            + "AND c.created >= :from AND c.created < :to "
+            + "AND (c.created < :beforeCreated OR (c.created = :beforeCreated AND c.id < :beforeId)) "
+            + "ORDER BY c.created DESC, c.id DESC")
+    public List<CouponHistoryRow> findUserCouponHistory(@Param("userId") Long userId, 
+                                                        @Param("statuses") Collection<CouponStatus> statuses,
+                                                        @Param("from") LocalDateTime from, 
+                                                        @Param("to") LocalDateTime to,
+                                                        @Param("beforeCreated") LocalDateTime beforeCreated, 
+                                                        @Param("beforeId") Long beforeId, 
+                                                        Pageable pageable);
+    
+    /**
+     * Finds page of group coupons owned by user or user was invited to, older than {@code (beforeCreated, beforeId)}, newest first.
+     * Page size is taken from {@code pageable}, its page number must be 0.
+     */
+    @Query("SELECT c.id AS id, c.created AS created, c.owner.id AS ownerId, t.amount AS ownerTransactionAmount, "
+            + "c.status AS status, c.value AS value, c.bonus AS bonus, c.totalPrize AS totalPrize "
+            + "FROM Coupon c LEFT JOIN c.ownerTransaction t "
+            + "WHERE TYPE(c) = GroupCoupon AND c.visible = true AND c.status IN :statuses "
+            + "AND (c.owner.id = :userId OR c.id IN "
+            + "(SELECT i.groupCoupon.id FROM CouponInvitation i WHERE i.invitedUser.id = :userId AND i.visible = true)) "
+            + "AND c.created >= :from AND c.created < :to "
+            + "AND (c.created < :beforeCreated OR (c.created = :beforeCreated AND c.id < :beforeId)) "
+            + "ORDER BY c.created DESC, c.id DESC")
+    public List<CouponHistoryRow> findGroupCouponHistory(@Param("userId") Long userId, 
+                                                        @Param("statuses") Collection<CouponStatus> statuses,
+                                                        @Param("from") LocalDateTime from, 
+                                                        @Param("to") LocalDateTime to,
+                                                        @Param("beforeCreated") LocalDateTime beforeCreated, 
+                                                        @Param("beforeId") Long beforeId, 
+                                                        Pageable pageable);
+    
+    @Query("SELECT pb.coupon.id AS couponId, pb.id AS id, bo.id AS betOptionId, bo.description AS betOptionDescription, "
+            + "o.id AS oddId, o.value AS oddValue "
+            + "FROM PlacedBet pb JOIN pb.betOption bo JOIN pb.odd o WHERE pb.coupon.id IN :ids")
+    public List<PlacedBetHistoryRow> findAllPlacedBetsForHistory(@Param("ids") Collection<Long> couponsIds);
+    
+    /**
+     * Finds visible invitations of coupons with {@code ids}, the same invitations which make coupon 
+     * visible to invited user in {@link #findGroupCouponHistory}.
+     */
+    @Query("SELECT i.groupCoupon.id AS couponId, i.invitedUser.id AS invitedUserId, "
+            + "t.operationTime AS userTransactionTime, t.amount AS userTransactionAmount "
+            + "FROM CouponInvitation i LEFT JOIN i.betTransaction t WHERE i.groupCoupon.id IN :ids AND i.visible = true")
+    public List<InvitationHistoryRow> findAllInvitationsForHistory(@Param("ids") Collection<Long> couponsIds);
+    
 }
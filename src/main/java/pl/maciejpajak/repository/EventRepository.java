@@ -1,10 +1,19 @@
 package pl.maciejpajak.repository;
 
+import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.game.Event;
 
 public interface EventRepository extends JpaRepository<Event, Long> {
 
+    public List<Event> findAllByGameIdAndVisibleOrderByTimeAscIdAsc(Long gameId, boolean isVisible);
+    
+    @Query("SELECT MAX(e.sequence) FROM Event e WHERE e.game.id = :gameId")
+    public Optional<Long> findMaxSequenceByGameId(@Param("gameId") Long gameId);
+    
 }
@@ -1,23 +1,72 @@
 package pl.maciejpajak.repository;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.game.Game;
 import pl.maciejpajak.domain.util.GameStatus;
 
+/**
+ * Live game path ({@link #findOneByIdAndVisible}) reads game row only, competition id is read from its proxy without loading it.
+ * Game list and game detail paths read games with {@link Game#WITH_DETAILS} graph, in one query.
+ * 
+ * @author mac
+ *
+ */
 public interface GameRepository extends JpaRepository<Game, Long> {
     
     public Optional<Game> findOneByIdAndVisible(Long id, boolean isVisible);
     
-    public Collection<Game> findAllByVisible(boolean isVisible);
-    public Collection<Game> findAllByCompetitionIdAndVisible(Long competitionId, boolean isVisible);
+    @EntityGraph(Game.WITH_DETAILS)
+    public Optional<Game> findOneWithDetailsByIdAndVisible(Long id, boolean isVisible);
+    
+    @EntityGraph(Game.WITH_DETAILS)
+    public Collection<Game> findDistinctByVisible(boolean isVisible);
+    
+    @EntityGraph(Game.WITH_DETAILS)
+    public Collection<Game> findDistinctByIdInAndVisible(Collection<Long> ids, boolean isVisible);
+    
+    /**
+     * Reads game with its final score, which is read by win conditions after transaction ends.
+     */
+    @Query("SELECT g FROM Game g LEFT JOIN FETCH g.gameFinalScore WHERE g.id = :id")
+    public Optional<Game> findOneWithFinalScoreById(@Param("id") Long id);
+    
+    @Query("SELECT g.id FROM Game g WHERE g.visible = :isVisible")
+    public List<Long> findAllIdsByVisible(@Param("isVisible") boolean isVisible);
+    
+    public long countByVisible(boolean isVisible);
+    
+    /**
+     * @return game id and competition id of games with {@code ids} which have competition
+     */
+    @Query("SELECT g.id, c.id FROM Game g JOIN g.competition c WHERE g.id IN :ids")
+    public List<Object[]> findAllCompetitionIdsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Finds visible games with everything serialized with them (competition, parties, game parts and final scores).
+     */
+    @EntityGraph(Game.WITH_DETAILS)
+    @Query("SELECT DISTINCT g FROM Game g WHERE g.visible = true")
+    public List<Game> findAllForCatalog();
+    
+    @EntityGraph(Game.WITH_DETAILS)
+    public Collection<Game> findDistinctByCompetitionIdAndVisible(Long competitionId, boolean isVisible);
     public Collection<Game> findAllByStatusInAndVisible(Collection<GameStatus> statuses, boolean isVisible);
     
     public Collection<Game> findAllByStatusAndVisible(GameStatus status, boolean isVisible);
-    public Collection<Game> findAllByStatusAndCompetitionIdAndVisible(GameStatus status, Long competitionId, boolean isVisible);
+    
+    @EntityGraph(Game.WITH_DETAILS)
+    public Collection<Game> findDistinctByStatusAndVisible(GameStatus status, boolean isVisible);
+    
+    @EntityGraph(Game.WITH_DETAILS)
+    public Collection<Game> findDistinctByStatusAndCompetitionIdAndVisible(GameStatus status, Long competitionId, boolean isVisible);
     
 //    public Collection<Game> findAllByCompetitionId(Long competitionId);
 
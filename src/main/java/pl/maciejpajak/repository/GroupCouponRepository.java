@@ -1,17 +1,35 @@
 package pl.maciejpajak.repository;
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import pl.maciejpajak.domain.coupon.GroupCoupon;
 import pl.maciejpajak.domain.util.CouponStatus;
 
+/**
+ * Coupon list, coupon detail and cancellation paths read coupons with {@link GroupCoupon#WITH_BETS_AND_INVITATIONS} graph, 
+ * in one query.
+ * 
+ * @author mac
+ *
+ */
 public interface GroupCouponRepository extends JpaRepository<GroupCoupon, Long>{
 
-    public List<GroupCoupon> findAllByOwnerIdOrIntivationsInvitedUserIdAndVisible(Long userId, Long usrId, boolean isVisible);
-    public List<GroupCoupon> findAllByOwnerIdAndVisible(Long id, boolean isVisible);
-    public List<GroupCoupon> findAllByIntivationsInvitedUserIdAndVisible(Long userId, boolean isVisible);
+    @EntityGraph(GroupCoupon.WITH_BETS_AND_INVITATIONS)
+    public Optional<GroupCoupon> findOneByIdAndVisible(Long id, boolean isVisible);
     
-    public List<GroupCoupon> findAllByPlacedBetsBetOptionBetGameIdAndStatusAndVisible(Long gameId, CouponStatus couponStatus, boolean isVisible);
+    @EntityGraph(GroupCoupon.WITH_BETS_AND_INVITATIONS)
+    public List<GroupCoupon> findDistinctByOwnerIdOrIntivationsInvitedUserIdAndVisible(Long userId, Long usrId, boolean isVisible);
+    
+    @EntityGraph(GroupCoupon.WITH_BETS_AND_INVITATIONS)
+    public List<GroupCoupon> findDistinctByOwnerIdAndVisible(Long id, boolean isVisible);
+    
+    @EntityGraph(GroupCoupon.WITH_BETS_AND_INVITATIONS)
+    public List<GroupCoupon> findDistinctByIntivationsInvitedUserIdAndVisible(Long userId, boolean isVisible);
+    
+    @EntityGraph(GroupCoupon.WITH_BETS_AND_INVITATIONS)
+    public List<GroupCoupon> findDistinctByPlacedBetsBetOptionBetGameIdAndStatusAndVisible(Long gameId, CouponStatus couponStatus, boolean isVisible);
 }
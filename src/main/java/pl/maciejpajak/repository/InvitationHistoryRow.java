@@ -0,0 +1,25 @@
+package pl.maciejpajak.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Group coupon invitation shown in coupon history, read by {@link CouponRepository#findAllInvitationsForHistory}.
+ * 
+ * @author mac
+ *
+ */
+public interface InvitationHistoryRow {
+    
+    Long getCouponId();
+    
+    Long getInvitedUserId();
+    
+    /**
+     * @return time of invited user's bet transaction, null if invitation is not accepted yet
+     */
+    LocalDateTime getUserTransactionTime();
+    
+    BigDecimal getUserTransactionAmount();
+
+}
@@ -0,0 +1,34 @@
+package pl.maciejpajak.repository;
+
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.domain.util.GameStatus;
+
+/**
+ * Visible bet joined with one of its visible options, read by {@link BetRepository#findAllMarketRows}.
+ * Option columns are null for bet without visible options.
+ * 
+ * @author mac
+ *
+ */
+public interface MarketRow {
+    
+    Long getGameId();
+    
+    GameStatus getGameStatus();
+    
+    Long getBetId();
+    
+    String getDescription();
+    
+    BetLastCall getLastCall();
+    
+    boolean isBetable();
+    
+    Long getBetOptionId();
+    
+    String getBetOptionDescription();
+    
+    BetOptionStatus getBetOptionStatus();
+
+}
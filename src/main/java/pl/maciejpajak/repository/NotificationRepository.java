@@ -1,7 +1,9 @@
 package pl.maciejpajak.repository;
 
 import java.util.Collection;
+import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import pl.maciejpajak.domain.notification.Notification;
@@ -9,5 +11,9 @@ import pl.maciejpajak.domain.notification.Notification;
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     
     public Collection<Notification> findAllByUserIdAndReadOrderByCreatedDesc(Long userId, boolean isRead);
+    
+    public List<Notification> findAllByUserIdAndReadOrderByIdDesc(Long userId, boolean isRead, Pageable pageable);
+    
+    public List<Notification> findAllByUserIdAndIdGreaterThanOrderByIdDesc(Long userId, Long lastId, Pageable pageable);
 
 }
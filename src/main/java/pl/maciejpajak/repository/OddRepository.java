@@ -1,8 +1,12 @@
 package pl.maciejpajak.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.bet.Odd;
 
@@ -10,8 +14,35 @@ public interface OddRepository extends JpaRepository<Odd, Long> {
 
     public Optional<Odd> findOneById(Long betOptionId);
     
-//    @Query("SELECT o FROM odd WHERE o.bet_option_id=:betOptionId ORDER BY o.created DESC LIMIT 1")
-    // TODO optimize this query so its executed without join
-    public Optional<Odd> findFirstByBetOptionIdOrderByCreatedDesc(Long betOptionId);
+    public Optional<Odd> findFirstByBetOptionIdOrderByIdDesc(Long betOptionId);
+    
+    @Query("SELECT bo.currentOdd FROM BetOption bo WHERE bo.id = :betOptionId")
+    public Optional<Odd> findCurrentByBetOptionId(@Param("betOptionId") Long betOptionId);
+    
+    /**
+     * Returns odds with greatest version among odds newer than current odds of bet options, 
+     * used by odds publication before current odd pointers are updated.
+     */
+    @Query("SELECT o FROM Odd o JOIN FETCH o.betOption bo WHERE bo.id IN :ids AND o.version = "
+            + "(SELECT MAX(o2.version) FROM Odd o2 WHERE o2.betOption = bo AND o2.version > bo.oddVersion)")
+    public List<Odd> findAllCurrentForPublication(@Param("ids") Collection<Long> betOptionsIds);
+    
+    /**
+     * @return bet option id, odd id and value of latest odd of every bet option
+     */
+    @Query("SELECT o.betOption.id, o.id, o.value FROM Odd o WHERE o.id IN (SELECT MAX(o2.id) FROM Odd o2 GROUP BY o2.betOption.id)")
+    public List<Object[]> findLatestOfAllBetOptions();
+    
+    /**
+     * @return bet option id, odd id and value of current odd of every bet option which has one
+     */
+    @Query("SELECT bo.id, o.id, o.value FROM BetOption bo JOIN bo.currentOdd o")
+    public List<Object[]> findCurrentOfAllBetOptions();
+    
+    /**
+     * @return bet option id, odd id and value of odds with id greater than {@code oddId}
+     */
+    @Query("SELECT o.betOption.id, o.id, o.value FROM Odd o WHERE o.id > :oddId")
+    public List<Object[]> findAllNewerThan(@Param("oddId") Long oddId);
     
 }
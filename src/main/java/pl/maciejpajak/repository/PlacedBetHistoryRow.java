@@ -0,0 +1,25 @@
+package pl.maciejpajak.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Placed bet shown in coupon history, read by {@link CouponRepository#findAllPlacedBetsForHistory}.
+ * 
+ * @author mac
+ *
+ */
+public interface PlacedBetHistoryRow {
+    
+    Long getCouponId();
+    
+    Long getId();
+    
+    Long getBetOptionId();
+    
+    String getBetOptionDescription();
+    
+    Long getOddId();
+    
+    BigDecimal getOddValue();
+
+}
@@ -0,0 +1,17 @@
+package pl.maciejpajak.repository;
+
+import java.util.Set;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import pl.maciejpajak.domain.settlement.SettlementCheckpoint;
+import pl.maciejpajak.domain.util.SettlementPhase;
+
+public interface SettlementCheckpointRepository extends JpaRepository<SettlementCheckpoint, Long> {
+
+    @Query("SELECT c.partitionIndex FROM SettlementCheckpoint c WHERE c.run.id = :runId AND c.phase = :phase")
+    public Set<Integer> findAllCompletedPartitions(@Param("runId") Long runId, @Param("phase") SettlementPhase phase);
+    
+}
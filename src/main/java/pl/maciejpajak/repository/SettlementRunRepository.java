@@ -0,0 +1,20 @@
+package pl.maciejpajak.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import pl.maciejpajak.domain.settlement.SettlementRun;
+import pl.maciejpajak.domain.util.SettlementRunStatus;
+
+public interface SettlementRunRepository extends JpaRepository<SettlementRun, Long> {
+
+    public Optional<SettlementRun> findTopByGameIdOrderByIdDesc(Long gameId);
+    
+    @Query("SELECT r.game.id FROM SettlementRun r WHERE r.status = :status")
+    public List<Long> findAllGamesIdsByStatus(@Param("status") SettlementRunStatus status);
+    
+}
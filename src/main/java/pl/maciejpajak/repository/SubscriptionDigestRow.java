@@ -0,0 +1,19 @@
+package pl.maciejpajak.repository;
+
+/**
+ * Unsent competition news matched with subscribed user, read by {@link CompetitionNewsRepository#streamAllUnsentForSubscribers}.
+ * 
+ * @author mac
+ *
+ */
+public interface SubscriptionDigestRow {
+    
+    Long getUserId();
+    
+    String getEmail();
+    
+    Long getNewsId();
+    
+    String getContent();
+
+}
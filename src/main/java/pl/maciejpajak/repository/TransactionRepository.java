@@ -1,9 +1,17 @@
 package pl.maciejpajak.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import pl.maciejpajak.domain.user.Transaction;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    @Query("SELECT t.payoutKey FROM Transaction t WHERE t.payoutKey IN :keys")
+    public List<String> findAllPayoutKeysIn(@Param("keys") Collection<String> keys);
+    
 }
@@ -3,13 +3,23 @@ package pl.maciejpajak.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import pl.maciejpajak.domain.coupon.UserCoupon;
 
+/**
+ * Coupon list and coupon detail paths read coupons with {@link UserCoupon#WITH_BETS} graph, in one query.
+ * 
+ * @author mac
+ *
+ */
 public interface UserCouponRepository extends JpaRepository<UserCoupon, Long> {
 
+    @EntityGraph(UserCoupon.WITH_BETS)
     public Optional<UserCoupon> findOneByIdAndVisible(Long id, boolean isVisible);
-    public List<UserCoupon> findAllByOwnerIdAndVisible(Long id, boolean isVisible);
+    
+    @EntityGraph(UserCoupon.WITH_BETS)
+    public List<UserCoupon> findDistinctByOwnerIdAndVisible(Long id, boolean isVisible);
     
 }
@@ -1,6 +1,7 @@
 package pl.maciejpajak.service;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -11,16 +12,20 @@ import pl.maciejpajak.domain.bet.Bet;
 import pl.maciejpajak.dto.BetDto;
 import pl.maciejpajak.exception.BaseEntityNotFoundException;
 import pl.maciejpajak.repository.BetRepository;
+import pl.maciejpajak.service.MarketIndex.MarketBet;
 
 @Service
 public class BetService {
     
     private BetRepository betRepository;
+    
+    private MarketIndex marketIndex;
    
     @Autowired
-    public BetService(BetRepository betRepository) {
+    public BetService(BetRepository betRepository, MarketIndex marketIndex) {
         super();
         this.betRepository = betRepository;
+        this.marketIndex = marketIndex;
     }
 
     public BetDto findOneById(Long betId) {
@@ -31,8 +36,18 @@ public class BetService {
     }
     
     public Collection<BetDto> findAllBetableByGameIdAndVisible(Long gameId) {
-        Collection<Bet> bets = betRepository.findAllByGameIdAndBetableAndVisible(gameId, true, true);
-        return bets.stream().map(convertToDto).collect(Collectors.toList());
+        return marketIndex.findAllBetable(gameId).stream()
+                .map(b -> convertMarketBetToDto(b, gameId))
+                .collect(Collectors.toList());
+    }
+    
+    private BetDto convertMarketBetToDto(MarketBet b, Long gameId) {
+        return BetDto.builder()
+                .id(b.getId())
+                .description(b.getDescription())
+                .betOptions(new LinkedHashSet<>(b.getBetOptions()))
+                .gameId(gameId)
+                .build();
     }
     
     private final Function<Bet, BetDto> convertToDto = 
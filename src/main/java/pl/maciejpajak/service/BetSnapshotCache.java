@@ -0,0 +1,90 @@
+package pl.maciejpajak.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.dto.BetDto;
+import pl.maciejpajak.event.MarketsChangedEvent;
+
+/**
+ * JSON of betable bets of game, serialized once and kept until bets of the game change.
+ * <p>
+ * Snapshot of game is dropped when {@link MarketIndex} reports that bets of the game were changed or closed.
+ * Changes made by other nodes become visible after {@code bet-snapshot.ttl-ms}. At most {@code bet-snapshot.max-games} games are held.
+ * 
+ * @author mac
+ *
+ */
+@Service
+public class BetSnapshotCache {
+    
+    @Autowired
+    private BetService betService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${bet-snapshot.ttl-ms:30000}")
+    private long ttlMs;
+    
+    @Value("${bet-snapshot.max-games:10000}")
+    private int maxGames;
+    
+    private final Map<Long, Entry> snapshots = new ConcurrentHashMap<>();
+    
+    /**
+     * Incremented by every invalidation, snapshot built while it changed is not stored.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public JsonSnapshot getBetableBets(Long gameId) {
+        Entry entry = snapshots.get(gameId);
+        if (entry != null && System.currentTimeMillis() - entry.builtAt <= ttlMs) {
+            return entry.json;
+        }
+        long invalidationsBefore = invalidations.get();
+        long builtAt = System.currentTimeMillis();
+        Collection<BetDto> bets = betService.findAllBetableByGameIdAndVisible(gameId);
+        JsonSnapshot json = JsonSnapshot.of(objectMapper, bets);
+        if (snapshots.size() >= maxGames) {
+            snapshots.clear();
+        }
+        snapshots.put(gameId, new Entry(json, builtAt));
+        // snapshot might have been read before concurrent change
+        if (invalidations.get() != invalidationsBefore) {
+            snapshots.remove(gameId);
+        }
+        return json;
+    }
+    
+    @EventListener
+    public void onMarketsChanged(MarketsChangedEvent event) {
+        invalidate(event.getGameId());
+    }
+    
+    public void invalidate(Long gameId) {
+        invalidations.incrementAndGet();
+        snapshots.remove(gameId);
+    }
+    
+    private static final class Entry {
+        
+        private final JsonSnapshot json;
+        private final long builtAt;
+        
+        private Entry(JsonSnapshot json, long builtAt) {
+            this.json = json;
+            this.builtAt = builtAt;
+        }
+    }
+
+}
@@ -0,0 +1,500 @@
+package pl.maciejpajak.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.domain.game.Competition;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.game.GamePart;
+import pl.maciejpajak.domain.game.PlayingParty;
+import pl.maciejpajak.domain.game.Scope;
+import pl.maciejpajak.domain.game.Sport;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.repository.CompetitionRepository;
+import pl.maciejpajak.repository.GameRepository;
+import pl.maciejpajak.repository.ScopeRepository;
+import pl.maciejpajak.repository.SportRepository;
+
+/**
+ * Read-through cache of visible sports, scopes, competitions and games, with secondary indexes 
+ * (scopes by sport, competitions by sport and/or scope, games by competition and/or status).
+ * <p>
+ * Whole catalog is held in one immutable snapshot, replaced atomically on reload, together with JSON of views
+ * served from it. Snapshot becomes stale
+ * after {@code catalog.ttl-ms} or when sport, scope, competition or playing party is inserted, updated or deleted 
+ * through Hibernate on this node. When game or game part changes, only changed games are read again and patched
+ * into new snapshot, so live games do not cause full reloads.
+ * Stale snapshot is still served while single background reload runs, so readers reach database only
+ * before first load. Games are cached only while there are at most {@code catalog.max-games} of them, 
+ * otherwise game lookups go to database.
+ * 
+ * @author mac
+ *
+ */
+@Service
+@ManagedResource(objectName = "pl.maciejpajak:type=CatalogCache", description = "Catalog cache statistics")
+public class CatalogCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(CatalogCache.class);
+    
+    private static final Set<Class<?>> CATALOG_ENTITIES = new HashSet<>(Arrays.asList(
+            Sport.class, Scope.class, Competition.class, Game.class, GamePart.class, PlayingParty.class));
+
+    
+    @Autowired
+    private SportRepository sportRepository;
+    
+    @Autowired
+    private ScopeRepository scopeRepository;
+    
+    @Autowired
+    private CompetitionRepository competitionRepository;
+    
+    @Autowired
+    private GameRepository gameRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${catalog.ttl-ms:300000}")
+    private long ttlMs;
+    
+    @Value("${catalog.max-games:50000}")
+    private long maxGames;
+    
+    private volatile Snapshot snapshot;
+    
+    /**
+     * Set when catalog entity changes, cleared by reload which starts after the change.
+     */
+    private final AtomicBoolean invalidated = new AtomicBoolean();
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    
+    /**
+     * Ids of games changed since last reload or refresh.
+     */
+    private final Set<Long> changedGames = ConcurrentHashMap.newKeySet();
+    
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder gameRefreshes = new LongAdder();
+    
+    private ExecutorService loader;
+    
+    private TransactionTemplate readOnlyTransactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        loader = Executors.newSingleThreadExecutor(r -> new Thread(r, "catalog-cache-loader"));
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        CatalogChangeListener listener = new CatalogChangeListener();
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+        reload();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+    
+    public Collection<Sport> getSports() {
+        return snapshot().sports;
+    }
+    
+    public Collection<Scope> getScopes() {
+        return snapshot().scopes;
+    }
+    
+    public Collection<Scope> getScopesBySport(Long sportId) {
+        return snapshot().scopesBySport.getOrDefault(sportId, Collections.emptyList());
+    }
+    
+    /**
+     * @param sportId may be null
+     * @param scopeId may be null
+     */
+    public Collection<Competition> getCompetitions(Long sportId, Long scopeId) {
+        Snapshot s = snapshot();
+        if (sportId == null && scopeId == null) {
+            return s.competitions;
+        } else if (sportId == null) {
+            return s.competitionsByScope.getOrDefault(scopeId, Collections.emptyList());
+        } else if (scopeId == null) {
+            return s.competitionsBySport.getOrDefault(sportId, Collections.emptyList());
+        }
+        return s.competitionsBySportAndScope.getOrDefault(sportId, Collections.emptyMap())
+                .getOrDefault(scopeId, Collections.emptyList());
+    }
+    
+    /**
+     * @return visible game, read from database if games are not cached
+     */
+    public Optional<Game> findGame(Long gameId) {
+        Snapshot s = snapshot();
+        return s.gamesCached ? Optional.ofNullable(s.gamesById.get(gameId)) : gameRepository.findOneWithDetailsByIdAndVisible(gameId, true);
+    }
+    
+    /**
+     * @param competitionId may be null
+     * @param status may be null
+     * @return visible games, read from database if games are not cached
+     */
+    public Collection<Game> getGames(Long competitionId, GameStatus status) {
+        Snapshot s = snapshot();
+        if (!s.gamesCached) {
+            return findGames(competitionId, status);
+        }
+        if (competitionId == null && status == null) {
+            return s.games;
+        } else if (competitionId == null) {
+            return s.gamesByStatus.getOrDefault(status, Collections.emptyList());
+        } else if (status == null) {
+            return s.gamesByCompetition.getOrDefault(competitionId, Collections.emptyList());
+        }
+        return s.gamesByCompetitionAndStatus.getOrDefault(competitionId, Collections.emptyMap())
+                .getOrDefault(status, Collections.emptyList());
+    }
+    
+    private Collection<Game> findGames(Long competitionId, GameStatus status) {
+        if (competitionId == null && status == null) {
+            return gameRepository.findDistinctByVisible(true);
+        } else if (competitionId == null) {
+            return gameRepository.findDistinctByStatusAndVisible(status, true);
+        } else if (status == null) {
+            return gameRepository.findDistinctByCompetitionIdAndVisible(competitionId, true);
+        }
+        return gameRepository.findDistinctByStatusAndCompetitionIdAndVisible(status, competitionId, true);
+    }
+    
+    /**
+     * Returns JSON of catalog view identified by {@code key}. View is serialized once per snapshot, 
+     * so it is serialized again only after catalog has changed.
+     * @param key identifies view and its parameters
+     * @param view reads view from this cache
+     */
+    public JsonSnapshot getJson(String key, Supplier<Object> view) {
+        return snapshot().json.computeIfAbsent(key, k -> JsonSnapshot.of(objectMapper, view.get()));
+    }
+    
+    /**
+     * Marks snapshot as stale, next read triggers reload.
+     */
+    @ManagedOperation(description = "Marks catalog as stale")
+    public void invalidate() {
+        invalidations.increment();
+        invalidated.set(true);
+    }
+    
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                return snapshot;
+            }
+        }
+        if ((isStale(s) || !changedGames.isEmpty()) && reloading.compareAndSet(false, true)) {
+            try {
+                loader.execute(() -> {
+                    try {
+                        if (isStale(snapshot)) {
+                            reload();
+                        } else {
+                            refreshGames();
+                        }
+                    } catch (RuntimeException e) {
+                        log.error("could not reload catalog", e);
+                    } finally {
+                        reloading.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                reloading.set(false);
+            }
+        }
+        return s;
+    }
+    
+    private boolean isStale(Snapshot s) {
+        return invalidated.get() || System.currentTimeMillis() - s.loadedAt > ttlMs;
+    }
+    
+    private void reload() {
+        invalidated.set(false);
+        changedGames.clear();
+        long loadedAt = System.currentTimeMillis();
+        // lists are held in snapshot, their queries are not put into Hibernate query cache
+        snapshot = readOnlyTransactionTemplate.execute(status -> {
+            boolean gamesCached = gameRepository.countByVisible(true) <= maxGames;
+            return new Snapshot(loadedAt, 
+                    sportRepository.findAllByVisible(true),
+                    scopeRepository.findAllByVisible(true),
+                    competitionRepository.findAllForCatalog(),
+                    gamesCached ? gameRepository.findAllForCatalog() : null);
+        });
+        reloads.increment();
+        log.debug("catalog reloaded in {} ms", System.currentTimeMillis() - loadedAt);
+    }
+    
+    /**
+     * Reads changed games again and replaces them in new snapshot, games which are no longer visible are removed.
+     */
+    private void refreshGames() {
+        Set<Long> ids = new HashSet<>(changedGames);
+        changedGames.removeAll(ids);
+        Snapshot s = snapshot;
+        if (!s.gamesCached || ids.isEmpty()) {
+            return;
+        }
+        Map<Long, Game> changed = new HashMap<>();
+        readOnlyTransactionTemplate.execute(status -> {
+            gameRepository.findDistinctByIdInAndVisible(ids, true).forEach(g -> changed.put(g.getId(), g));
+            return null;
+        });
+        List<Game> games = new ArrayList<>(s.games.size() + changed.size());
+        for (Game g : s.games) {
+            if (!ids.contains(g.getId())) {
+                games.add(g);
+            } else if (changed.containsKey(g.getId())) {
+                games.add(changed.remove(g.getId()));
+            }
+        }
+        // new games
+        games.addAll(changed.values());
+        snapshot = new Snapshot(s.loadedAt, s.sports, s.scopes, s.competitions, games);
+        gameRefreshes.increment();
+        log.debug("refreshed {} games of catalog", ids.size());
+    }
+    
+    @ManagedAttribute(description = "Number of catalog reloads")
+    public long getReloads() {
+        return reloads.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of catalog invalidations")
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of snapshots patched with changed games")
+    public long getGameRefreshes() {
+        return gameRefreshes.sum();
+    }
+    
+    @ManagedAttribute(description = "Age of catalog snapshot in milliseconds")
+    public long getSnapshotAgeMillis() {
+        Snapshot s = snapshot;
+        return s != null ? System.currentTimeMillis() - s.loadedAt : -1;
+    }
+    
+    @ManagedAttribute(description = "Whether games are held in catalog")
+    public boolean isGamesCached() {
+        Snapshot s = snapshot;
+        return s != null && s.gamesCached;
+    }
+    
+    private static final class Snapshot {
+        
+        private final long loadedAt;
+        private final List<Sport> sports;
+        private final List<Scope> scopes;
+        private final Map<Long, List<Scope>> scopesBySport;
+        private final List<Competition> competitions;
+        private final Map<Long, List<Competition>> competitionsBySport;
+        private final Map<Long, List<Competition>> competitionsByScope;
+        private final Map<Long, Map<Long, List<Competition>>> competitionsBySportAndScope;
+        private final boolean gamesCached;
+        private final List<Game> games;
+        private final Map<Long, Game> gamesById;
+        private final Map<Long, List<Game>> gamesByCompetition;
+        private final Map<GameStatus, List<Game>> gamesByStatus;
+        private final Map<Long, Map<GameStatus, List<Game>>> gamesByCompetitionAndStatus;
+        private final Map<String, JsonSnapshot> json = new ConcurrentHashMap<>();
+        
+        private Snapshot(long loadedAt, Collection<Sport> sports, Collection<Scope> scopes, 
+                Collection<Competition> competitions, Collection<Game> games) {
+            this.loadedAt = loadedAt;
+            this.sports = immutable(sports);
+            this.scopes = immutable(scopes);
+            this.competitions = immutable(competitions);
+            
+            Map<Long, Set<Scope>> scopesBySport = new HashMap<>();
+            Map<Long, List<Competition>> bySport = new HashMap<>();
+            Map<Long, List<Competition>> byScope = new HashMap<>();
+            Map<Long, Map<Long, List<Competition>>> bySportAndScope = new HashMap<>();
+            for (Competition c : competitions) {
+                Long sportId = c.getSport() != null ? c.getSport().getId() : null;
+                Long scopeId = c.getScope() != null ? c.getScope().getId() : null;
+                if (sportId != null) {
+                    bySport.computeIfAbsent(sportId, id -> new ArrayList<>()).add(c);
+                }
+                if (scopeId != null) {
+                    byScope.computeIfAbsent(scopeId, id -> new ArrayList<>()).add(c);
+                }
+                if (sportId != null && scopeId != null) {
+                    bySportAndScope.computeIfAbsent(sportId, id -> new HashMap<>())
+                            .computeIfAbsent(scopeId, id -> new ArrayList<>()).add(c);
+                    if (c.getScope().isVisible()) {
+                        scopesBySport.computeIfAbsent(sportId, id -> new LinkedHashSet<>()).add(c.getScope());
+                    }
+                }
+            }
+            this.scopesBySport = immutableValues(scopesBySport);
+            this.competitionsBySport = immutableValues(bySport);
+            this.competitionsByScope = immutableValues(byScope);
+            Map<Long, Map<Long, List<Competition>>> bySportAndScopeImmutable = new HashMap<>();
+            bySportAndScope.forEach((id, map) -> bySportAndScopeImmutable.put(id, immutableValues(map)));
+            this.competitionsBySportAndScope = Collections.unmodifiableMap(bySportAndScopeImmutable);
+            
+            this.gamesCached = games != null;
+            Map<Long, Game> byId = new HashMap<>();
+            Map<Long, List<Game>> byCompetition = new HashMap<>();
+            Map<GameStatus, List<Game>> byStatus = new EnumMap<>(GameStatus.class);
+            Map<Long, Map<GameStatus, List<Game>>> byCompetitionAndStatus = new HashMap<>();
+            if (games != null) {
+                for (Game g : games) {
+                    byId.put(g.getId(), g);
+                    Long competitionId = g.getCompetition() != null ? g.getCompetition().getId() : null;
+                    if (competitionId != null) {
+                        byCompetition.computeIfAbsent(competitionId, id -> new ArrayList<>()).add(g);
+                    }
+                    if (g.getStatus() != null) {
+                        byStatus.computeIfAbsent(g.getStatus(), st -> new ArrayList<>()).add(g);
+                    }
+                    if (competitionId != null && g.getStatus() != null) {
+                        byCompetitionAndStatus.computeIfAbsent(competitionId, id -> new EnumMap<>(GameStatus.class))
+                                .computeIfAbsent(g.getStatus(), st -> new ArrayList<>()).add(g);
+                    }
+                }
+            }
+            this.games = games != null ? immutable(games) : Collections.emptyList();
+            this.gamesById = Collections.unmodifiableMap(byId);
+            this.gamesByCompetition = immutableValues(byCompetition);
+            this.gamesByStatus = immutableValues(byStatus);
+            Map<Long, Map<GameStatus, List<Game>>> byCompetitionAndStatusImmutable = new HashMap<>();
+            byCompetitionAndStatus.forEach((id, map) -> byCompetitionAndStatusImmutable.put(id, immutableValues(map)));
+            this.gamesByCompetitionAndStatus = Collections.unmodifiableMap(byCompetitionAndStatusImmutable);
+        }
+        
+        private static <T> List<T> immutable(Collection<T> values) {
+            return Collections.unmodifiableList(new ArrayList<>(values));
+        }
+        
+        private static <K, T> Map<K, List<T>> immutableValues(Map<K, ? extends Collection<T>> map) {
+            Map<K, List<T>> result = new HashMap<>();
+            map.forEach((k, v) -> result.put(k, immutable(v)));
+            return Collections.unmodifiableMap(result);
+        }
+    }
+    
+    /**
+     * Invalidates catalog or marks game as changed after commit of transaction which changed catalog entity.
+     */
+    private final class CatalogChangeListener 
+            implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return CATALOG_ENTITIES.contains(persister.getMappedClass());
+        }
+        
+        private void onChange(Object entity) {
+            if (entity instanceof Game) {
+                changedGames.add(((Game) entity).getId());
+            } else if (entity instanceof GamePart) {
+                // game is lazy, its id is read without loading it
+                changedGames.add(((GamePart) entity).getGame().getId());
+            } else if (CATALOG_ENTITIES.contains(entity.getClass())) {
+                invalidate();
+            }
+        }
+        
+    }
+
+}
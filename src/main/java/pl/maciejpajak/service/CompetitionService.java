@@ -5,31 +5,22 @@ import java.util.Collection;
 import org.springframework.stereotype.Service;
 
 import pl.maciejpajak.domain.game.Competition;
-import pl.maciejpajak.repository.CompetitionRepository;
 
 @Service
 public class CompetitionService {
     
-    private final CompetitionRepository competitionRepository;
+    private final CatalogCache catalogCache;
     
-    public CompetitionService(CompetitionRepository competitionRepository) {
-        this.competitionRepository = competitionRepository;
+    public CompetitionService(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
     }
 
     public Collection<Competition> findAllCompetitions(Long sportId, Long scopeId) {
-        
-        boolean isSportNull = sportId == null;
-        boolean isScopeNull = scopeId == null;
-        
-        if (isSportNull && isScopeNull) {
-            return competitionRepository.findAllByVisible(true);
-        } else if (isSportNull) {
-            return competitionRepository.findAllByScopeIdAndVisible(scopeId, true);
-        } else if (isScopeNull) {
-            return competitionRepository.findAllBySportIdAndVisible(sportId, true);
-        } else {
-            return competitionRepository.findAllBySportIdAndScopeIdAndVisible(sportId, scopeId, true);
-        }
+        return catalogCache.getCompetitions(sportId, scopeId);
+    }
+    
+    public JsonSnapshot findAllCompetitionsJson(Long sportId, Long scopeId) {
+        return catalogCache.getJson("competitions:" + sportId + ":" + scopeId, () -> catalogCache.getCompetitions(sportId, scopeId));
     }
     
 }
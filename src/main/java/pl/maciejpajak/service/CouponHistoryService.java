@@ -0,0 +1,122 @@
+package pl.maciejpajak.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import pl.maciejpajak.domain.util.CouponStatus;
+import pl.maciejpajak.dto.CouponHistoryPageDto;
+import pl.maciejpajak.dto.CouponInvitationShowDto;
+import pl.maciejpajak.dto.CouponShowDto;
+import pl.maciejpajak.dto.PlacedBetShowDto;
+import pl.maciejpajak.repository.CouponHistoryRow;
+import pl.maciejpajak.repository.CouponRepository;
+import pl.maciejpajak.repository.InvitationHistoryRow;
+import pl.maciejpajak.repository.PlacedBetHistoryRow;
+
+/**
+ * Coupon history of user, newest first, paginated by keyset {@code (created, id)}. 
+ * Every page is read in three queries (coupons, placed bets, invitations) regardless of its size.
+ * 
+ * @author mac
+ *
+ */
+@Service
+public class CouponHistoryService {
+    
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    // bounds used in place of missing filters, so queries do not need null checks
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+    
+    private final CouponRepository couponRepository;
+    
+    public CouponHistoryService(CouponRepository couponRepository) {
+        this.couponRepository = couponRepository;
+    }
+    
+    /**
+     * @param userId
+     * @param group group coupons (owned or invited to) if true, individual coupons otherwise
+     * @param statuses coupon statuses to include, all if null or empty
+     * @param from inclusive lower bound of creation time, may be null
+     * @param to exclusive upper bound of creation time, may be null
+     * @param beforeCreated creation time of last coupon of previous page, null for first page
+     * @param beforeId id of last coupon of previous page, null for first page
+     * @param size page size, capped at {@value #MAX_PAGE_SIZE}
+     */
+    public CouponHistoryPageDto findCouponHistory(Long userId, boolean group, Collection<CouponStatus> statuses,
+            LocalDateTime from, LocalDateTime to, LocalDateTime beforeCreated, Long beforeId, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        Collection<CouponStatus> statusesFilter = statuses == null || statuses.isEmpty() 
+                ? Arrays.asList(CouponStatus.values()) : statuses;
+        LocalDateTime fromFilter = from != null ? from : MIN_TIME;
+        LocalDateTime toFilter = to != null ? to : MAX_TIME;
+        LocalDateTime cursorCreated = beforeCreated != null ? beforeCreated : MAX_TIME;
+        Long cursorId = beforeCreated != null && beforeId != null ? beforeId : Long.MAX_VALUE;
+        // one row more than page size tells if there is next page
+        PageRequest page = new PageRequest(0, pageSize + 1);
+        
+        List<CouponHistoryRow> rows = group
+                ? couponRepository.findGroupCouponHistory(userId, statusesFilter, fromFilter, toFilter, cursorCreated, cursorId, page)
+                : couponRepository.findUserCouponHistory(userId, statusesFilter, fromFilter, toFilter, cursorCreated, cursorId, page);
+        boolean hasNext = rows.size() > pageSize;
+        if (hasNext) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return new CouponHistoryPageDto(new ArrayList<>(), null, null);
+        }
+        
+        Set<Long> ids = rows.stream().map(CouponHistoryRow::getId).collect(Collectors.toSet());
+        Map<Long, Set<PlacedBetShowDto>> placedBets = couponRepository.findAllPlacedBetsForHistory(ids).stream()
+                .collect(Collectors.groupingBy(PlacedBetHistoryRow::getCouponId, Collectors.mapping(pb -> 
+                        PlacedBetShowDto.builder()
+                            .id(pb.getId())
+                            .betOptionId(pb.getBetOptionId())
+                            .betOptionDescription(pb.getBetOptionDescription())
+                            .oddId(pb.getOddId())
+                            .oddValue(pb.getOddValue())
+                            .build(), Collectors.toSet())));
+        Map<Long, Set<CouponInvitationShowDto>> invitations = !group ? null 
+                : couponRepository.findAllInvitationsForHistory(ids).stream()
+                .collect(Collectors.groupingBy(InvitationHistoryRow::getCouponId, Collectors.mapping(inv ->
+                        CouponInvitationShowDto.builder()
+                            .invitedUserId(inv.getInvitedUserId())
+                            .userTransactionTime(inv.getUserTransactionTime())
+                            .userTransactoinAmount(inv.getUserTransactionAmount())
+                            .build(), Collectors.toSet())));
+        
+        List<CouponShowDto> coupons = new ArrayList<>(rows.size());
+        for (CouponHistoryRow c : rows) {
+            coupons.add(CouponShowDto.builder()
+                    .id(c.getId())
+                    .created(c.getCreated())
+                    .ownerId(c.getOwnerId())
+                    .ownerTransactionAmount(c.getOwnerTransactionAmount())
+                    .status(c.getStatus())
+                    .value(c.getValue())
+                    .bonus(c.getBonus())
+                    .totalPrize(c.getTotalPrize())
+                    .placedBets(placedBets.getOrDefault(c.getId(), new HashSet<>()))
+                    .invitations(group ? invitations.getOrDefault(c.getId(), new HashSet<>()) : null)
+                    .build());
+        }
+        CouponHistoryRow last = rows.get(rows.size() - 1);
+        return hasNext 
+                ? new CouponHistoryPageDto(coupons, last.getCreated(), last.getId())
+                : new CouponHistoryPageDto(coupons, null, null);
+    }
+
+}
@@ -4,6 +4,8 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -15,8 +17,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import pl.maciejpajak.domain.bet.BetOption;
-import pl.maciejpajak.domain.bet.Odd;
 import pl.maciejpajak.domain.bet.PlacedBet;
 import pl.maciejpajak.domain.coupon.CouponInvitation;
 import pl.maciejpajak.domain.coupon.GroupCoupon;
@@ -38,12 +38,14 @@ import pl.maciejpajak.exception.BetClosedException;
 import pl.maciejpajak.exception.BetsCombinationNotAllowedException;
 import pl.maciejpajak.exception.GameHasAlreadyStartedException;
 import pl.maciejpajak.exception.OddHasChangedException;
+import pl.maciejpajak.repository.BetOptionForPlacement;
 import pl.maciejpajak.repository.BetOptionRepository;
 import pl.maciejpajak.repository.BidAmountBonusRepository;
 import pl.maciejpajak.repository.GroupCouponRepository;
 import pl.maciejpajak.repository.OddRepository;
 import pl.maciejpajak.repository.UserCouponRepository;
 import pl.maciejpajak.repository.UserRepository;
+import pl.maciejpajak.service.LatestOddCache.LatestOdd;
 
 
 @Service
@@ -58,8 +60,12 @@ public class CouponService {
     @Autowired
     private OddRepository oddRepository;
     @Autowired
+    private LatestOddCache latestOddCache;
+    @Autowired
     private BetOptionRepository betOptionRepository;
     @Autowired
+    private MarketIndex marketIndex;
+    @Autowired
     private UserRepository userRepository;
     @Autowired
     private TransactionService transactionService;
@@ -70,26 +76,44 @@ public class CouponService {
     
 
     public Collection<CouponShowDto> findAllIndividualCoupons(Long userId) {
-        return userCouponRepository.findAllByOwnerIdAndVisible(userId, true).stream()
+        return userCouponRepository.findDistinctByOwnerIdAndVisible(userId, true).stream()
                 .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
     }
     
     public Collection<CouponShowDto> findAllGroupCoupons(Long userId) {
-        return groupCouponRepository.findAllByOwnerIdOrIntivationsInvitedUserIdAndVisible(userId, userId, true)
+        return groupCouponRepository.findDistinctByOwnerIdOrIntivationsInvitedUserIdAndVisible(userId, userId, true)
                 .stream()
                 .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
     }
     
     public Collection<CouponShowDto> findOwnedGroupCoupons(Long userId) {
-        return groupCouponRepository.findAllByOwnerIdAndVisible(userId, true).stream()
+        return groupCouponRepository.findDistinctByOwnerIdAndVisible(userId, true).stream()
                 .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
     }
     
     public Collection<CouponShowDto> findInvitedGroupCoupons(Long userId) {
-        return groupCouponRepository.findAllByIntivationsInvitedUserIdAndVisible(userId, true).stream()
+        return groupCouponRepository.findDistinctByIntivationsInvitedUserIdAndVisible(userId, true).stream()
                 .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
     }
     
+    /**
+     * Finds coupon owned by user or group coupon user was invited to.
+     */
+    public CouponShowDto findOneCoupon(Long couponId, Long userId) {
+        Optional<UserCoupon> userCoupon = userCouponRepository.findOneByIdAndVisible(couponId, true);
+        if (userCoupon.isPresent()) {
+            return userCoupon
+                    .filter(c -> c.getOwner().getId().equals(userId))
+                    .map(DtoMappers.convertUserCouponToDto)
+                    .orElseThrow(() -> new BaseEntityNotFoundException(couponId));
+        }
+        return groupCouponRepository.findOneByIdAndVisible(couponId, true)
+                .filter(c -> c.getOwner().getId().equals(userId) 
+                        || c.getIntivations().stream().anyMatch(inv -> inv.getInvitedUser().getId().equals(userId)))
+                .map(DtoMappers.convertUserCouponToDto)
+                .orElseThrow(() -> new BaseEntityNotFoundException(couponId));
+    }
+    
     public Collection<BidAmountBonusDto> findAllBidAmountBonuses() {
         return bidAmountBonusRepository.findAllByVisible(true).stream().map(bonus -> 
                                 BidAmountBonusDto.builder()
@@ -164,33 +188,39 @@ public class CouponService {
        
     
     
+    /**
+     * Validates bets on coupon against {@link MarketIndex} and creates placed bets.
+     */
     private Set<PlacedBet> prepareAndValidateBets(CouponPlaceDto couponDto) {
         Set<PlacedBet> placedBets = new HashSet<>();
+        Map<Long, BetOptionForPlacement> betOptions = marketIndex.findAllForPlacement(couponDto.getBetOptionsWithOdds().stream()
+                .map(BetOptionWithOddDto::getBetOptionId).collect(Collectors.toSet()));
         
         // prepare single bets list with odds
         for (BetOptionWithOddDto b : couponDto.getBetOptionsWithOdds()) {
-            BetOption betOption = betOptionRepository.findOneByIdAndVisible(b.getBetOptionId(), true)
-                                    .orElseThrow(() -> new BaseEntityNotFoundException(b.getBetOptionId()));
-            if (!betOption.getBet().isBetable()) { // TODO check this
-                throw new BetClosedException(betOption.getBet().getId());
+            BetOptionForPlacement betOption = betOptions.get(b.getBetOptionId());
+            if (betOption == null) {
+                throw new BaseEntityNotFoundException(b.getBetOptionId());
+            }
+            if (!betOption.isBetable()) { // TODO check this
+                throw new BetClosedException(betOption.getBetId());
             }
             if (couponDto instanceof GroupCouponPlaceDto) { // TODO check this
-                if(!betOption.getBet().getGame().getStatus().equals(GameStatus.UPCOMING)) {
+                if(!GameStatus.UPCOMING.equals(betOption.getGameStatus())) {
                     throw new GameHasAlreadyStartedException();
                 }
             }
-            Odd latestOdd = oddRepository.findFirstByBetOptionIdOrderByCreatedDesc(b.getBetOptionId())
-                    .orElseThrow(() -> new BaseEntityNotFoundException(b.getBetOptionId()));
+            Long latestOddId = findLatestOddId(b);
             // if odd has changes since coupon was send and user doesn't accept odd change throw exception
-            if (!b.getOddId().equals(latestOdd.getId()) && !couponDto.isOddsChangeAccepted()) {
+            if (!latestOddId.equals(b.getOddId()) && !couponDto.isOddsChangeAccepted()) {
                 throw new OddHasChangedException();
             }
             
             placedBets.add(
                     PlacedBet.builder()
                         .visible(true)
-                        .betOption(betOption)
-                        .odd(latestOdd)
+                        .betOption(betOptionRepository.getOne(b.getBetOptionId()))
+                        .odd(oddRepository.getOne(latestOddId))
                         .build()
                     );
         }
@@ -201,22 +231,35 @@ public class CouponService {
         
         // validate if bets can be combined (only one bet option from each bet)
         Set<Long> betsIds = new HashSet<>();
-        placedBets.forEach(pb -> {
-            Long id = pb.getBetOption().getBet().getId();
-            if (betsIds.contains(id)) {
+        couponDto.getBetOptionsWithOdds().forEach(b -> {
+            if (!betsIds.add(betOptions.get(b.getBetOptionId()).getBetId())) {
                 throw new BetsCombinationNotAllowedException(); // TODO add message
-            } else {
-                betsIds.add(id);
             }
         });
         
         return placedBets;
     }
     
+    /**
+     * Latest odd is read from {@link LatestOddCache}, database is read only when it misses bet option or when user
+     * has seen newer odd. Cache is updated after commit of odd publication on this node, odds published by other nodes
+     * are visible after {@code odd-cache.refresh-interval-ms}, so until then coupon with previous odd is accepted.
+     */
+    private Long findLatestOddId(BetOptionWithOddDto b) {
+        LatestOdd latestOdd = latestOddCache.find(b.getBetOptionId())
+                .orElseThrow(() -> new BaseEntityNotFoundException(b.getBetOptionId()));
+        // user has seen odd newer than cached one, it was published by other node
+        if (b.getOddId() != null && b.getOddId() > latestOdd.getOddId()) {
+            latestOdd = latestOddCache.reload(b.getBetOptionId())
+                    .orElseThrow(() -> new BaseEntityNotFoundException(b.getBetOptionId()));
+        }
+        return latestOdd.getOddId();
+    }
+    
     @Transactional
     public void cancelUnacceptedGroupCoupons(Long gameId) {
         log.debug("canceling unaccepted group coupons");
-        groupCouponRepository.findAllByPlacedBetsBetOptionBetGameIdAndStatusAndVisible(gameId, CouponStatus.PENDING, true).forEach(this::cancelGroupCoupon);
+        groupCouponRepository.findDistinctByPlacedBetsBetOptionBetGameIdAndStatusAndVisible(gameId, CouponStatus.PENDING, true).forEach(this::cancelGroupCoupon);
     }
     
     private void cancelGroupCoupon(GroupCoupon groupCoupon) {
@@ -225,7 +268,7 @@ public class CouponService {
         groupCoupon.getIntivations().forEach(inv -> {
             Transaction t = inv.getBetTransaction();
             if (t != null) {
-                transactionService.createTransaction(t.getAmount(), t.getOwner(), TransactionType.CANCEL_BET);
+                transactionService.createTransaction(t.getAmount().negate(), t.getOwner(), TransactionType.CANCEL_BET);
             }
             applicationEventPublisher.publishEvent(new NotifyUserEvent(this, inv.getInvitedUser().getId(), groupCoupon.getId(), NotificationType.COUPON_CANCELLED));
         });
@@ -0,0 +1,76 @@
+package pl.maciejpajak.service;
+
+import java.math.BigDecimal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import pl.maciejpajak.exception.InsufficientFundsException;
+
+/**
+ * Wallet keeping balances only in {@code users.balance}. Every change is one conditional UPDATE,
+ * debit succeeds only if balance is sufficient, so concurrent changes are serialized by database row lock
+ * and no update is lost. Safe for multi-node deployments.
+ * Enabled by default, {@code wallet.mode=database}.
+ * 
+ * @author mac
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.mode", havingValue = "database", matchIfMissing = true)
+public class DatabaseWallet implements Wallet {
+    
+    private static final Logger log = LoggerFactory.getLogger(DatabaseWallet.class);
+    
+    private static final String DEBIT_SQL = "UPDATE users SET balance = balance - ? WHERE id = ? AND balance >= ?";
+    private static final String CREDIT_SQL = "UPDATE users SET balance = COALESCE(balance, 0) + ? WHERE id = ?";
+    private static final String SELECT_BALANCE_SQL = "SELECT COALESCE(balance, 0) FROM users WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxAttempts;
+    
+    @Autowired
+    public DatabaseWallet(JdbcTemplate jdbcTemplate, @Value("${wallet.max-attempts:3}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void apply(Long userId, long amountCents) {
+        if (amountCents < 0) {
+            if (update(DEBIT_SQL, Wallet.toAmount(-amountCents), userId, Wallet.toAmount(-amountCents)) == 0) {
+                throw new InsufficientFundsException();
+            }
+        } else if (amountCents > 0) {
+            update(CREDIT_SQL, Wallet.toAmount(amountCents), userId);
+        }
+    }
+
+    @Override
+    public long getBalance(Long userId) {
+        return Wallet.toCents(jdbcTemplate.queryForObject(SELECT_BALANCE_SQL, BigDecimal.class, userId));
+    }
+    
+    /**
+     * Executes update, retries if row lock could not be acquired in time (statement is rolled back then, not transaction).
+     */
+    private int update(String sql, Object... args) {
+        for (int attempt = 1 ; ; attempt++) {
+            try {
+                return jdbcTemplate.update(sql, args);
+            } catch (CannotAcquireLockException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("could not lock balance of user (id = {}), attempt {}", args[1], attempt);
+            }
+        }
+    }
+
+}
@@ -1,6 +1,11 @@
 package pl.maciejpajak.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.stereotype.Service;
 
@@ -10,46 +15,65 @@ import pl.maciejpajak.domain.game.score.PartScore;
 import pl.maciejpajak.domain.util.GameStatus;
 import pl.maciejpajak.exception.BaseEntityNotFoundException;
 import pl.maciejpajak.repository.GamePartRepository;
-import pl.maciejpajak.repository.GameRepository;
 import pl.maciejpajak.repository.GameScoreRepository;
 import pl.maciejpajak.repository.PartScoreRepository;
 
 @Service
 public class GameService {
 
-    private final GameRepository gameRepository;
     private final GameScoreRepository gameScoreRepository;
     private final GamePartRepository gamePartRepository;
     private final PartScoreRepository partScoreRepository;
+    private final CatalogCache catalogCache;
     
-    public GameService(GameRepository gameRepository,
-            GameScoreRepository gameScoreRepository,
+    public GameService(GameScoreRepository gameScoreRepository,
             GamePartRepository gamePartRepository,
-            PartScoreRepository partScoreRepository) {
-        this.gameRepository = gameRepository;
+            PartScoreRepository partScoreRepository,
+            CatalogCache catalogCache) {
         this.gameScoreRepository = gameScoreRepository;
         this.gamePartRepository = gamePartRepository;
         this.partScoreRepository = partScoreRepository;
+        this.catalogCache = catalogCache;
     }
     
     public Game findOneById(Long id) {
-        return gameRepository.findOneByIdAndVisible(id, true).orElseThrow(() -> new BaseEntityNotFoundException(id));
+        return catalogCache.findGame(id).orElseThrow(() -> new BaseEntityNotFoundException(id));
     }
     
     public Collection<Game> findAll() {
-        return gameRepository.findAllByVisible(true);
+        return catalogCache.getGames(null, null);
     }
     
     public Collection<Game> findAllByCompetitionId(Long competitionId) {
-        return gameRepository.findAllByCompetitionIdAndVisible(competitionId, true);
+        return catalogCache.getGames(competitionId, null);
     }
     
-    public Collection<Game> getAllLiveGamesByCompetition(Long competitionId) {
-        if (competitionId == null) {
-            return gameRepository.findAllByStatusAndVisible(GameStatus.LIVE, true);
-        } else {
-            return gameRepository.findAllByStatusAndCompetitionIdAndVisible(GameStatus.LIVE, competitionId, true);
+    /**
+     * @param statuses may be null or empty
+     * @param competitionId may be null
+     */
+    public Collection<Game> findAll(Collection<GameStatus> statuses, Long competitionId) {
+        if (statuses == null || statuses.isEmpty()) {
+            return catalogCache.getGames(competitionId, null);
+        }
+        List<Game> games = new ArrayList<>();
+        for (GameStatus status : new HashSet<>(statuses)) {
+            games.addAll(catalogCache.getGames(competitionId, status));
         }
+        return games;
+    }
+    
+    public JsonSnapshot findAllJson(Collection<GameStatus> statuses, Long competitionId) {
+        Set<GameStatus> statusesKey = statuses == null ? EnumSet.noneOf(GameStatus.class) : EnumSet.copyOf(statuses);
+        return catalogCache.getJson("games:" + competitionId + ":" + statusesKey, () -> findAll(statusesKey, competitionId));
+    }
+    
+    public Collection<Game> getAllLiveGamesByCompetition(Long competitionId) {
+        return catalogCache.getGames(competitionId, GameStatus.LIVE);
+    }
+    
+    public JsonSnapshot getAllLiveGamesByCompetitionJson(Long competitionId) {
+        return findAllJson(EnumSet.of(GameStatus.LIVE), competitionId);
     }
     
     public GameScore findLatestGameScoreByGameId(Long gameId) {
@@ -0,0 +1,200 @@
+package pl.maciejpajak.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.exception.InsufficientFundsException;
+
+/**
+ * Wallet keeping balances in memory, one CAS updated counter of cents per user.
+ * <p>
+ * Debits reserve funds immediately and are released if transaction rolls back, credits are applied after commit.
+ * Transactions ledger is the source of truth: transactions are saved as pending in the same database transaction
+ * as the business change, and every {@code wallet.flush-interval-ms} pending transactions are summed per user,
+ * added to {@code users.balance} and marked as applied in one transaction, so balance column is a projection
+ * lagging behind ledger. Balance is loaded lazily as balance column plus pending transactions, so changes committed
+ * before a crash are neither lost nor applied twice. Memory is only consistent with ledger when one node
+ * changes balances, so this wallet is not safe for multi-node deployments. Enabled with {@code wallet.mode=memory}.
+ * 
+ * @author mac
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "wallet.mode", havingValue = "memory")
+public class InMemoryWallet implements Wallet {
+    
+    private static final Logger log = LoggerFactory.getLogger(InMemoryWallet.class);
+    
+    private static final String SELECT_BALANCE_SQL = "SELECT COALESCE(u.balance, 0) + COALESCE((SELECT SUM(t.amount) FROM transactions t "
+            + "WHERE t.owner_id = u.id AND t.balance_pending = true), 0) FROM users u WHERE u.id = ?";
+    private static final String SELECT_PENDING_SQL = 
+            "SELECT id, owner_id, amount FROM transactions WHERE balance_pending = true ORDER BY id LIMIT ?";
+    private static final String UPDATE_BALANCE_SQL = "UPDATE users SET balance = COALESCE(balance, 0) + ? WHERE id = ?";
+    private static final String CLEAR_PENDING_SQL = "UPDATE transactions SET balance_pending = false WHERE id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${wallet.flush-interval-ms:500}")
+    private long flushIntervalMs;
+    
+    @Value("${wallet.flush-batch-size:5000}")
+    private int flushBatchSize;
+    
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService scheduler;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "wallet-flush"));
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    @Override
+    public void apply(Long userId, long amountCents) {
+        Account account = account(userId);
+        if (amountCents < 0) {
+            reserve(account, amountCents);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commit(account, amountCents);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                    commit(account, amountCents);
+                } else if (amountCents < 0) {
+                    // release reserved funds
+                    account.balance.addAndGet(-amountCents);
+                }
+            }
+        });
+    }
+
+    @Override
+    public long getBalance(Long userId) {
+        return account(userId).balance.get();
+    }
+    
+    @Override
+    public boolean isWriteBehind() {
+        return true;
+    }
+    
+    /**
+     * Applies pending transactions to {@code users.balance}, including the ones left by previous run of application.
+     */
+    public synchronized void flush() {
+        int applied;
+        do {
+            applied = transactionTemplate.execute(status -> applyPending());
+        } while (applied == flushBatchSize);
+    }
+    
+    /**
+     * @return number of applied transactions
+     */
+    private int applyPending() {
+        Map<Long, Long> deltas = new HashMap<>();
+        List<Object[]> ids = new ArrayList<>();
+        jdbcTemplate.query(SELECT_PENDING_SQL, rs -> {
+            ids.add(new Object[] { rs.getLong(1) });
+            deltas.merge(rs.getLong(2), Wallet.toCents(rs.getBigDecimal(3)), Long::sum);
+        }, flushBatchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, delta) -> updates.add(new Object[] { Wallet.toAmount(delta), userId }));
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, updates);
+        jdbcTemplate.batchUpdate(CLEAR_PENDING_SQL, ids);
+        log.debug("applied {} transactions to balances of {} users", ids.size(), updates.size());
+        return ids.size();
+    }
+    
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("could not flush balances", e);
+        }
+    }
+    
+    private void reserve(Account account, long amountCents) {
+        long current;
+        do {
+            current = account.balance.get();
+            if (current + amountCents < 0) {
+                throw new InsufficientFundsException();
+            }
+        } while (!account.balance.compareAndSet(current, current + amountCents));
+    }
+    
+    private void commit(Account account, long amountCents) {
+        if (amountCents > 0) {
+            account.balance.addAndGet(amountCents);
+        }
+    }
+    
+    private Account account(Long userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            return account;
+        }
+        // loaded outside of map, account created meanwhile by other thread wins
+        Account loaded = new Account(Wallet.toCents(jdbcTemplate.queryForList(SELECT_BALANCE_SQL, BigDecimal.class, userId)
+                .stream().findFirst().orElse(null)));
+        account = accounts.putIfAbsent(userId, loaded);
+        return account != null ? account : loaded;
+    }
+    
+    private static final class Account {
+        
+        private final AtomicLong balance;
+        
+        private Account(long balance) {
+            this.balance = new AtomicLong(balance);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package pl.maciejpajak.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Response body serialized once: JSON bytes, gzipped bytes for bodies of at least {@link #GZIP_MIN_SIZE} bytes,
+ * and strong ETags computed from content, so the same data gets the same ETags on every node.
+ * Gzipped body is different representation, it has its own ETag with {@code -gzip} suffix.
+ * 
+ * @author mac
+ *
+ */
+public final class JsonSnapshot {
+    
+    public static final int GZIP_MIN_SIZE = 1024;
+    
+    private final byte[] body;
+    private final byte[] gzippedBody;
+    private final String etag;
+    private final String gzippedEtag;
+    
+    private JsonSnapshot(byte[] body, byte[] gzippedBody, String digest) {
+        this.body = body;
+        this.gzippedBody = gzippedBody;
+        this.etag = "\"" + digest + "\"";
+        this.gzippedEtag = gzippedBody != null ? "\"" + digest + "-gzip\"" : null;
+    }
+    
+    public static JsonSnapshot of(ObjectMapper objectMapper, Object content) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("could not serialize snapshot", e);
+        }
+        return new JsonSnapshot(body, body.length >= GZIP_MIN_SIZE ? gzip(body) : null, DigestUtils.md5DigestAsHex(body));
+    }
+    
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return gzipped body, null if body is too small to be worth compressing
+     */
+    public byte[] getGzippedBody() {
+        return gzippedBody;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * @return ETag of gzipped body, null if there is no gzipped body
+     */
+    public String getGzippedEtag() {
+        return gzippedEtag;
+    }
+
+}
@@ -0,0 +1,169 @@
+package pl.maciejpajak.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import pl.maciejpajak.domain.bet.Odd;
+import pl.maciejpajak.repository.OddRepository;
+
+/**
+ * Latest odd of every bet option, keyed by bet option id. Warmed on startup and updated by odds writers.
+ * <p>
+ * Entries are never invalidated, only replaced by odd with greater id, so updates may arrive in any order and more than once.
+ * Odds written by other nodes are picked up by tailing odd table by id every {@code odd-cache.refresh-interval-ms}.
+ * Ids are not committed in order, so every refresh reads again all odds with ids greater than greatest id seen
+ * {@code odd-cache.rescan-window-ms} ago. On multi-node deployment cache is stale for at most refresh interval,
+ * as long as odd's transaction commits within rescan window; odd committed later is missed until bet option gets next odd.
+ * Readers which know about newer odd (e.g. coupon sent with odd id greater than cached one) call {@link #reload(Long)}.
+ * <p>
+ * Entries are held in {@link ConcurrentHashMap} with boxed keys, there is no primitive collections library in the project.
+ * Entry holds odd id as primitive long and is replaced as a whole, so reads take no lock and allocate nothing.
+ * 
+ * @author mac
+ *
+ */
+@Service
+public class LatestOddCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(LatestOddCache.class);
+    
+    @Autowired
+    private OddRepository oddRepository;
+    
+    @Value("${odd-cache.refresh-interval-ms:1000}")
+    private long refreshIntervalMs;
+    
+    @Value("${odd-cache.rescan-window-ms:30000}")
+    private long rescanWindowMs;
+    
+    private final Map<Long, LatestOdd> latestOdds = new ConcurrentHashMap<>();
+    
+    /**
+     * Greatest odd id read from database, only advanced by warm up and refresh.
+     */
+    private volatile long lastSeenOddId;
+    
+    /**
+     * Time and greatest odd id seen by recent refreshes, oldest first, accessed only by refresh thread.
+     * Refresh reads odds newer than the last id seen before rescan window.
+     */
+    private final Deque<long[]> recentCursors = new ArrayDeque<>();
+    
+    private ScheduledExecutorService scheduler;
+    
+    @PostConstruct
+    public void warmUp() {
+        // odds published before current odd pointers were introduced have no pointer
+        putAll(oddRepository.findLatestOfAllBetOptions());
+        putAll(oddRepository.findCurrentOfAllBetOptions());
+        log.debug("loaded latest odds of {} bet options", latestOdds.size());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "odd-cache-refresh"));
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * Returns latest odd of bet option, loads it from database if it's not cached.
+     * @param betOptionId
+     * @return latest odd or empty if bet option has no odds
+     */
+    public Optional<LatestOdd> find(Long betOptionId) {
+        LatestOdd odd = latestOdds.get(betOptionId);
+        return odd != null ? Optional.of(odd) : reload(betOptionId);
+    }
+    
+    /**
+     * Reads latest odd of bet option from database and updates cache.
+     */
+    public Optional<LatestOdd> reload(Long betOptionId) {
+        Optional<Odd> odd = oddRepository.findCurrentByBetOptionId(betOptionId);
+        if (!odd.isPresent()) {
+            odd = oddRepository.findFirstByBetOptionIdOrderByIdDesc(betOptionId);
+        }
+        return odd.map(o -> put(betOptionId, o.getId(), o.getValue()));
+    }
+    
+    /**
+     * Write-through, called after odd is inserted.
+     * @return latest odd of bet option after update
+     */
+    public LatestOdd put(Long betOptionId, Long oddId, BigDecimal value) {
+        LatestOdd odd = new LatestOdd(oddId, value);
+        return latestOdds.merge(betOptionId, odd, (current, updated) -> updated.oddId > current.oddId ? updated : current);
+    }
+    
+    private void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            recentCursors.addLast(new long[] { now, lastSeenOddId });
+            // keep the newest cursor taken before rescan window as the first one
+            while (recentCursors.size() > 1 && secondCursorTime() <= now - rescanWindowMs) {
+                recentCursors.pollFirst();
+            }
+            putAll(oddRepository.findAllNewerThan(recentCursors.peekFirst()[1]));
+        } catch (RuntimeException e) {
+            log.error("could not refresh latest odds", e);
+        }
+    }
+    
+    private long secondCursorTime() {
+        Iterator<long[]> cursors = recentCursors.iterator();
+        cursors.next();
+        return cursors.next()[0];
+    }
+    
+    /**
+     * @param rows - bet option id, odd id, value
+     */
+    private void putAll(List<Object[]> rows) {
+        long maxId = lastSeenOddId;
+        for (Object[] row : rows) {
+            Long oddId = (Long) row[1];
+            put((Long) row[0], oddId, (BigDecimal) row[2]);
+            maxId = Math.max(maxId, oddId);
+        }
+        lastSeenOddId = maxId;
+    }
+    
+    public static final class LatestOdd {
+        
+        private final long oddId;
+        private final BigDecimal value;
+        
+        private LatestOdd(long oddId, BigDecimal value) {
+            this.oddId = oddId;
+            this.value = value;
+        }
+
+        public long getOddId() {
+            return oddId;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+}
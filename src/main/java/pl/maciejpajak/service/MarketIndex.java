@@ -0,0 +1,505 @@
+package pl.maciejpajak.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.domain.bet.Bet;
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.engine.GameIdCache;
+import pl.maciejpajak.event.MarketsChangedEvent;
+import pl.maciejpajak.exception.BaseEntityNotFoundException;
+import pl.maciejpajak.repository.BetOptionForPlacement;
+import pl.maciejpajak.repository.BetOptionRepository;
+import pl.maciejpajak.repository.BetRepository;
+import pl.maciejpajak.repository.MarketRow;
+
+/**
+ * Visible bets of games with their options, grouped by {@link BetLastCall}. Games which are upcoming or live are 
+ * loaded on startup, other games when they are first read.
+ * <p>
+ * Bets are closed by whole groups ({@link #closeBets(Long, BetLastCall)}): group is marked closed in memory at once 
+ * and betable flags are updated in database by background writer. Closed groups are kept apart from loaded bets,
+ * so reload of game before the write does not reopen them. Groups of live and ended games are also treated as closed 
+ * by game status, which covers writes lost on failure or shutdown.
+ * <p>
+ * Game is reloaded when its bet, bet option or game itself is changed through Hibernate on this node, except for
+ * publication of odds, which changes only current odd of bet option. Changes made 
+ * by other nodes become visible after {@code market-index.ttl-ms}. At most {@code market-index.max-games} games are held.
+ * 
+ * @author mac
+ *
+ */
+@Service
+@ManagedResource(objectName = "pl.maciejpajak:type=MarketIndex", description = "Market index statistics")
+public class MarketIndex {
+    
+    private static final Logger log = LoggerFactory.getLogger(MarketIndex.class);
+    
+    private static final int LOAD_CHUNK_SIZE = 500;
+    
+    @Autowired
+    private BetRepository betRepository;
+    
+    @Autowired
+    private BetOptionRepository betOptionRepository;
+    
+    @Autowired
+    private GameIdCache gameIdCache;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+    
+    @Value("${market-index.ttl-ms:60000}")
+    private long ttlMs;
+    
+    @Value("${market-index.max-games:10000}")
+    private int maxGames;
+    
+    private final Map<Long, GameMarkets> games = new ConcurrentHashMap<>();
+    
+    private final Map<Long, Long> gamesIdsByBetId = new ConcurrentHashMap<>();
+    
+    private final Map<Long, Long> gamesIdsByBetOptionId = new ConcurrentHashMap<>();
+    
+    /**
+     * Groups closed in memory, by game id. Consulted on every read, so closing does not wait for reload.
+     */
+    private final Map<Long, Set<BetLastCall>> closedGroups = new ConcurrentHashMap<>();
+    
+    /**
+     * Incremented by every invalidation, game loaded while it changed is not stored.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder pendingWrites = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    
+    private ExecutorService writer;
+    
+    private TransactionTemplate transactionTemplate;
+    
+    private PersistenceUnitUtil persistenceUnitUtil;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        persistenceUnitUtil = entityManagerFactory.getPersistenceUnitUtil();
+        writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "market-index-writer"));
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        MarketChangeListener listener = new MarketChangeListener();
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+        
+        List<Long> gamesIds = betRepository.findAllGamesIdsWithBetsByGameStatusIn(EnumSet.of(GameStatus.UPCOMING, GameStatus.LIVE));
+        gamesIds = gamesIds.subList(0, Math.min(gamesIds.size(), maxGames));
+        for (int i = 0; i < gamesIds.size(); i += LOAD_CHUNK_SIZE) {
+            load(gamesIds.subList(i, Math.min(gamesIds.size(), i + LOAD_CHUNK_SIZE)));
+        }
+        log.debug("loaded markets of {} games", games.size());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * @return visible bets of game which are betable, with their visible options
+     * @throws BaseEntityNotFoundException if visible game with {@code gameId} does not exist
+     */
+    public List<MarketBet> findAllBetable(Long gameId) {
+        if (!games.containsKey(gameId) && !gameIdCache.contains(gameId)) {
+            throw new BaseEntityNotFoundException(gameId);
+        }
+        GameMarkets game = getGame(gameId);
+        Set<BetLastCall> closed = closedGroupsOf(gameId);
+        return game.bets.stream().filter(b -> game.isBetable(b, closed)).collect(Collectors.toList());
+    }
+    
+    /**
+     * Finds visible bet options for coupon placement. Odds are not held in index, they are read from {@link LatestOddCache}.
+     * 
+     * @return bet options by id, ids of missing or invisible bet options are absent
+     */
+    public Map<Long, BetOptionForPlacement> findAllForPlacement(Collection<Long> betOptionsIds) {
+        Set<Long> missing = betOptionsIds.stream().filter(id -> !gamesIdsByBetOptionId.containsKey(id)).collect(Collectors.toSet());
+        Map<Long, GameMarkets> loaded = missing.isEmpty() 
+                ? Collections.emptyMap() : load(betOptionRepository.findAllGamesIdsByIdIn(missing));
+        Map<Long, BetOptionForPlacement> result = new HashMap<>();
+        for (Long betOptionId : betOptionsIds) {
+            Long gameId = gamesIdsByBetOptionId.get(betOptionId);
+            if (gameId == null) {
+                continue;
+            }
+            GameMarkets game = loaded.containsKey(gameId) ? loaded.get(gameId) : getGame(gameId);
+            MarketBet bet = game.betsByBetOptionId.get(betOptionId);
+            if (bet != null) {
+                Set<BetLastCall> closed = closedGroupsOf(gameId);
+                result.put(betOptionId, new Placement(betOptionId, bet.getId(), game.isBetable(bet, closed), game.getStatus(closed)));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Closes bets of group at once, betable flags are updated in database asynchronously.
+     */
+    public void closeBets(Long gameId, BetLastCall lastCall) {
+        closedGroups.computeIfAbsent(gameId, id -> ConcurrentHashMap.newKeySet()).add(lastCall);
+        applicationEventPublisher.publishEvent(new MarketsChangedEvent(this, gameId));
+        pendingWrites.increment();
+        writer.execute(() -> persistClosing(gameId, lastCall));
+    }
+    
+    public void invalidate(Long gameId) {
+        invalidations.incrementAndGet();
+        games.remove(gameId);
+        applicationEventPublisher.publishEvent(new MarketsChangedEvent(this, gameId));
+    }
+    
+    private void persistClosing(Long gameId, BetLastCall lastCall) {
+        try {
+            transactionTemplate.execute(status -> betRepository.updateBetableFlag(false, gameId, lastCall, true));
+            // closing of last group was persisted after earlier ones, database is up to date
+            if (lastCall == BetLastCall.GAME_END) {
+                closedGroups.remove(gameId);
+                // game might have been read before the write
+                invalidate(gameId);
+            }
+        } catch (RuntimeException e) {
+            failedWrites.increment();
+            log.error("could not close bets of game with id = " + gameId + " and last call = " + lastCall, e);
+        } finally {
+            pendingWrites.decrement();
+        }
+    }
+    
+    private Set<BetLastCall> closedGroupsOf(Long gameId) {
+        return closedGroups.getOrDefault(gameId, Collections.emptySet());
+    }
+    
+    private GameMarkets getGame(Long gameId) {
+        GameMarkets game = games.get(gameId);
+        if (game != null && System.currentTimeMillis() - game.loadedAt <= ttlMs) {
+            return game;
+        }
+        return load(Collections.singleton(gameId)).get(gameId);
+    }
+    
+    private Map<Long, GameMarkets> load(Collection<Long> gamesIds) {
+        if (gamesIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        loads.increment();
+        long invalidationsBefore = invalidations.get();
+        long loadedAt = System.currentTimeMillis();
+        Map<Long, GameStatus> statuses = new HashMap<>();
+        Map<Long, Map<Long, MarketBet>> bets = new HashMap<>();
+        for (MarketRow row : betRepository.findAllMarketRows(gamesIds)) {
+            statuses.put(row.getGameId(), row.getGameStatus());
+            MarketBet bet = bets.computeIfAbsent(row.getGameId(), id -> new LinkedHashMap<>())
+                    .computeIfAbsent(row.getBetId(), id -> new MarketBet(row));
+            if (row.getBetOptionId() != null) {
+                BetOption betOption = new BetOption();
+                betOption.setId(row.getBetOptionId());
+                betOption.setDescription(row.getBetOptionDescription());
+                betOption.setStatus(row.getBetOptionStatus());
+                bet.betOptions.add(betOption);
+            }
+        }
+        
+        Map<Long, GameMarkets> loaded = new HashMap<>();
+        for (Long gameId : gamesIds) {
+            Collection<MarketBet> gameBets = bets.getOrDefault(gameId, Collections.emptyMap()).values();
+            loaded.put(gameId, new GameMarkets(statuses.get(gameId), gameBets, loadedAt));
+        }
+        
+        if (games.size() + loaded.size() > maxGames) {
+            games.clear();
+            gamesIdsByBetId.clear();
+            gamesIdsByBetOptionId.clear();
+        }
+        loaded.forEach((gameId, game) -> {
+            game.bets.forEach(b -> gamesIdsByBetId.put(b.getId(), gameId));
+            game.betsByBetOptionId.keySet().forEach(id -> gamesIdsByBetOptionId.put(id, gameId));
+            games.put(gameId, game);
+        });
+        // games might have been read before concurrent change
+        if (invalidations.get() != invalidationsBefore) {
+            games.keySet().removeAll(gamesIds);
+        }
+        return loaded;
+    }
+    
+    @ManagedAttribute(description = "Number of games held")
+    public int getGames() {
+        return games.size();
+    }
+    
+    @ManagedAttribute(description = "Number of game loads")
+    public long getLoads() {
+        return loads.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of closings not yet written to database")
+    public long getPendingWrites() {
+        return pendingWrites.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of closings which could not be written to database")
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+    
+    /**
+     * Visible bet with its visible options, options must not be modified.
+     */
+    public static final class MarketBet {
+        
+        private final Long id;
+        private final String description;
+        private final BetLastCall lastCall;
+        private final boolean betable;
+        private final List<BetOption> betOptions = new ArrayList<>();
+        
+        private MarketBet(MarketRow row) {
+            this.id = row.getBetId();
+            this.description = row.getDescription();
+            this.lastCall = row.getLastCall();
+            this.betable = row.isBetable();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public BetLastCall getLastCall() {
+            return lastCall;
+        }
+
+        public List<BetOption> getBetOptions() {
+            return Collections.unmodifiableList(betOptions);
+        }
+    }
+    
+    private static final class GameMarkets {
+        
+        private final GameStatus status;
+        private final List<MarketBet> bets;
+        private final Map<Long, MarketBet> betsByBetOptionId = new HashMap<>();
+        private final long loadedAt;
+        
+        private GameMarkets(GameStatus status, Collection<MarketBet> bets, long loadedAt) {
+            this.status = status;
+            this.bets = new ArrayList<>(bets);
+            this.loadedAt = loadedAt;
+            bets.forEach(b -> b.betOptions.forEach(bo -> betsByBetOptionId.put(bo.getId(), b)));
+        }
+        
+        /**
+         * Status read from database may be behind closed groups until game is saved.
+         */
+        private GameStatus getStatus(Set<BetLastCall> closed) {
+            if (closed.contains(BetLastCall.GAME_END)) {
+                return GameStatus.ENDED;
+            }
+            if (closed.contains(BetLastCall.GAME_START) && status == GameStatus.UPCOMING) {
+                return GameStatus.LIVE;
+            }
+            return status;
+        }
+        
+        private boolean isBetable(MarketBet bet, Set<BetLastCall> closed) {
+            if (!bet.betable || bet.lastCall == null) {
+                return bet.betable;
+            }
+            if (closed.contains(bet.lastCall)) {
+                return false;
+            }
+            GameStatus current = getStatus(closed);
+            return !(current == GameStatus.ENDED 
+                    || (current == GameStatus.LIVE && bet.lastCall == BetLastCall.GAME_START));
+        }
+    }
+    
+    private static final class Placement implements BetOptionForPlacement {
+        
+        private final Long betOptionId;
+        private final Long betId;
+        private final boolean betable;
+        private final GameStatus gameStatus;
+        
+        private Placement(Long betOptionId, Long betId, boolean betable, GameStatus gameStatus) {
+            this.betOptionId = betOptionId;
+            this.betId = betId;
+            this.betable = betable;
+            this.gameStatus = gameStatus;
+        }
+
+        @Override
+        public Long getBetOptionId() {
+            return betOptionId;
+        }
+
+        @Override
+        public Long getBetId() {
+            return betId;
+        }
+
+        @Override
+        public boolean isBetable() {
+            return betable;
+        }
+
+        @Override
+        public GameStatus getGameStatus() {
+            return gameStatus;
+        }
+    }
+    
+    /**
+     * Reloads game after commit of transaction which changed it, its bet or bet option.
+     */
+    private final class MarketChangeListener 
+            implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+        private static final long serialVersionUID = 1L;
+        
+        private final Set<Class<?>> entities = new HashSet<>(Arrays.asList(Game.class, Bet.class, BetOption.class));
+        
+        /**
+         * Properties of bet option written by odd publication.
+         */
+        private final Set<String> oddProperties = new HashSet<>(Arrays.asList("currentOdd", "oddVersion"));
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            // odds are not held in index, publication of odd does not change markets
+            if (event.getEntity() instanceof BetOption && onlyOddChanged(event)) {
+                return;
+            }
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            onChange(event.getEntity());
+        }
+
+        @Override
+        public void onPostInsertCommitFailed(PostInsertEvent event) {
+        }
+
+        @Override
+        public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        }
+
+        @Override
+        public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return entities.contains(persister.getMappedClass());
+        }
+        
+        private boolean onlyOddChanged(PostUpdateEvent event) {
+            int[] dirty = event.getDirtyProperties();
+            if (dirty == null || dirty.length == 0) {
+                return false;
+            }
+            String[] names = event.getPersister().getPropertyNames();
+            for (int i : dirty) {
+                if (!oddProperties.contains(names[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void onChange(Object entity) {
+            Long gameId = null;
+            // associations may be uninitialized proxies, their ids are read without loading them
+            if (entity instanceof Game) {
+                gameId = ((Game) entity).getId();
+            } else if (entity instanceof Bet && ((Bet) entity).getGame() != null) {
+                gameId = (Long) persistenceUnitUtil.getIdentifier(((Bet) entity).getGame());
+            } else if (entity instanceof BetOption && ((BetOption) entity).getBet() != null) {
+                gameId = gamesIdsByBetId.get(persistenceUnitUtil.getIdentifier(((BetOption) entity).getBet()));
+            }
+            if (gameId != null) {
+                invalidate(gameId);
+            }
+        }
+        
+    }
+
+}
@@ -0,0 +1,301 @@
+package pl.maciejpajak.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import pl.maciejpajak.domain.notification.Notification;
+import pl.maciejpajak.repository.NotificationRepository;
+
+/**
+ * Server-sent event streams of user notifications, keyed by user id. One user may hold several connections.
+ * <p>
+ * Every connection has bounded buffer ({@code notification.stream.buffer-size}) drained by shared sender threads.
+ * Connection which falls behind is closed rather than slowing down publishers; client reconnects with
+ * {@code Last-Event-ID} and gets missed notifications from database, at most {@code notification.stream.catch-up-limit}
+ * newest ones. Notification id is used as event id. Notification whose transaction commits after
+ * a notification with greater id was already sent is still delivered live, but not on reconnect.
+ * <p>
+ * Live notifications are published only by {@code NotificationWriter} of this node. Notifications written by other 
+ * nodes (e.g. by settlement running there) are not pushed to users connected here, they are sent on reconnect.
+ * 
+ * @author mac
+ *
+ */
+@Service
+@ManagedResource(objectName = "pl.maciejpajak:type=NotificationStreams", description = "Notification streams statistics")
+public class NotificationStreamRegistry {
+    
+    private static final Logger log = LoggerFactory.getLogger(NotificationStreamRegistry.class);
+    
+    private static final String EVENT_NAME = "notification";
+    
+    /**
+     * How long after creation notification may still be published live, see {@code NotificationWriter}.
+     */
+    private static final Duration IN_FLIGHT_WINDOW = Duration.ofMinutes(1);
+    
+    @Autowired
+    private NotificationRepository notificationRepository;
+    
+    @Value("${notification.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+    
+    @Value("${notification.stream.buffer-size:64}")
+    private int bufferSize;
+    
+    @Value("${notification.stream.sender-threads:4}")
+    private int senderThreads;
+    
+    @Value("${notification.stream.heartbeat-interval-ms:25000}")
+    private long heartbeatIntervalMs;
+    
+    @Value("${notification.stream.catch-up-limit:100}")
+    private int catchUpLimit;
+    
+    private final Map<Long, Set<Connection>> connections = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger connectionsCount = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    
+    private ScheduledThreadPoolExecutor sender;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        sender = new ScheduledThreadPoolExecutor(senderThreads, 
+                r -> new Thread(r, "notification-stream-" + threadNumber.incrementAndGet()));
+        sender.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        connections.values().forEach(set -> set.forEach(c -> c.emitter.complete()));
+    }
+    
+    /**
+     * Opens notification stream of user. Notifications after {@code lastId} are sent first,
+     * when {@code lastId} is null unread notifications are sent; in both cases at most {@code catchUpLimit} newest ones.
+     * @param userId
+     * @param lastId id of last notification received by client, may be null
+     * @return emitter to be returned from controller
+     */
+    public SseEmitter subscribe(Long userId, Long lastId) {
+        SseEmitter emitter = newEmitter();
+        Connection connection = new Connection(userId, emitter, bufferSize);
+        emitter.onCompletion(() -> unregister(connection));
+        emitter.onTimeout(() -> unregister(connection));
+        // draining stays blocked until catch up is sent, live notifications wait in buffer
+        connection.draining.set(true);
+        connections.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+        connectionsCount.incrementAndGet();
+        try {
+            sender.execute(() -> catchUp(connection, lastId));
+        } catch (RejectedExecutionException e) {
+            emitter.complete();
+        }
+        log.debug("user (id = {}) subscribed to notifications, last id = {}", userId, lastId);
+        return emitter;
+    }
+    
+    /**
+     * Pushes persisted notification to connected user. Never blocks.
+     * @param userId
+     * @param notification notification with id assigned
+     */
+    public void publish(Long userId, Notification notification) {
+        Set<Connection> userConnections = connections.get(userId);
+        if (userConnections == null) {
+            return;
+        }
+        for (Connection connection : userConnections) {
+            if (connection.buffer.offer(notification)) {
+                scheduleDrain(connection);
+            } else {
+                overflows.increment();
+                log.debug("notification stream of user (id = {}) fell behind, closing", connection.userId);
+                close(connection);
+            }
+        }
+    }
+    
+    private void catchUp(Connection connection, Long lastId) {
+        try {
+            PageRequest newest = new PageRequest(0, catchUpLimit);
+            List<Notification> missed = new ArrayList<>(lastId == null
+                    ? notificationRepository.findAllByUserIdAndReadOrderByIdDesc(connection.userId, false, newest)
+                    : notificationRepository.findAllByUserIdAndIdGreaterThanOrderByIdDesc(connection.userId, lastId, newest));
+            Collections.reverse(missed);
+            // older notifications cannot be waiting for publication anymore, their ids are not kept
+            LocalDateTime recent = LocalDateTime.now().minus(IN_FLIGHT_WINDOW);
+            for (Notification notification : missed) {
+                send(connection, notification);
+                if (notification.getCreated() == null || notification.getCreated().isAfter(recent)) {
+                    connection.caughtUpIds.put(notification.getId(), notification.getCreated() == null ? LocalDateTime.now() : notification.getCreated());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("could not send missed notifications to user (id = {})", connection.userId, e);
+            close(connection);
+            return;
+        }
+        drain(connection);
+    }
+    
+    private void scheduleDrain(Connection connection) {
+        if (connection.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(connection));
+            } catch (RejectedExecutionException e) {
+                connection.draining.set(false);
+            }
+        }
+    }
+    
+    /**
+     * Runs with {@code draining} flag set, so only one thread sends to connection at a time.
+     */
+    private void drain(Connection connection) {
+        try {
+            pruneCaughtUpIds(connection);
+            Notification notification;
+            while (!connection.closed && (notification = connection.buffer.poll()) != null) {
+                // notifications already sent during catch up are skipped, ids are not compared as they may commit out of order
+                if (connection.caughtUpIds.remove(notification.getId()) == null) {
+                    send(connection, notification);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("could not send notification to user (id = {})", connection.userId, e);
+            close(connection);
+        } finally {
+            connection.draining.set(false);
+        }
+        if (!connection.closed && !connection.buffer.isEmpty()) {
+            scheduleDrain(connection);
+        }
+    }
+    
+    /**
+     * Forgets ids sent during catch up which can not arrive anymore, e.g. of notifications written by other nodes.
+     */
+    private void pruneCaughtUpIds(Connection connection) {
+        LocalDateTime expired = LocalDateTime.now().minus(IN_FLIGHT_WINDOW);
+        connection.caughtUpIds.values().removeIf(created -> created.isBefore(expired));
+    }
+    
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+    
+    private void send(Connection connection, Notification notification) throws IOException {
+        connection.emitter.send(SseEmitter.event()
+                .id(String.valueOf(notification.getId()))
+                .name(EVENT_NAME)
+                .data(notification, MediaType.APPLICATION_JSON));
+        delivered.increment();
+    }
+    
+    private void heartbeat() {
+        connections.values().forEach(set -> set.forEach(connection -> {
+            if (connection.buffer.isEmpty()) {
+                try {
+                    connection.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | RuntimeException e) {
+                    close(connection);
+                }
+            }
+        }));
+    }
+    
+    private void close(Connection connection) {
+        if (!connection.closed) {
+            connection.closed = true;
+            unregister(connection);
+            connection.emitter.complete();
+        }
+    }
+    
+    private void unregister(Connection connection) {
+        connection.closed = true;
+        Set<Connection> userConnections = connections.get(connection.userId);
+        if (userConnections != null && userConnections.remove(connection)) {
+            connectionsCount.decrementAndGet();
+            connections.computeIfPresent(connection.userId, (id, set) -> set.isEmpty() ? null : set);
+        }
+    }
+    
+    @ManagedAttribute(description = "Number of open notification streams")
+    public int getConnections() {
+        return connectionsCount.get();
+    }
+    
+    @ManagedAttribute(description = "Number of users with open notification streams")
+    public int getConnectedUsers() {
+        return connections.size();
+    }
+    
+    @ManagedAttribute(description = "Number of sent notifications")
+    public long getDelivered() {
+        return delivered.sum();
+    }
+    
+    @ManagedAttribute(description = "Number of streams closed because buffer was full")
+    public long getOverflows() {
+        return overflows.sum();
+    }
+    
+    private static final class Connection {
+        
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Notification> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        
+        private volatile boolean closed;
+        
+        /**
+         * Ids sent during catch up which may still arrive in buffer, with creation times, 
+         * accessed only by thread holding {@code draining} flag.
+         */
+        private final Map<Long, LocalDateTime> caughtUpIds = new HashMap<>();
+        
+        private Connection(Long userId, SseEmitter emitter, int bufferSize) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+}
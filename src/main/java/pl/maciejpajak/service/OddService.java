@@ -0,0 +1,147 @@
+package pl.maciejpajak.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import javax.transaction.Transactional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.bet.Odd;
+import pl.maciejpajak.dto.OddPublishDto;
+import pl.maciejpajak.dto.OddShowDto;
+import pl.maciejpajak.engine.LiveGameFeed;
+import pl.maciejpajak.exception.BaseEntityNotFoundException;
+import pl.maciejpajak.exception.BetClosedException;
+import pl.maciejpajak.repository.BetOptionForPlacement;
+import pl.maciejpajak.repository.BetOptionRepository;
+import pl.maciejpajak.repository.GameRepository;
+import pl.maciejpajak.repository.OddRepository;
+
+/**
+ * Publishes new odds. Every odd gets version, greater by one than previous odd of the same bet option,
+ * and becomes current odd of its bet option.
+ * 
+ * @author mac
+ *
+ */
+@Service
+public class OddService {
+    
+    private static final String INSERT_ODD_SQL = 
+            "INSERT INTO odd (bet_option_id, game_id, created, value, version) "
+            + "SELECT bo.id, b.game_id, ?, ?, ? FROM bet_option bo JOIN bet b ON b.id = bo.bet_id WHERE bo.id = ?";
+    
+    private static final String BET_CLOSED_PATTERN = "Bet with id %s is already closed, its odds cannot be published.";
+    
+    @Autowired
+    private BetOptionRepository betOptionRepository;
+    
+    @Autowired
+    private OddRepository oddRepository;
+    
+    @Autowired
+    private GameRepository gameRepository;
+    
+    @Autowired
+    private LatestOddCache latestOddCache;
+    
+    @Autowired
+    private MarketIndex marketIndex;
+    
+    @Autowired
+    private LiveGameFeed liveGameFeed;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Publishes batch of odds in one transaction. Bet options are locked for the time of publication, 
+     * odds are inserted in JDBC batch. If bet option appears in batch more than once, its last odd becomes current.
+     * @param odds
+     * @return current odds of published bet options
+     * @throws BaseEntityNotFoundException if any bet option does not exist, nothing is published then
+     * @throws BetClosedException if bet of any bet option is no longer betable, nothing is published then
+     */
+    @Transactional
+    public List<OddShowDto> publish(List<OddPublishDto> odds) {
+        Set<Long> betOptionsIds = odds.stream().map(OddPublishDto::getBetOptionId).collect(Collectors.toSet());
+        Map<Long, BetOption> betOptions = betOptionRepository.findAllForOddsPublication(betOptionsIds).stream()
+                .collect(Collectors.toMap(BetOption::getId, Function.identity()));
+        for (Long id : betOptionsIds) {
+            if (!betOptions.containsKey(id)) {
+                throw new BaseEntityNotFoundException(id);
+            }
+        }
+        // closed groups are held in market index before they are written to database
+        for (BetOptionForPlacement bo : marketIndex.findAllForPlacement(betOptionsIds).values()) {
+            if (!bo.isBetable()) {
+                throw new BetClosedException(String.format(BET_CLOSED_PATTERN, bo.getBetId()));
+            }
+        }
+        
+        Timestamp created = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Long> versions = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>(odds.size());
+        for (OddPublishDto o : odds) {
+            long version = versions.merge(o.getBetOptionId(), betOptions.get(o.getBetOptionId()).getOddVersion() + 1, (v, init) -> v + 1);
+            rows.add(new Object[] { created, o.getValue(), version, o.getBetOptionId() });
+        }
+        jdbcTemplate.batchUpdate(INSERT_ODD_SQL, rows);
+        
+        // bet options are not changed yet, so query returns exactly odds inserted above
+        List<OddShowDto> current = new ArrayList<>(betOptions.size());
+        Map<Long, Long> gamesIds = new HashMap<>();
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (Odd odd : oddRepository.findAllCurrentForPublication(betOptionsIds)) {
+            BetOption bo = betOptions.get(odd.getBetOption().getId());
+            bo.setOddVersion(odd.getVersion());
+            bo.setCurrentOdd(odd);
+            // game is lazy reference, its id is read without loading it
+            gamesIds.put(bo.getId(), (Long) persistenceUnitUtil.getIdentifier(odd.getGame()));
+            OddShowDto dto = new OddShowDto();
+            dto.setId(odd.getId());
+            dto.setValue(odd.getValue());
+            dto.setVersion(odd.getVersion());
+            current.add(dto);
+        }
+        
+        Map<Long, Long> competitionsIds = new HashMap<>();
+        for (Object[] row : gameRepository.findAllCompetitionIdsByIdIn(new HashSet<>(gamesIds.values()))) {
+            competitionsIds.put((Long) row[0], (Long) row[1]);
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                for (BetOption bo : betOptions.values()) {
+                    Odd odd = bo.getCurrentOdd();
+                    Long gameId = gamesIds.get(bo.getId());
+                    latestOddCache.put(bo.getId(), odd.getId(), odd.getValue());
+                    liveGameFeed.publishOdd(gameId, competitionsIds.getOrDefault(gameId, 0L), bo.getId(), odd.getId(), odd.getValue(), odd.getVersion());
+                }
+            }
+        });
+        return current;
+    }
+
+}
@@ -0,0 +1,56 @@
+package pl.maciejpajak.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects WIN transactions of settlement run, committed at once by {@link TransactionService#commitPayouts(PayoutJournal)}.
+ * Every payout has key unique for coupon and user, so payouts of retried run are not paid twice.
+ * 
+ * @author mac
+ *
+ */
+public class PayoutJournal {
+    
+    private final List<Payout> payouts = new ArrayList<>();
+    
+    public void add(Long couponId, Long userId, BigDecimal amount) {
+        payouts.add(new Payout(couponId, userId, amount));
+    }
+    
+    public List<Payout> getPayouts() {
+        return Collections.unmodifiableList(payouts);
+    }
+    
+    public boolean isEmpty() {
+        return payouts.isEmpty();
+    }
+    
+    public static final class Payout {
+        
+        private final Long userId;
+        private final BigDecimal amount;
+        private final String key;
+        
+        private Payout(Long couponId, Long userId, BigDecimal amount) {
+            this.userId = userId;
+            this.amount = amount;
+            this.key = "WIN:" + couponId + ":" + userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+}
@@ -1,13 +1,22 @@
 package pl.maciejpajak.service;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import pl.maciejpajak.domain.user.Transaction;
@@ -15,7 +24,7 @@ import pl.maciejpajak.domain.user.TransactionType;
 import pl.maciejpajak.domain.user.User;
 import pl.maciejpajak.exception.InsufficientFundsException;
 import pl.maciejpajak.repository.TransactionRepository;
-import pl.maciejpajak.repository.UserRepository;
+import pl.maciejpajak.service.PayoutJournal.Payout;
 
 @Service
 @Transactional
@@ -23,39 +32,82 @@ public class TransactionService {
     
     private static final Logger log = LoggerFactory.getLogger(TransactionService.class);
     
+    private static final String INSERT_PAYOUT_SQL = 
+            "INSERT INTO transactions (visible, owner_id, operation_time, amount, type, payout_key, balance_pending) VALUES (true, ?, ?, ?, ?, ?, ?)";
+    
+    private static final int KEYS_QUERY_CHUNK_SIZE = 1000;
+    
     private final TransactionRepository transactionRepository;
-    private final UserRepository userRepository;
+    private final Wallet wallet;
+    private final JdbcTemplate jdbcTemplate;
     
     @Autowired
-    public TransactionService(TransactionRepository transactionRepository, UserRepository userRepository) {
+    public TransactionService(TransactionRepository transactionRepository, Wallet wallet, JdbcTemplate jdbcTemplate) {
         super();
         this.transactionRepository = transactionRepository;
-        this.userRepository = userRepository;
+        this.wallet = wallet;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Changes balance of {@code user} in {@link Wallet} and saves transaction. User entity is not modified,
+     * its balance is maintained by wallet.
+     * @throws InsufficientFundsException if user has not enough funds
+     */
     public Transaction createTransaction(BigDecimal amount, User user, TransactionType type) {
-        
-        if(user.getBalance().add(type.addSign(amount)).compareTo(BigDecimal.ZERO) < 0) {
-            throw new InsufficientFundsException();
-        }
+        BigDecimal signedAmount = Wallet.toAmount(Wallet.toCents(type.addSign(amount)));
+        wallet.apply(user.getId(), Wallet.toCents(signedAmount));
         
         Transaction transaction = 
                 Transaction.builder()
-                    .amount(type.addSign(amount))
+                    .amount(signedAmount)
                     .operationTime(LocalDateTime.now())
                     .owner(user)
                     .visible(true)
                     .type(type)
+                    .balancePending(wallet.isWriteBehind())
                     .build();
-        log.debug("amount: {}", amount);
         log.debug("creating transaction: {}", transaction);
-        log.debug("amount: {}", transaction.getAmount());
-        // save transaction
-        transactionRepository.saveAndFlush(transaction);
-        // set user balance
-        user.setBalance(user.getBalance().add(type.addSign(amount)));
-        userRepository.saveAndFlush(user);
-        return transaction;
+        return transactionRepository.save(transaction);
+    }
+    
+    /**
+     * Pays out all payouts from {@code journal}: inserts WIN transactions in JDBC batches
+     * and changes balance of every user once, by sum of his payouts. Payouts whose key already exists are skipped.
+     * @param journal
+     */
+    public void commitPayouts(PayoutJournal journal) {
+        Set<String> existingKeys = new HashSet<>();
+        List<String> keys = journal.getPayouts().stream().map(Payout::getKey).collect(Collectors.toList());
+        for (int i = 0 ; i < keys.size() ; i += KEYS_QUERY_CHUNK_SIZE) {
+            existingKeys.addAll(transactionRepository.findAllPayoutKeysIn(keys.subList(i, Math.min(i + KEYS_QUERY_CHUNK_SIZE, keys.size()))));
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, Long> userDeltas = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (Payout p : journal.getPayouts()) {
+            // existing keys are also added, so duplicate within journal is skipped
+            if (!existingKeys.add(p.getKey())) {
+                log.debug("skipping payout {}, already paid", p.getKey());
+                continue;
+            }
+            long cents = Wallet.toCents(p.getAmount());
+            userDeltas.merge(p.getUserId(), cents, Long::sum);
+            // type is mapped as ordinal, see Transaction.type
+            rows.add(new Object[] { p.getUserId(), now, Wallet.toAmount(cents), TransactionType.WIN.ordinal(), p.getKey(), wallet.isWriteBehind() });
+        }
+        jdbcTemplate.batchUpdate(INSERT_PAYOUT_SQL, rows);
+        userDeltas.forEach(wallet::apply);
+        log.debug("paid out {} payouts to {} users", rows.size(), userDeltas.size());
+    }
+    
+    /**
+     * @param userId
+     * @return current balance of user
+     */
+    public BigDecimal getBalance(Long userId) {
+        return Wallet.toAmount(wallet.getBalance(userId));
     }
 
 }
@@ -0,0 +1,51 @@
+package pl.maciejpajak.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import pl.maciejpajak.exception.InsufficientFundsException;
+
+/**
+ * Keeps users' balances, amounts are in cents.
+ * 
+ * @author mac
+ *
+ */
+public interface Wallet {
+
+    /**
+     * Changes balance of user by {@code amountCents}. Debit is applied atomically with funds check.
+     * When called within transaction, change becomes permanent when transaction is committed.
+     * @param userId
+     * @param amountCents - negative for debit
+     * @throws InsufficientFundsException if debit exceeds balance
+     */
+    void apply(Long userId, long amountCents);
+    
+    /**
+     * @param userId
+     * @return current balance in cents
+     */
+    long getBalance(Long userId);
+    
+    /**
+     * @return true if changes are written to {@code users.balance} after transaction commits,
+     * transactions have to be saved with {@code balancePending} set then
+     */
+    default boolean isWriteBehind() {
+        return false;
+    }
+    
+    /**
+     * @param amount - may be null, treated as zero
+     * @return amount in cents, rounded half up
+     */
+    static long toCents(BigDecimal amount) {
+        return amount == null ? 0L : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+}
@@ -0,0 +1,95 @@
+package pl.maciejpajak.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.service.JsonSnapshot;
+
+public class JsonSnapshotResponsesTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Test
+    public void toResponse_GivenMatchingIfNoneMatch_ShouldReturnNotModifiedWithoutBody() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.singletonList("football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, "\"other\", W/" + snapshot.getEtag(), null);
+        // then
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(snapshot.getEtag(), response.getHeaders().getETag());
+        assertNull(response.getBody());
+    }
+    
+    @Test
+    public void toResponse_GivenLargeBodyAndGzipAccepted_ShouldReturnGzippedBody() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.nCopies(500, "football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, "\"stale\"", "gzip, deflate");
+        // then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(snapshot.getGzippedEtag(), response.getHeaders().getETag());
+        assertArrayEquals(snapshot.getGzippedBody(), response.getBody());
+    }
+    
+    @Test
+    public void toResponse_GivenEtagOfPlainBodyAndGzipAccepted_ShouldReturnGzippedBody() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.nCopies(500, "football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, snapshot.getEtag(), "gzip");
+        // then
+        assertNotEquals(snapshot.getEtag(), snapshot.getGzippedEtag());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(snapshot.getGzippedEtag(), response.getHeaders().getETag());
+        assertArrayEquals(snapshot.getGzippedBody(), response.getBody());
+    }
+    
+    @Test
+    public void toResponse_GivenEtagOfGzippedBodyAndGzipAccepted_ShouldReturnNotModified() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.nCopies(500, "football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, snapshot.getGzippedEtag(), "gzip");
+        // then
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(snapshot.getGzippedEtag(), response.getHeaders().getETag());
+    }
+    
+    @Test
+    public void toResponse_GivenEtagOfGzippedBodyAndGzipNotAccepted_ShouldReturnPlainBody() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.nCopies(500, "football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, snapshot.getGzippedEtag(), null);
+        // then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(snapshot.getEtag(), response.getHeaders().getETag());
+        assertArrayEquals(snapshot.getBody(), response.getBody());
+    }
+    
+    @Test
+    public void toResponse_GivenSmallBody_ShouldReturnPlainBody() {
+        // given
+        JsonSnapshot snapshot = JsonSnapshot.of(objectMapper, Collections.singletonList("football"));
+        // when
+        ResponseEntity<byte[]> response = JsonSnapshotResponses.toResponse(snapshot, null, "gzip");
+        // then
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("[\"football\"]", new String(response.getBody()));
+    }
+
+}
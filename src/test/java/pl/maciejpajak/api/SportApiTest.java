@@ -21,7 +21,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import pl.maciejpajak.domain.game.Sport;
-import pl.maciejpajak.repository.SportRepository;
+import pl.maciejpajak.service.CatalogCache;
 
 @RunWith(SpringRunner.class)
 public class SportApiTest {
@@ -31,11 +31,11 @@ public class SportApiTest {
     private SportApi sportApi;
     
     @Mock
-    private SportRepository sportRepository;
+    private CatalogCache catalogCache;
 
     @Before
     public void setUp() {
-        sportApi = new SportApi(sportRepository);
+        sportApi = new SportApi(catalogCache);
         mockMvc = MockMvcBuilders.standaloneSetup(sportApi).build();
     }
 
@@ -53,7 +53,7 @@ public class SportApiTest {
         second.setVisible(true);
         
         // when
-        when(sportRepository.findAllByVisible(true)).thenReturn(Arrays.asList(first, second));
+        when(catalogCache.getSports()).thenReturn(Arrays.asList(first, second));
         
         // then
         mockMvc.perform(get("/sports/all"))
@@ -0,0 +1,135 @@
+package pl.maciejpajak.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.domain.offers.BidAmountBonus;
+import pl.maciejpajak.repository.BidAmountBonusRepository;
+
+/**
+ * Data is committed, so query cache is not bypassed because of uncommitted changes.
+ * Statistics are shared by contexts cached between tests, so changes of counts are checked.
+ *
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(HibernateCacheStatistics.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class HibernateCacheStatisticsTest {
+
+    private static final String BONUS_REGION = BidAmountBonus.class.getName();
+
+    @Autowired
+    private HibernateCacheStatistics hibernateCacheStatistics;
+
+    @Autowired
+    private BidAmountBonusRepository bidAmountBonusRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> bonusesIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        saveBonus(BigDecimal.valueOf(100));
+    }
+
+    @After
+    public void tearDown() {
+        // removed through JPA, so cached entities and query results are invalidated
+        transactionTemplate.execute(status -> {
+            bonusesIds.forEach(id -> entityManager.remove(entityManager.find(BidAmountBonus.class, id)));
+            return null;
+        });
+    }
+
+    @Test
+    public void getQueryCacheCounts_GivenCacheableQueryRunTwice_ShouldCountPutAndHit() {
+        // given
+        long puts = hibernateCacheStatistics.getQueryCachePutCount();
+        long hits = hibernateCacheStatistics.getQueryCacheHitCount();
+        // when
+        bidAmountBonusRepository.findAllByVisible(true);
+        bidAmountBonusRepository.findAllByVisible(true);
+        // then
+        assertEquals(puts + 1, hibernateCacheStatistics.getQueryCachePutCount());
+        assertEquals(hits + 1, hibernateCacheStatistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void getQueryCacheMissCount_GivenTableChangedAfterQueryWasCached_ShouldCountMiss() {
+        // given
+        bidAmountBonusRepository.findAllByVisible(true);
+        long misses = hibernateCacheStatistics.getQueryCacheMissCount();
+        saveBonus(BigDecimal.valueOf(200));
+        // when
+        int found = bidAmountBonusRepository.findAllByVisible(true).size();
+        // then
+        assertEquals(misses + 1, hibernateCacheStatistics.getQueryCacheMissCount());
+        assertTrue(found >= 2);
+    }
+
+    @Test
+    public void getSecondLevelCacheHitCount_GivenCachedEntityReadInNewSession_ShouldCountHit() {
+        // given
+        transactionTemplate.execute(status -> entityManager.find(BidAmountBonus.class, bonusesIds.get(0)));
+        long hits = hibernateCacheStatistics.getSecondLevelCacheHitCount();
+        // when
+        transactionTemplate.execute(status -> entityManager.find(BidAmountBonus.class, bonusesIds.get(0)));
+        // then
+        assertEquals(hits + 1, hibernateCacheStatistics.getSecondLevelCacheHitCount());
+        assertTrue(hibernateCacheStatistics.getRegions().containsKey(BONUS_REGION));
+    }
+
+    @Test
+    public void clear_GivenCountedQueries_ShouldResetCounts() {
+        // given
+        bidAmountBonusRepository.findAllByVisible(true);
+        // when
+        hibernateCacheStatistics.clear();
+        // then
+        assertEquals(0, hibernateCacheStatistics.getQueryCachePutCount());
+        assertEquals(0, hibernateCacheStatistics.getQueryCacheHitCount());
+        assertEquals(0, hibernateCacheStatistics.getQueryCacheMissCount());
+    }
+
+    private void saveBonus(BigDecimal minimalBid) {
+        transactionTemplate.execute(status -> {
+            BidAmountBonus bonus = new BidAmountBonus();
+            bonus.setMinimalBid(minimalBid);
+            bonus.setRelativeRevenuBonus(BigDecimal.valueOf(0.1));
+            entityManager.persist(bonus);
+            bonusesIds.add(bonus.getId());
+            return null;
+        });
+    }
+
+}
@@ -0,0 +1,139 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import pl.maciejpajak.domain.util.EventType;
+import pl.maciejpajak.dto.EventDto;
+import pl.maciejpajak.event.GameEvent;
+import pl.maciejpajak.repository.EventRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EventProcessorTest {
+
+    @InjectMocks
+    private EventProcessor eventProcessor;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisherMock;
+
+    @Mock
+    private JdbcTemplate jdbcTemplateMock;
+
+    @Mock
+    private GameIdCache gameIdCacheMock;
+
+    @Mock
+    private LiveGameStateStore liveGameStateStoreMock;
+
+    @Mock
+    private PlatformTransactionManager transactionManagerMock;
+
+    @Mock
+    private EventRepository eventRepositoryMock;
+
+    private GameEventSequencer sequencer;
+
+    @Before
+    public void setUp() {
+        sequencer = new GameEventSequencer();
+        ReflectionTestUtils.setField(sequencer, "eventRepository", eventRepositoryMock);
+        ReflectionTestUtils.setField(sequencer, "lanesCount", 1);
+        ReflectionTestUtils.setField(sequencer, "laneQueueCapacity", 10);
+        sequencer.init();
+        ReflectionTestUtils.setField(eventProcessor, "gameEventSequencer", sequencer);
+        eventProcessor.init();
+        when(gameIdCacheMock.contains(anyLong())).thenReturn(true);
+        when(eventRepositoryMock.findMaxSequenceByGameId(anyLong())).thenReturn(Optional.empty());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sequencer.shutdown();
+    }
+
+    @Test
+    public void processAll_GivenFailingHandler_ShouldRollBackAndFailAndAcceptEventsAgain() throws Exception {
+        // given
+        List<EventType> handled = new ArrayList<>();
+        doAnswer(invocation -> {
+            EventDto event = ((GameEvent) invocation.getArguments()[0]).getEventDto();
+            handled.add(event.getEventType());
+            if (event.getEventType() == EventType.GAME_END && handled.size() < 3) {
+                throw new IllegalStateException("handler failed");
+            }
+            return null;
+        }).when(applicationEventPublisherMock).publishEvent(any(GameEvent.class));
+        List<EventDto> events = Arrays.asList(event(1L, 5L, EventType.PARTY_ONE_SCORED), event(1L, 6L, EventType.GAME_END));
+        // when
+        boolean failed = false;
+        try {
+            eventProcessor.processAll(events).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            failed = e.getCause() instanceof IllegalStateException;
+        }
+        // then
+        assertTrue(failed);
+        verify(transactionManagerMock).rollback(any());
+        verify(transactionManagerMock, never()).commit(any());
+        verify(liveGameStateStoreMock).rebuild(1L);
+
+        // when sent again
+        eventProcessor.processAll(events).get(10, TimeUnit.SECONDS);
+        // then
+        assertEquals(Arrays.asList(EventType.PARTY_ONE_SCORED, EventType.GAME_END, EventType.PARTY_ONE_SCORED, EventType.GAME_END), handled);
+        verify(transactionManagerMock).commit(any());
+        assertEquals(0, sequencer.getDuplicates());
+    }
+
+    @Test
+    public void processAll_GivenHandledEvents_ShouldSaveAndHandleInOneTransaction() throws Exception {
+        // given
+        List<EventDto> events = Arrays.asList(event(1L, 1L, EventType.GAME_START), event(2L, 1L, EventType.GAME_START));
+        // when
+        eventProcessor.processAll(events).get(10, TimeUnit.SECONDS);
+        // then
+        verify(transactionManagerMock).getTransaction(any(TransactionDefinition.class));
+        verify(transactionManagerMock).commit(any());
+        verify(applicationEventPublisherMock, times(2)).publishEvent(any(GameEvent.class));
+        verify(liveGameStateStoreMock, never()).rebuild(anyLong());
+    }
+
+    private static EventDto event(Long gameId, Long sequence, EventType eventType) {
+        EventDto event = new EventDto();
+        event.setGameId(gameId);
+        event.setSequence(sequence);
+        event.setEventType(eventType);
+        event.setTime(LocalDateTime.now());
+        return event;
+    }
+
+}
@@ -0,0 +1,137 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import pl.maciejpajak.domain.util.EventType;
+import pl.maciejpajak.dto.EventDto;
+import pl.maciejpajak.repository.EventRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GameEventSequencerTest {
+
+    @InjectMocks
+    private GameEventSequencer sequencer;
+
+    @Mock
+    private EventRepository eventRepositoryMock;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(sequencer, "lanesCount", 2);
+        ReflectionTestUtils.setField(sequencer, "laneQueueCapacity", 100);
+        when(eventRepositoryMock.findMaxSequenceByGameId(anyLong())).thenReturn(Optional.empty());
+        sequencer.init();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sequencer.shutdown();
+    }
+
+    @Test
+    public void submit_GivenEventsOfManyGames_ShouldProcessEventsOfEachGameInOrder() throws Exception {
+        // given
+        Map<Long, List<Long>> processed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        // when
+        for (long sequence = 1 ; sequence <= 50 ; sequence++) {
+            List<EventDto> batch = new ArrayList<>();
+            for (long gameId = 1 ; gameId <= 5 ; gameId++) {
+                batch.add(event(gameId, sequence, EventType.PARTY_ONE_SCORED));
+            }
+            results.add(sequencer.submit(batch, events -> events.forEach(e ->
+                    processed.computeIfAbsent(e.getGameId(), id -> Collections.synchronizedList(new ArrayList<>())).add(e.getSequence()))));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()])).get(10, TimeUnit.SECONDS);
+        // then
+        assertEquals(5, processed.size());
+        processed.forEach((gameId, sequences) -> {
+            assertEquals(50, sequences.size());
+            for (int i = 0 ; i < sequences.size() ; i++) {
+                assertEquals(Long.valueOf(i + 1), sequences.get(i));
+            }
+        });
+        assertEquals(250, sequencer.getProcessed());
+    }
+
+    @Test
+    public void submit_GivenEventsWithoutSequence_ShouldAssignNextSequences() throws Exception {
+        // given
+        when(eventRepositoryMock.findMaxSequenceByGameId(1L)).thenReturn(Optional.of(7L));
+        List<EventDto> batch = Arrays.asList(event(1L, null, EventType.PARTY_ONE_SCORED), event(1L, null, EventType.PARTY_TWO_SCORED));
+        // when
+        sequencer.submit(batch, events -> {}).get(10, TimeUnit.SECONDS);
+        // then
+        assertEquals(Long.valueOf(8L), batch.get(0).getSequence());
+        assertEquals(Long.valueOf(9L), batch.get(1).getSequence());
+    }
+
+    @Test
+    public void submit_GivenDuplicatedEvents_ShouldDropThem() throws Exception {
+        // given
+        List<EventDto> accepted = Collections.synchronizedList(new ArrayList<>());
+        sequencer.submit(Arrays.asList(event(1L, 1L, EventType.GAME_START), event(1L, 2L, EventType.PARTY_ONE_SCORED)),
+                accepted::addAll).get(10, TimeUnit.SECONDS);
+        // when
+        sequencer.submit(Arrays.asList(event(1L, 2L, EventType.PARTY_ONE_SCORED), event(1L, 3L, EventType.PARTY_ONE_SCORED)),
+                accepted::addAll).get(10, TimeUnit.SECONDS);
+        // then
+        assertEquals(3, accepted.size());
+        assertEquals(Long.valueOf(3L), accepted.get(2).getSequence());
+        assertEquals(1, sequencer.getDuplicates());
+    }
+
+    @Test
+    public void submit_GivenFailingProcessor_ShouldCompleteExceptionallyAndAcceptEventsAgain() throws Exception {
+        // given
+        List<EventDto> accepted = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> failed = sequencer.submit(Collections.singletonList(event(1L, 1L, EventType.GAME_END)), events -> {
+            throw new IllegalStateException("handler failed");
+        });
+        // when
+        boolean failedExceptionally = false;
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            failedExceptionally = e.getCause() instanceof IllegalStateException;
+        }
+        sequencer.submit(Collections.singletonList(event(1L, 1L, EventType.GAME_END)), accepted::addAll).get(10, TimeUnit.SECONDS);
+        // then
+        assertTrue(failedExceptionally);
+        assertEquals(1, accepted.size());
+        assertEquals(0, sequencer.getDuplicates());
+    }
+
+    private static EventDto event(Long gameId, Long sequence, EventType eventType) {
+        EventDto event = new EventDto();
+        event.setGameId(gameId);
+        event.setSequence(sequence);
+        event.setEventType(eventType);
+        event.setValue(1);
+        return event;
+    }
+
+}
@@ -0,0 +1,199 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.domain.util.ScoreType;
+import pl.maciejpajak.exception.BaseEntityNotFoundException;
+
+public class LiveGameFeedTest {
+
+    private static final Long GAME_ID = 1L;
+    private static final Long BET_OPTION_ID = 10L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private GameIdCache gameIdCacheMock;
+
+    private RecordingEmitter emitter;
+
+    private LiveGameFeed feed;
+
+    @Before
+    public void setUp() {
+        gameIdCacheMock = mock(GameIdCache.class);
+        when(gameIdCacheMock.contains(anyLong())).thenReturn(true);
+        emitter = new RecordingEmitter();
+        feed = new LiveGameFeed() {
+            @Override
+            SseEmitter newEmitter() {
+                return emitter;
+            }
+        };
+        ReflectionTestUtils.setField(feed, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(feed, "gameIdCache", gameIdCacheMock);
+        ReflectionTestUtils.setField(feed, "timeoutMs", 60000L);
+        ReflectionTestUtils.setField(feed, "senderThreads", 2);
+        ReflectionTestUtils.setField(feed, "heartbeatIntervalMs", 60000L);
+    }
+
+    @After
+    public void tearDown() {
+        feed.shutdown();
+    }
+
+    @Test(expected = BaseEntityNotFoundException.class)
+    public void subscribeGame_GivenUnknownGame_ShouldThrowException() {
+        // given
+        feed.init();
+        when(gameIdCacheMock.contains(2L)).thenReturn(false);
+        // when
+        feed.subscribeGame(2L);
+    }
+
+    @Test
+    public void subscribeGame_GivenLiveGame_ShouldSendLatestFrameOfEveryKey() throws Exception {
+        // given
+        feed.init();
+        Game game = game();
+        LiveGameState state = new LiveGameState(GAME_ID, ScoreType.TOTAL_POINTS);
+        feed.publishScore(game, state, GameStatus.LIVE, LocalDateTime.now());
+        state.score(true, 2);
+        feed.publishScore(game, state, GameStatus.LIVE, LocalDateTime.now());
+        feed.publishBetsClosed(game, BetLastCall.GAME_START);
+        // when
+        feed.subscribeGame(GAME_ID);
+        // then
+        awaitSent(2);
+        assertEquals(2, emitter.frames.size());
+        JsonNode score = emitter.frames.stream().filter(f -> f.has("gamePartyOneScore")).findFirst().get();
+        assertEquals(2, score.get("gamePartyOneScore").asInt());
+        assertTrue(emitter.frames.stream().anyMatch(f -> f.has("lastCall")));
+    }
+
+    @Test
+    public void publishOdd_GivenSlowSubscriber_ShouldSendOnlyNewestPendingOdd() throws Exception {
+        // given
+        feed.init();
+        feed.subscribeGame(GAME_ID);
+        emitter.blockNextSend();
+        feed.publishOdd(GAME_ID, 0L, BET_OPTION_ID, 1L, BigDecimal.valueOf(1.5), 1L);
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+        // when
+        feed.publishOdd(GAME_ID, 0L, BET_OPTION_ID, 2L, BigDecimal.valueOf(1.6), 2L);
+        feed.publishOdd(GAME_ID, 0L, BET_OPTION_ID, 3L, BigDecimal.valueOf(1.7), 3L);
+        emitter.released.countDown();
+        // then
+        awaitSent(2);
+        assertEquals(Arrays.asList(1L, 3L), emitter.frames.stream().map(f -> f.get("oddId").asLong()).collect(Collectors.toList()));
+        assertEquals(1, feed.getConflated());
+    }
+
+    @Test
+    public void endGame_GivenLiveGame_ShouldNotSendItsFramesToNewSubscribers() throws Exception {
+        // given
+        feed.init();
+        feed.publishBetsClosed(game(), BetLastCall.GAME_START);
+        // when
+        feed.endGame(GAME_ID);
+        feed.publishOdd(GAME_ID, 0L, BET_OPTION_ID, 1L, BigDecimal.valueOf(1.5), 1L);
+        feed.subscribeGame(GAME_ID);
+        // then
+        awaitSent(1);
+        assertTrue(emitter.frames.isEmpty());
+    }
+
+    @Test
+    public void heartbeat_GivenIdleSubscriber_ShouldSendComment() throws Exception {
+        // given
+        ReflectionTestUtils.setField(feed, "heartbeatIntervalMs", 20L);
+        feed.init();
+        // when
+        feed.subscribeGame(GAME_ID);
+        // then
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.heartbeats == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(emitter.heartbeats > 0);
+        assertEquals(1, feed.getSubscribers());
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.frames.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // nothing more is sent
+        Thread.sleep(50);
+    }
+
+    private static Game game() {
+        Game game = new Game();
+        game.setId(GAME_ID);
+        game.setStatus(GameStatus.LIVE);
+        return game;
+    }
+
+    private final class RecordingEmitter extends SseEmitter {
+
+        private final List<JsonNode> frames = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private volatile boolean block;
+        private volatile int heartbeats;
+
+        private void blockNextSend() {
+            block = true;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            for (DataWithMediaType data : builder.build()) {
+                if (MediaType.APPLICATION_JSON.equals(data.getMediaType())) {
+                    frames.add(objectMapper.readTree((String) data.getData()));
+                } else if (data.getData().toString().contains("heartbeat")) {
+                    heartbeats++;
+                }
+            }
+            if (block) {
+                block = false;
+                sending.countDown();
+                try {
+                    released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+}
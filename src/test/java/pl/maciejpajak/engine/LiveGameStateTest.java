@@ -0,0 +1,72 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import pl.maciejpajak.domain.util.GameResult;
+import pl.maciejpajak.domain.util.ScoreType;
+
+public class LiveGameStateTest {
+
+    @Test
+    public void score_GivenTotalPointsGame_ShouldUpdatePartAndGameScore() {
+        // given
+        LiveGameState state = new LiveGameState(1L, ScoreType.TOTAL_POINTS);
+        state.startGame();
+        state.startPart(10L);
+        
+        // when
+        boolean changed = state.score(true, 2);
+        state.score(false, 3);
+        
+        // then
+        assertTrue(changed);
+        assertEquals(2, state.getPartPartyOneScore());
+        assertEquals(3, state.getPartPartyTwoScore());
+        assertEquals(2, state.getGamePartyOneScore());
+        assertEquals(3, state.getGamePartyTwoScore());
+        assertEquals(GameResult.PARTY_TWO_WON, state.getGameResult());
+    }
+    
+    @Test
+    public void endPart_GivenWonPartPointsGame_ShouldGivePointToPartWinner() {
+        // given
+        LiveGameState state = new LiveGameState(1L, ScoreType.WON_PART_POINTS);
+        state.startGame();
+        state.startPart(10L);
+        
+        // when
+        boolean scoreChanged = state.score(true, 25);
+        state.score(false, 20);
+        boolean partEndChanged = state.endPart();
+        state.startPart(11L);
+        
+        // then
+        assertFalse(scoreChanged);
+        assertTrue(partEndChanged);
+        assertEquals(11L, state.getGamePartId());
+        assertEquals(0, state.getPartPartyOneScore());
+        assertEquals(1, state.getGamePartyOneScore());
+        assertEquals(0, state.getGamePartyTwoScore());
+    }
+    
+    @Test
+    public void endPart_GivenDraw_ShouldNotChangeGameScore() {
+        // given
+        LiveGameState state = new LiveGameState(1L, ScoreType.WON_PART_POINTS);
+        state.startPart(10L);
+        state.score(true, 1);
+        state.score(false, 1);
+        
+        // when
+        boolean changed = state.endPart();
+        
+        // then
+        assertFalse(changed);
+        assertEquals(GameResult.DRAW, state.getPartResult());
+    }
+
+}
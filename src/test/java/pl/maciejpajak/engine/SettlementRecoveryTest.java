@@ -0,0 +1,213 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.config.AsyncConfig;
+import pl.maciejpajak.domain.bet.Bet;
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.settlement.SettlementRun;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.domain.util.SettlementPhase;
+import pl.maciejpajak.domain.util.SettlementRunStatus;
+import pl.maciejpajak.engine.condition.WinConditionCompiler;
+import pl.maciejpajak.repository.BetRepository;
+import pl.maciejpajak.repository.SettlementCheckpointRepository;
+import pl.maciejpajak.repository.SettlementRunRepository;
+import pl.maciejpajak.service.TransactionService;
+
+/**
+ * Settlement is interrupted by failure of one partition and resumed by {@link SettlementRecovery},
+ * as it is after restart. Partitions commit their work, so test does not run in transaction.
+ *
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ SettlementRecovery.class, BetResolver.class, BetSettlementWorker.class, SettlementMetrics.class, WinConditionCompiler.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class SettlementRecoveryTest {
+
+    private static final int PARTITIONS_COUNT = 2;
+    private static final String WON_CONDITION = "true && !false";
+    private static final String INVALID_CONDITION = "{game.gameFinalScore.partyOneScore} >";
+
+    @TestConfiguration
+    static class SettlementExecutorConfig {
+
+        @Bean(name = AsyncConfig.SETTLEMENT_EXECUTOR)
+        public ThreadPoolTaskExecutor settlementExecutor() {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(PARTITIONS_COUNT);
+            executor.setMaxPoolSize(PARTITIONS_COUNT);
+            return executor;
+        }
+    }
+
+    @MockBean
+    private TransactionService transactionServiceMock;
+
+    @Autowired
+    private SettlementRecovery settlementRecovery;
+
+    @Autowired
+    private BetResolver betResolver;
+
+    @Autowired
+    private BetRepository betRepository;
+
+    @Autowired
+    private SettlementRunRepository settlementRunRepository;
+
+    @Autowired
+    private SettlementCheckpointRepository settlementCheckpointRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private Game game;
+    private Long betId;
+    private Long validBetOptionId;
+    private Long failingBetOptionId;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        new TransactionTemplate(transactionManager).execute(status -> {
+            game = new Game();
+            game.setStatus(GameStatus.ENDED);
+            entityManager.persist(game);
+            Bet bet = new Bet();
+            bet.setGame(game);
+            bet.setLastCall(BetLastCall.GAME_START);
+            bet.setDescription("winner");
+            entityManager.persist(bet);
+            BetOption valid = betOption(bet, WON_CONDITION);
+            BetOption failing = betOption(bet, INVALID_CONDITION);
+            betId = bet.getId();
+            validBetOptionId = valid.getId();
+            failingBetOptionId = failing.getId();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM settlement_checkpoint WHERE settlement_run_id IN (SELECT id FROM settlement_run WHERE game_id = ?)", game.getId());
+        jdbcTemplate.update("DELETE FROM settlement_run WHERE game_id = ?", game.getId());
+        jdbcTemplate.update("DELETE FROM bet_option WHERE bet_id = ?", betId);
+        jdbcTemplate.update("DELETE FROM bet WHERE id = ?", betId);
+        jdbcTemplate.update("DELETE FROM game WHERE id = ?", game.getId());
+    }
+
+    @Test
+    public void resumeInterruptedRuns_GivenRunInterruptedAfterOnePartition_ShouldSettleOnlyRemainingPartitions() {
+        // given
+        List<List<Long>> partitions = BetResolver.partition(Arrays.asList(validBetOptionId, failingBetOptionId), PARTITIONS_COUNT);
+        assertNotEquals("bet options must fall into different partitions",
+                partitions.get(0).contains(validBetOptionId), partitions.get(0).contains(failingBetOptionId));
+        int validPartition = partitions.get(0).contains(validBetOptionId) ? 0 : 1;
+        boolean interrupted = false;
+        try {
+            betResolver.resolve(game, betRepository.findAllByGameIdAndVisible(game.getId(), true));
+        } catch (CompletionException e) {
+            interrupted = true;
+        }
+        assertTrue(interrupted);
+        SettlementRun run = settlementRunRepository.findTopByGameIdOrderByIdDesc(game.getId()).get();
+        assertEquals(SettlementRunStatus.RUNNING, run.getStatus());
+        assertEquals(Collections.singleton(validPartition),
+                settlementCheckpointRepository.findAllCompletedPartitions(run.getId(), SettlementPhase.BET_OPTIONS));
+        assertEquals(BetOptionStatus.WON.name(), betOptionStatus(validBetOptionId));
+        assertNull(betOptionStatus(failingBetOptionId));
+        // failing bet option is fixed, completed partition would fail now if it was processed again
+        updateWinCondition(failingBetOptionId, WON_CONDITION);
+        updateWinCondition(validBetOptionId, INVALID_CONDITION);
+
+        // when
+        settlementRecovery.resumeInterruptedRuns();
+
+        // then
+        assertEquals(SettlementRunStatus.COMPLETED, settlementRunRepository.findOne(run.getId()).getStatus());
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM settlement_run WHERE game_id = ?", Integer.class, game.getId()));
+        Set<Integer> completed = settlementCheckpointRepository.findAllCompletedPartitions(run.getId(), SettlementPhase.BET_OPTIONS);
+        assertEquals(PARTITIONS_COUNT, completed.size());
+        assertEquals(BetOptionStatus.WON.name(), betOptionStatus(validBetOptionId));
+        assertEquals(BetOptionStatus.WON.name(), betOptionStatus(failingBetOptionId));
+    }
+
+    @Test
+    public void resumeInterruptedRuns_GivenCompletedRun_ShouldNotResumeIt() {
+        // given
+        updateWinCondition(failingBetOptionId, WON_CONDITION);
+        betResolver.resolve(game, betRepository.findAllByGameIdAndVisible(game.getId(), true));
+        updateWinCondition(validBetOptionId, INVALID_CONDITION);
+
+        // when
+        settlementRecovery.resumeInterruptedRuns();
+
+        // then
+        SettlementRun run = settlementRunRepository.findTopByGameIdOrderByIdDesc(game.getId()).get();
+        assertEquals(SettlementRunStatus.COMPLETED, run.getStatus());
+        assertEquals(BetOptionStatus.WON.name(), betOptionStatus(validBetOptionId));
+    }
+
+    private BetOption betOption(Bet bet, String winCondition) {
+        BetOption betOption = new BetOption();
+        betOption.setBet(bet);
+        betOption.setDescription(winCondition);
+        betOption.setWinCondition(winCondition);
+        entityManager.persist(betOption);
+        return betOption;
+    }
+
+    private void updateWinCondition(Long betOptionId, String winCondition) {
+        jdbcTemplate.update("UPDATE bet_option SET win_condition = ? WHERE id = ?", winCondition, betOptionId);
+    }
+
+    private String betOptionStatus(Long betOptionId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM bet_option WHERE id = ?", String.class, betOptionId);
+    }
+
+}
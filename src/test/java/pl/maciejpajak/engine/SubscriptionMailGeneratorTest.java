@@ -0,0 +1,150 @@
+package pl.maciejpajak.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import pl.maciejpajak.repository.CompetitionNewsRepository;
+import pl.maciejpajak.repository.SubscriptionDigestRow;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SubscriptionMailGeneratorTest {
+
+    private static final Long MAX_NEWS_ID = 20L;
+
+    @InjectMocks
+    private SubscriptionMailGenerator subscriptionMailGenerator;
+
+    @Mock
+    private CompetitionNewsRepository competitionNewsRepositoryMock;
+
+    @Mock
+    private SubscriptionMailSender subscriptionMailSenderMock;
+
+    @Mock
+    private PlatformTransactionManager transactionManagerMock;
+
+    @Captor
+    private ArgumentCaptor<List<SimpleMailMessage>> messagesCaptor;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(subscriptionMailGenerator, "chunkSize", 2);
+        ReflectionTestUtils.setField(subscriptionMailGenerator, "threads", 1);
+        subscriptionMailGenerator.init();
+        when(competitionNewsRepositoryMock.findMaxUnsentId()).thenReturn(MAX_NEWS_ID);
+    }
+
+    @After
+    public void tearDown() {
+        subscriptionMailGenerator.shutdown();
+    }
+
+    @Test
+    public void sendSubscriptions_GivenRowsOfManyUsers_ShouldSendOneDigestPerUserInChunks() {
+        // given
+        when(competitionNewsRepositoryMock.streamAllUnsentForSubscribers(MAX_NEWS_ID)).thenReturn(Stream.of(
+                row(1L, "first news"), row(1L, "second news"),
+                row(2L, "first news"),
+                row(3L, "first news"), row(3L, "third news")));
+        // when
+        subscriptionMailGenerator.sendSubscriptions();
+        // then
+        verify(subscriptionMailSenderMock, times(2)).sendAll(messagesCaptor.capture());
+        List<List<SimpleMailMessage>> chunks = messagesCaptor.getAllValues();
+        assertEquals(2, chunks.get(0).size());
+        assertArrayEquals(new String[] { "user1@example.com" }, chunks.get(0).get(0).getTo());
+        assertEquals("first news\nsecond news\n", chunks.get(0).get(0).getText());
+        assertArrayEquals(new String[] { "user2@example.com" }, chunks.get(0).get(1).getTo());
+        assertEquals("first news\n", chunks.get(0).get(1).getText());
+        assertEquals(1, chunks.get(1).size());
+        assertArrayEquals(new String[] { "user3@example.com" }, chunks.get(1).get(0).getTo());
+        assertEquals("first news\nthird news\n", chunks.get(1).get(0).getText());
+        verify(competitionNewsRepositoryMock).markSentUpTo(MAX_NEWS_ID);
+    }
+
+    @Test
+    public void sendSubscriptions_GivenUsersFillingExactlyOneChunk_ShouldNotSendEmptyChunk() {
+        // given
+        when(competitionNewsRepositoryMock.streamAllUnsentForSubscribers(MAX_NEWS_ID)).thenReturn(Stream.of(
+                row(1L, "first news"), row(2L, "first news"), row(2L, "second news")));
+        // when
+        subscriptionMailGenerator.sendSubscriptions();
+        // then
+        verify(subscriptionMailSenderMock).sendAll(messagesCaptor.capture());
+        assertEquals(2, messagesCaptor.getValue().size());
+        verify(competitionNewsRepositoryMock).markSentUpTo(MAX_NEWS_ID);
+    }
+
+    @Test
+    public void sendSubscriptions_GivenFailingChunk_ShouldNotMarkNewsAsSent() {
+        // given
+        when(competitionNewsRepositoryMock.streamAllUnsentForSubscribers(MAX_NEWS_ID)).thenReturn(Stream.of(
+                row(1L, "first news"), row(2L, "first news"), row(3L, "first news")));
+        doThrow(new MailSendException("server down")).when(subscriptionMailSenderMock).sendAll(anyListOf(SimpleMailMessage.class));
+        // when
+        subscriptionMailGenerator.sendSubscriptions();
+        // then
+        verify(competitionNewsRepositoryMock, never()).markSentUpTo(anyLong());
+    }
+
+    @Test
+    public void sendSubscriptions_GivenNoUnsentNews_ShouldNotReadSubscribers() {
+        // given
+        when(competitionNewsRepositoryMock.findMaxUnsentId()).thenReturn(null);
+        // when
+        subscriptionMailGenerator.sendSubscriptions();
+        // then
+        verify(competitionNewsRepositoryMock, never()).streamAllUnsentForSubscribers(anyLong());
+        verify(subscriptionMailSenderMock, never()).sendAll(anyListOf(SimpleMailMessage.class));
+    }
+
+    private static SubscriptionDigestRow row(Long userId, String content) {
+        return new SubscriptionDigestRow() {
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getEmail() {
+                return "user" + userId + "@example.com";
+            }
+
+            @Override
+            public Long getNewsId() {
+                return (long) content.hashCode();
+            }
+
+            @Override
+            public String getContent() {
+                return content;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,140 @@
+package pl.maciejpajak.engine.condition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeNotNull;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.game.score.GameScore;
+import pl.maciejpajak.domain.util.GameResult;
+import pl.maciejpajak.exception.InvalidWinConditionException;
+
+/**
+ * Compares compiled win conditions with results of former Nashorn based evaluation.
+ */
+public class WinConditionParityTest {
+    
+    private static final List<String> CONDITIONS = Arrays.asList(
+            "{game.gameFinalScore.partyOneScore} > {game.gameFinalScore.partyTwoScore}",
+            "{game.gameFinalScore.partyOneScore} < {game.gameFinalScore.partyTwoScore}",
+            "{game.gameFinalScore.partyOneScore} == {game.gameFinalScore.partyTwoScore}",
+            "{game.gameFinalScore.partyOneScore} === {game.gameFinalScore.partyTwoScore}",
+            "{game.gameFinalScore.partyOneScore} != {game.gameFinalScore.partyTwoScore}",
+            "{game.gameFinalScore.partyOneScore} >= 2 && {game.gameFinalScore.partyTwoScore} >= 2",
+            "{game.gameFinalScore.partyOneScore} + {game.gameFinalScore.partyTwoScore} > 2.5",
+            "{game.gameFinalScore.partyOneScore} + {game.gameFinalScore.partyTwoScore} <= 2.5",
+            "({game.gameFinalScore.partyOneScore} - {game.gameFinalScore.partyTwoScore}) * 2 >= 2",
+            "{game.gameFinalScore.partyOneScore} % 2 == 0 || !({game.gameFinalScore.partyTwoScore} > 0)",
+            "{game.gameFinalScore.partyOneScore} / 2 > {game.gameFinalScore.partyTwoScore}",
+            "-{game.gameFinalScore.partyOneScore} + 3 > 0",
+            "1 + 2 * 3 == 7 && (1 + 2) * 3 == 9",
+            "true && !false",
+            "'{game.result}' == 'PARTY_ONE_WON'",
+            "\"{game.result}\" !== \"DRAW\"");
+    
+    private static final int[][] SCORES = { {0, 0}, {1, 0}, {0, 1}, {2, 2}, {3, 1}, {1, 4}, {5, 0} };
+    
+    private ScriptEngine nashorn;
+    
+    @Before
+    public void setUp() {
+        nashorn = new ScriptEngineManager().getEngineByName("JavaScript");
+    }
+
+    @Test
+    public void isSatisfiedBy_GivenSupportedConditions_ShouldMatchNashornResults() throws Exception {
+        assumeNotNull(nashorn);
+        for (int[] score : SCORES) {
+            Game game = game(score[0], score[1]);
+            for (String condition : CONDITIONS) {
+                // given
+                boolean expected = evalWithNashorn(condition, game);
+                // when
+                boolean result = WinCondition.compile(condition).isSatisfiedBy(game);
+                // then
+                assertEquals(condition + " for " + score[0] + ":" + score[1], expected, result);
+            }
+        }
+    }
+    
+    @Test
+    public void compile_GivenSameCondition_ShouldReuseCompiledInstance() {
+        WinConditionCompiler compiler = new WinConditionCompiler();
+        assertEquals(compiler.compile(CONDITIONS.get(0)), compiler.compile(CONDITIONS.get(0)));
+        assertEquals(1, compiler.size());
+    }
+    
+    @Test
+    public void forPath_GivenSamePath_ShouldReuseAccessor() {
+        PropertyAccessor first = PropertyAccessorRegistry.forPath(Game.class, "game.gameFinalScore.partyOneScore");
+        PropertyAccessor second = PropertyAccessorRegistry.forPath(Game.class, " game.gameFinalScore.partyOneScore ");
+        assertSame(first, second);
+        assertEquals(ValueType.NUMBER, first.getType());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void isSatisfiedBy_GivenNullOnPath_ShouldThrowException() {
+        WinCondition.compile("{game.gameFinalScore.partyOneScore} > 0").isSatisfiedBy(new Game());
+    }
+    
+    @Test(expected = InvalidWinConditionException.class)
+    public void compile_GivenUnknownPath_ShouldThrowException() {
+        WinCondition.compile("{game.gameFinalScore.partyThreeScore} > 0");
+    }
+    
+    @Test(expected = InvalidWinConditionException.class)
+    public void compile_GivenNonBooleanCondition_ShouldThrowException() {
+        WinCondition.compile("{game.gameFinalScore.partyOneScore} + 1");
+    }
+    
+    @Test(expected = InvalidWinConditionException.class)
+    public void compile_GivenMismatchedTypes_ShouldThrowException() {
+        WinCondition.compile("{game.gameFinalScore.partyOneScore} == 'DRAW'");
+    }
+    
+    @Test(expected = InvalidWinConditionException.class)
+    public void compile_GivenUnbalancedParentheses_ShouldThrowException() {
+        WinCondition.compile("({game.gameFinalScore.partyOneScore} > 1");
+    }
+    
+    private Game game(int partyOneScore, int partyTwoScore) {
+        Game game = new Game();
+        game.setGameFinalScore(new GameScore(null, partyOneScore, partyTwoScore, null, game));
+        int diff = partyOneScore - partyTwoScore;
+        game.setResult(diff > 0 ? GameResult.PARTY_ONE_WON : diff == 0 ? GameResult.DRAW : GameResult.PARTY_TWO_WON);
+        return game;
+    }
+    
+    /**
+     * Former {@code BetResolver} implementation: interpolates placeholders and evaluates script.
+     */
+    private boolean evalWithNashorn(String winCondition, Game game) throws Exception {
+        Matcher m = Pattern.compile("\\{([^\\}]+)\\}").matcher(winCondition);
+        String parsed = winCondition;
+        while (m.find()) {
+            Object o = game;
+            String[] names = m.group(1).split("\\.");
+            for (int j = 0 ; j < names.length - 1 ; j++) {
+                String name = names[j + 1];
+                Method method = Arrays.asList(o.getClass().getMethods()).stream()
+                        .filter(meth -> meth.getName().equalsIgnoreCase("get" + name)).findFirst().get();
+                o = method.invoke(o);
+            }
+            parsed = parsed.replace(m.group(0), o.toString());
+        }
+        return (boolean) nashorn.eval(parsed);
+    }
+
+}
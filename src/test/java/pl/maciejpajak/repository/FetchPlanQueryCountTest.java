@@ -0,0 +1,268 @@
+package pl.maciejpajak.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import pl.maciejpajak.domain.bet.Bet;
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.bet.Odd;
+import pl.maciejpajak.domain.bet.PlacedBet;
+import pl.maciejpajak.domain.coupon.Coupon;
+import pl.maciejpajak.domain.coupon.CouponInvitation;
+import pl.maciejpajak.domain.coupon.GroupCoupon;
+import pl.maciejpajak.domain.coupon.UserCoupon;
+import pl.maciejpajak.domain.game.Competition;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.game.GamePart;
+import pl.maciejpajak.domain.game.PlayingParty;
+import pl.maciejpajak.domain.game.Scope;
+import pl.maciejpajak.domain.game.Sport;
+import pl.maciejpajak.domain.game.score.GameScore;
+import pl.maciejpajak.domain.game.score.PartScore;
+import pl.maciejpajak.domain.user.Transaction;
+import pl.maciejpajak.domain.user.User;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.BetOptionStatus;
+import pl.maciejpajak.domain.util.CouponStatus;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.dto.CouponShowDto;
+import pl.maciejpajak.service.DtoMappers;
+
+/**
+ * Number of SQL statements of every read path, including everything its response is built from.
+ *
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class FetchPlanQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserCouponRepository userCouponRepository;
+
+    @Autowired
+    private GroupCouponRepository groupCouponRepository;
+
+    @Autowired
+    private CouponRepository couponRepository;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private Statistics statistics;
+
+    private User owner;
+    private User invitedUser;
+    private Game game;
+    private List<BetOption> betOptions;
+    private List<Odd> odds;
+
+    @Before
+    public void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        owner = entityManager.persist(User.builder().login("owner").password("password").email("owner@test.pl").visible(true).build());
+        invitedUser = entityManager.persist(User.builder().login("invited").password("password").email("invited@test.pl").visible(true).build());
+
+        Sport sport = new Sport();
+        sport.setName("sport");
+        entityManager.persist(sport);
+        Scope scope = new Scope();
+        scope.setName("scope");
+        entityManager.persist(scope);
+        Competition competition = entityManager.persist(Competition.builder().name("competition").sport(sport).scope(scope).visible(true).build());
+        PlayingParty partyOne = entityManager.persist(PlayingParty.builder().name("one").description("one").sport(sport).visible(true).build());
+        PlayingParty partyTwo = entityManager.persist(PlayingParty.builder().name("two").description("two").sport(sport).visible(true).build());
+
+        game = new Game();
+        game.setCompetition(competition);
+        game.setPartyOne(partyOne);
+        game.setPartyTwo(partyTwo);
+        game.setStatus(GameStatus.ENDED);
+        entityManager.persist(game);
+        for (int i = 0 ; i < 2 ; i++) {
+            GamePart gamePart = entityManager.persist(GamePart.builder().game(game).visible(true).status(GameStatus.ENDED)
+                    .startTime(LocalDateTime.now()).duration(Duration.ofMinutes(45)).build());
+            gamePart.setFinalPartScore(entityManager.persist(new PartScore(null, 1, 0, LocalDateTime.now(), gamePart)));
+        }
+        game.setGameFinalScore(entityManager.persist(new GameScore(null, 2, 0, LocalDateTime.now(), game)));
+
+        Bet bet = new Bet();
+        bet.setGame(game);
+        bet.setVisible(true);
+        bet.setLastCall(BetLastCall.GAME_START);
+        entityManager.persist(bet);
+        betOptions = Arrays.asList(betOption(bet, BetOptionStatus.WON), betOption(bet, BetOptionStatus.LOST));
+        odds = betOptions.stream().map(this::odd).collect(Collectors.toList());
+    }
+
+    @Test
+    public void findDistinctByOwnerIdAndVisible_GivenCouponsWithBets_ShouldReadCouponListInOneQuery() {
+        // given
+        userCoupon(CouponStatus.PLACED);
+        userCoupon(CouponStatus.PLACED);
+        startCounting();
+        // when
+        List<CouponShowDto> result = userCouponRepository.findDistinctByOwnerIdAndVisible(owner.getId(), true).stream()
+                .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
+        // then
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getPlacedBets().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findDistinctByOwnerIdOrIntivationsInvitedUserIdAndVisible_GivenGroupCoupon_ShouldReadCouponListInOneQuery() {
+        // given
+        groupCoupon();
+        startCounting();
+        // when
+        List<CouponShowDto> result = groupCouponRepository
+                .findDistinctByOwnerIdOrIntivationsInvitedUserIdAndVisible(invitedUser.getId(), invitedUser.getId(), true).stream()
+                .map(DtoMappers.convertUserCouponToDto).collect(Collectors.toList());
+        // then
+        assertEquals(1, result.size());
+        assertEquals(1, result.get(0).getInvitations().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findOneByIdAndVisible_GivenUserCoupon_ShouldReadCouponDetailInOneQuery() {
+        // given
+        UserCoupon coupon = userCoupon(CouponStatus.PLACED);
+        startCounting();
+        // when
+        Optional<CouponShowDto> result = userCouponRepository.findOneByIdAndVisible(coupon.getId(), true)
+                .map(DtoMappers.convertUserCouponToDto);
+        // then
+        assertEquals(2, result.get().getPlacedBets().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findAllForSettlement_GivenPlacedCoupons_ShouldReadEverythingSettlementUsesInOneQuery() {
+        // given
+        List<Long> ids = Arrays.asList(userCoupon(CouponStatus.PLACED).getId(), userCoupon(CouponStatus.PLACED).getId());
+        startCounting();
+        // when
+        BigDecimal total = BigDecimal.ZERO;
+        for (Coupon c : couponRepository.findAllForSettlement(ids, CouponStatus.PLACED)) {
+            total = total.add(c.getOwnerTransaction().getAmount());
+            for (PlacedBet pb : c.getPlacedBets()) {
+                pb.getBetOption().getStatus();
+                total = total.add(pb.getOdd().getValue());
+            }
+            c.getOwner().getLogin();
+        }
+        // then
+        assertEquals(0, new BigDecimal("-12.00").compareTo(total));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findDistinctByVisible_GivenGameWithParts_ShouldReadGameListInOneQuery() throws JsonProcessingException {
+        // given
+        startCounting();
+        // when
+        Collection<Game> result = gameRepository.findDistinctByVisible(true);
+        objectMapper.writeValueAsString(result);
+        // then
+        assertEquals(1, result.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findOneByIdAndVisible_GivenGame_ShouldReadLiveGameInOneQuery() {
+        // given
+        startCounting();
+        // when
+        Game result = gameRepository.findOneByIdAndVisible(game.getId(), true).get();
+        Long competitionId = result.getCompetition().getId();
+        // then
+        assertEquals(game.getCompetition().getId(), competitionId);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private void startCounting() {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    private BetOption betOption(Bet bet, BetOptionStatus status) {
+        BetOption betOption = new BetOption();
+        betOption.setBet(bet);
+        betOption.setVisible(true);
+        betOption.setDescription(status.name());
+        betOption.setStatus(status);
+        return entityManager.persist(betOption);
+    }
+
+    private Odd odd(BetOption betOption) {
+        Odd odd = new Odd();
+        odd.setBetOption(betOption);
+        odd.setGame(game);
+        odd.setCreated(LocalDateTime.now());
+        odd.setValue(new BigDecimal("2.00"));
+        return entityManager.persist(odd);
+    }
+
+    private Transaction transaction(User user) {
+        return entityManager.persist(Transaction.builder().owner(user).operationTime(LocalDateTime.now())
+                .amount(new BigDecimal("-10.00")).visible(true).build());
+    }
+
+    private HashSet<PlacedBet> placedBets() {
+        HashSet<PlacedBet> placedBets = new HashSet<>();
+        for (int i = 0 ; i < betOptions.size() ; i++) {
+            placedBets.add(PlacedBet.builder().visible(true).betOption(betOptions.get(i)).odd(odds.get(i)).build());
+        }
+        return placedBets;
+    }
+
+    private UserCoupon userCoupon(CouponStatus status) {
+        UserCoupon coupon = UserCoupon.builder().visible(true).created(LocalDateTime.now()).owner(owner)
+                .ownerTransaction(transaction(owner)).status(status).value(BigDecimal.TEN).placedBets(placedBets()).build();
+        coupon.getPlacedBets().forEach(pb -> pb.setCoupon(coupon));
+        return entityManager.persist(coupon);
+    }
+
+    private GroupCoupon groupCoupon() {
+        GroupCoupon coupon = GroupCoupon.builder().visible(true).created(LocalDateTime.now()).owner(owner)
+                .ownerTransaction(transaction(owner)).status(CouponStatus.PLACED).value(BigDecimal.TEN).placedBets(placedBets()).build();
+        coupon.getPlacedBets().forEach(pb -> pb.setCoupon(coupon));
+        coupon.setIntivations(new HashSet<>(Arrays.asList(CouponInvitation.builder().visible(true).groupCoupon(coupon)
+                .invitedUser(invitedUser).betTransaction(transaction(invitedUser)).build())));
+        return entityManager.persist(coupon);
+    }
+
+}
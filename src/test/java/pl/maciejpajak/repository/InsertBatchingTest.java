@@ -0,0 +1,68 @@
+package pl.maciejpajak.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import pl.maciejpajak.domain.bet.PlacedBet;
+import pl.maciejpajak.domain.coupon.UserCoupon;
+import pl.maciejpajak.domain.util.CouponStatus;
+
+/**
+ * Coupons and placed bets get pooled table ids, so Hibernate inserts them in JDBC batches.
+ * Throughput is measured by {@link InsertThroughputBenchmark}.
+ * 
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class InsertBatchingTest {
+    
+    private static final int COUPONS = 100;
+    private static final int BETS_PER_COUPON = 10;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void persist_GivenCouponsWithTenBets_ShouldInsertRowsInJdbcBatches() {
+        // given
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        
+        // when
+        for (int i = 0 ; i < COUPONS ; i++) {
+            Set<PlacedBet> bets = new HashSet<>();
+            UserCoupon coupon = UserCoupon.builder().visible(true).created(LocalDateTime.now())
+                    .status(CouponStatus.PLACED).unsersolvedBetsCount(BETS_PER_COUPON).placedBets(bets).build();
+            for (int j = 0 ; j < BETS_PER_COUPON ; j++) {
+                bets.add(PlacedBet.builder().visible(true).coupon(coupon).build());
+            }
+            entityManager.persist(coupon);
+        }
+        entityManager.flush();
+        long statements = statistics.getPrepareStatementCount();
+        
+        // then
+        assertEquals(Long.valueOf(COUPONS * BETS_PER_COUPON), 
+                entityManager.getEntityManager().createQuery("SELECT COUNT(pb) FROM PlacedBet pb", Long.class).getSingleResult());
+        // one statement per row without batching, one per batch and id block with batches of 50
+        assertTrue("prepared " + statements + " statements", statements < COUPONS * (BETS_PER_COUPON + 1) / 10);
+    }
+
+}
@@ -0,0 +1,182 @@
+package pl.maciejpajak.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import pl.maciejpajak.domain.bet.PlacedBet;
+import pl.maciejpajak.domain.coupon.UserCoupon;
+import pl.maciejpajak.domain.game.Event;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.CouponStatus;
+import pl.maciejpajak.domain.util.EventType;
+
+/**
+ * Insert throughput of coupon placement (AUTO_INCREMENT ids versus pooled table ids with Hibernate batching)
+ * and event ingestion (single row saves versus JDBC batch), measured against MySQL configured in application properties.
+ * Not part of test suite, run with {@code mvn test -Pbenchmark}. Every strategy runs once to warm up before it is measured,
+ * all rows are rolled back.
+ * <p>
+ * AUTO_INCREMENT baseline inserts into temporary tables with plain JDBC, one statement per row and generated key read back,
+ * which is what Hibernate does for {@code IDENTITY} ids, without Hibernate's own overhead.
+ *
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@TestPropertySource(properties = { "spring.jpa.show-sql=false", "logging.level.pl.maciejpajak=INFO" })
+public class InsertThroughputBenchmark {
+    
+    private static final Logger log = LoggerFactory.getLogger(InsertThroughputBenchmark.class);
+    
+    private static final int COUPONS = 500;
+    private static final int BETS_PER_COUPON = 10;
+    private static final int EVENTS = 5000;
+    
+    private static final String INSERT_IDENTITY_COUPON_SQL =
+            "INSERT INTO benchmark_coupon (visible, created, status, unsersolved_bets_count) VALUES (true, ?, ?, ?)";
+    private static final String INSERT_IDENTITY_PLACED_BET_SQL = "INSERT INTO benchmark_placed_bet (visible, coupon_id) VALUES (true, ?)";
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO event (visible, game_id, sequence, event_type, message, value, time) VALUES (true, ?, ?, ?, ?, ?, ?)";
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private EventRepository eventRepository;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    @Before
+    public void setUp() {
+        // temporary tables belong to test transaction's connection and do not commit it
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE IF NOT EXISTS benchmark_coupon (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "visible BIT NOT NULL, created DATETIME, status INT, unsersolved_bets_count INT NOT NULL)");
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE IF NOT EXISTS benchmark_placed_bet (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "visible BIT NOT NULL, coupon_id BIGINT)");
+    }
+    
+    @Test
+    public void couponPlacement() {
+        insertCouponsWithIdentity();
+        long identityElapsed = insertCouponsWithIdentity();
+        insertCouponsWithPooledIds();
+        long pooledElapsed = insertCouponsWithPooledIds();
+    
+        report("coupon placement, AUTO_INCREMENT ids", COUPONS * (BETS_PER_COUPON + 1), identityElapsed);
+        report("coupon placement, pooled ids in batches", COUPONS * (BETS_PER_COUPON + 1), pooledElapsed);
+    }
+    
+    @Test
+    public void eventIngestion() {
+        Game game = entityManager.persist(new Game());
+        saveEvents(game);
+        long singleElapsed = saveEvents(game);
+        insertEvents(game);
+        long batchElapsed = insertEvents(game);
+    
+        report("event ingestion, single saves", EVENTS, singleElapsed);
+        report("event ingestion, JDBC batch", EVENTS, batchElapsed);
+        assertEquals(Long.valueOf(4L * EVENTS), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event WHERE game_id = ?", Long.class, game.getId()));
+    }
+    
+    private long insertCouponsWithIdentity() {
+        long start = System.nanoTime();
+        for (int i = 0 ; i < COUPONS ; i++) {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(INSERT_IDENTITY_COUPON_SQL, Statement.RETURN_GENERATED_KEYS);
+                ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+                ps.setInt(2, CouponStatus.PLACED.ordinal());
+                ps.setInt(3, BETS_PER_COUPON);
+                return ps;
+            }, keyHolder);
+            long couponId = keyHolder.getKey().longValue();
+            for (int j = 0 ; j < BETS_PER_COUPON ; j++) {
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(INSERT_IDENTITY_PLACED_BET_SQL, Statement.RETURN_GENERATED_KEYS);
+                    ps.setLong(1, couponId);
+                    return ps;
+                }, new GeneratedKeyHolder());
+            }
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private long insertCouponsWithPooledIds() {
+        long start = System.nanoTime();
+        for (int i = 0 ; i < COUPONS ; i++) {
+            Set<PlacedBet> bets = new HashSet<>();
+            UserCoupon coupon = UserCoupon.builder().visible(true).created(LocalDateTime.now())
+                    .status(CouponStatus.PLACED).unsersolvedBetsCount(BETS_PER_COUPON).placedBets(bets).build();
+            for (int j = 0 ; j < BETS_PER_COUPON ; j++) {
+                bets.add(PlacedBet.builder().visible(true).coupon(coupon).build());
+            }
+            entityManager.persist(coupon);
+        }
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+        entityManager.clear();
+        return elapsed;
+    }
+    
+    private long saveEvents(Game game) {
+        long start = System.nanoTime();
+        for (int i = 0 ; i < EVENTS ; i++) {
+            eventRepository.save(Event.builder().game(game).sequence((long) i).eventType(EventType.PARTY_ONE_SCORED)
+                    .message("goal").value(1).time(LocalDateTime.now()).visible(true).build());
+        }
+        entityManager.flush();
+        long elapsed = System.nanoTime() - start;
+        entityManager.clear();
+        return elapsed;
+    }
+    
+    private long insertEvents(Game game) {
+        List<Object[]> rows = new ArrayList<>(EVENTS);
+        for (int i = 0 ; i < EVENTS ; i++) {
+            rows.add(new Object[] { game.getId(), (long) i, EventType.PARTY_ONE_SCORED.name(), "goal", 1, Timestamp.valueOf(LocalDateTime.now()) });
+        }
+        long start = System.nanoTime();
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, rows);
+        return System.nanoTime() - start;
+    }
+    
+    private static void report(String name, int rows, long elapsedNanos) {
+        log.info("{}: {} rows in {} ms, {} rows/s", name, rows, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(rows * 1e9 / elapsedNanos));
+    }
+
+}
@@ -24,10 +24,13 @@ public class BetServiceTest {
     
     @Mock
     private BetRepository betRepositoryMock;
+    
+    @Mock
+    private MarketIndex marketIndexMock;
 
     @Before
     public void setUp() throws Exception {
-        betService = new BetService(betRepositoryMock);
+        betService = new BetService(betRepositoryMock, marketIndexMock);
     }
 
     @Test
@@ -0,0 +1,179 @@
+package pl.maciejpajak.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import pl.maciejpajak.domain.coupon.CouponInvitation;
+import pl.maciejpajak.domain.coupon.GroupCoupon;
+import pl.maciejpajak.domain.coupon.UserCoupon;
+import pl.maciejpajak.domain.user.User;
+import pl.maciejpajak.domain.util.CouponStatus;
+import pl.maciejpajak.dto.CouponHistoryPageDto;
+import pl.maciejpajak.dto.CouponInvitationShowDto;
+import pl.maciejpajak.dto.CouponShowDto;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(CouponHistoryService.class)
+public class CouponHistoryServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2018, 3, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CouponHistoryService couponHistoryService;
+
+    private User owner;
+
+    @Before
+    public void setUp() {
+        owner = user("owner");
+    }
+
+    @Test
+    public void findCouponHistory_GivenCouponsCreatedAtTheSameTime_ShouldPageThroughThemByIdWithoutGapsOrRepeats() {
+        // given
+        UserCoupon first = userCoupon(NOW, CouponStatus.PLACED);
+        UserCoupon second = userCoupon(NOW, CouponStatus.PLACED);
+        UserCoupon third = userCoupon(NOW, CouponStatus.PLACED);
+        UserCoupon older = userCoupon(NOW.minusHours(1), CouponStatus.PLACED);
+        // when
+        CouponHistoryPageDto page1 = couponHistoryService.findCouponHistory(owner.getId(), false, null, null, null, null, null, 2);
+        CouponHistoryPageDto page2 = couponHistoryService.findCouponHistory(owner.getId(), false, null, null, null,
+                page1.getNextCreated(), page1.getNextId(), 2);
+        // then
+        assertEquals(Arrays.asList(third.getId(), second.getId()), ids(page1));
+        assertEquals(NOW, page1.getNextCreated());
+        assertEquals(second.getId(), page1.getNextId());
+        assertEquals(Arrays.asList(first.getId(), older.getId()), ids(page2));
+        assertNull(page2.getNextCreated());
+        assertNull(page2.getNextId());
+    }
+
+    @Test
+    public void findCouponHistory_GivenPageSizeEqualToRemainingCoupons_ShouldReturnLastPageWithoutCursor() {
+        // given
+        userCoupon(NOW, CouponStatus.PLACED);
+        userCoupon(NOW, CouponStatus.PLACED);
+        // when
+        CouponHistoryPageDto page = couponHistoryService.findCouponHistory(owner.getId(), false, null, null, null, null, null, 2);
+        // then
+        assertEquals(2, page.getCoupons().size());
+        assertNull(page.getNextCreated());
+        assertNull(page.getNextId());
+    }
+
+    @Test
+    public void findCouponHistory_GivenStatusAndDateFilters_ShouldReturnOnlyMatchingCoupons() {
+        // given
+        UserCoupon won = userCoupon(NOW.minusHours(2), CouponStatus.WON);
+        UserCoupon lost = userCoupon(NOW.minusHours(1), CouponStatus.LOST);
+        userCoupon(NOW.minusHours(1), CouponStatus.PLACED);
+        userCoupon(NOW.minusDays(2), CouponStatus.WON);
+        userCoupon(NOW, CouponStatus.LOST);
+        // when
+        CouponHistoryPageDto page = couponHistoryService.findCouponHistory(owner.getId(), false,
+                Arrays.asList(CouponStatus.WON, CouponStatus.LOST), NOW.minusDays(1), NOW, null, null, null);
+        // then
+        assertEquals(Arrays.asList(lost.getId(), won.getId()), ids(page));
+    }
+
+    @Test
+    public void findCouponHistory_GivenGroupFlag_ShouldReturnOnlyCouponsOfThatKind() {
+        // given
+        UserCoupon individual = userCoupon(NOW, CouponStatus.PLACED);
+        GroupCoupon group = groupCoupon(NOW);
+        // when
+        CouponHistoryPageDto individualPage = couponHistoryService.findCouponHistory(owner.getId(), false, null, null, null, null, null, null);
+        CouponHistoryPageDto groupPage = couponHistoryService.findCouponHistory(owner.getId(), true, null, null, null, null, null, null);
+        // then
+        assertEquals(Collections.singletonList(individual.getId()), ids(individualPage));
+        assertEquals(Collections.singletonList(group.getId()), ids(groupPage));
+    }
+
+    @Test
+    public void findCouponHistory_GivenInvisibleInvitation_ShouldNeitherShowCouponToInvitedUserNorListInvitation() {
+        // given
+        User invited = user("invited");
+        User removed = user("removed");
+        GroupCoupon coupon = groupCoupon(NOW);
+        invitation(coupon, invited, true);
+        invitation(coupon, removed, false);
+        // when
+        CouponHistoryPageDto ownerPage = couponHistoryService.findCouponHistory(owner.getId(), true, null, null, null, null, null, null);
+        CouponHistoryPageDto invitedPage = couponHistoryService.findCouponHistory(invited.getId(), true, null, null, null, null, null, null);
+        CouponHistoryPageDto removedPage = couponHistoryService.findCouponHistory(removed.getId(), true, null, null, null, null, null, null);
+        // then
+        assertEquals(Collections.singletonList(coupon.getId()), ids(ownerPage));
+        assertEquals(Collections.singleton(invited.getId()), ownerPage.getCoupons().get(0).getInvitations().stream()
+                .map(CouponInvitationShowDto::getInvitedUserId).collect(Collectors.toSet()));
+        assertEquals(Collections.singletonList(coupon.getId()), ids(invitedPage));
+        assertTrue(removedPage.getCoupons().isEmpty());
+    }
+
+    private static List<Long> ids(CouponHistoryPageDto page) {
+        return page.getCoupons().stream().map(CouponShowDto::getId).collect(Collectors.toList());
+    }
+
+    private User user(String login) {
+        return entityManager.persist(User.builder()
+                .visible(true)
+                .login(login)
+                .email(login + "@example.com")
+                .password("x")
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+    private UserCoupon userCoupon(LocalDateTime created, CouponStatus status) {
+        return entityManager.persist(UserCoupon.builder()
+                .visible(true)
+                .created(created)
+                .owner(owner)
+                .status(status)
+                .value(BigDecimal.TEN)
+                .placedBets(new HashSet<>())
+                .build());
+    }
+
+    private GroupCoupon groupCoupon(LocalDateTime created) {
+        return entityManager.persist(GroupCoupon.builder()
+                .visible(true)
+                .created(created)
+                .owner(owner)
+                .status(CouponStatus.PENDING)
+                .value(BigDecimal.TEN)
+                .placedBets(new HashSet<>())
+                .intivations(new HashSet<>())
+                .build());
+    }
+
+    private CouponInvitation invitation(GroupCoupon coupon, User user, boolean visible) {
+        return entityManager.persist(CouponInvitation.builder()
+                .groupCoupon(coupon)
+                .invitedUser(user)
+                .visible(visible)
+                .build());
+    }
+
+}
@@ -0,0 +1,100 @@
+package pl.maciejpajak.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import pl.maciejpajak.exception.InsufficientFundsException;
+
+/**
+ * Contention benchmark, 64 threads debiting one account.
+ * 
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class DatabaseWalletContentionTest {
+    
+    private static final long USER_ID = 1000L;
+    private static final int THREADS = 64;
+    private static final int DEBITS_PER_THREAD = 200;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private JdbcTemplate jdbcTemplate;
+    
+    private DatabaseWallet wallet;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        wallet = new DatabaseWallet(jdbcTemplate, 3);
+    }
+    
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", USER_ID);
+    }
+
+    @Test
+    public void apply_Given64ThreadsDebitingOneAccount_ShouldNotLoseUpdatesNorOverdraw() throws Exception {
+        // given
+        // funds for half of debits
+        long initialCents = THREADS * DEBITS_PER_THREAD / 2;
+        jdbcTemplate.update("INSERT INTO users (id, visible, login, password, balance) VALUES (?, true, 'contention', 'x', ?)", 
+                USER_ID, BigDecimal.valueOf(initialCents, 2));
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0 ; i < THREADS ; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0 ; j < DEBITS_PER_THREAD ; j++) {
+                    try {
+                        wallet.apply(USER_ID, -1L);
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+        }
+        
+        // when
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(2, TimeUnit.MINUTES);
+        
+        // then
+        assertEquals(initialCents, succeeded.get());
+        assertEquals(THREADS * DEBITS_PER_THREAD - initialCents, rejected.get());
+        assertEquals(0L, wallet.getBalance(USER_ID));
+    }
+
+}
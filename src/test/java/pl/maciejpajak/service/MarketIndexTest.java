@@ -0,0 +1,214 @@
+package pl.maciejpajak.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import pl.maciejpajak.domain.bet.Bet;
+import pl.maciejpajak.domain.bet.BetOption;
+import pl.maciejpajak.domain.bet.Odd;
+import pl.maciejpajak.domain.game.Game;
+import pl.maciejpajak.domain.util.BetLastCall;
+import pl.maciejpajak.domain.util.GameStatus;
+import pl.maciejpajak.engine.GameIdCache;
+import pl.maciejpajak.exception.BaseEntityNotFoundException;
+import pl.maciejpajak.repository.BetOptionForPlacement;
+import pl.maciejpajak.service.MarketIndex.MarketBet;
+
+/**
+ * Changes are committed, so post-commit listeners of index run as in production.
+ *
+ * @author mac
+ *
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({ MarketIndex.class, GameIdCache.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class MarketIndexTest {
+
+    @Autowired
+    private MarketIndex marketIndex;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Long gameId;
+    private Long betId;
+    private Long betOptionId;
+    private Long oddId;
+
+    @Before
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.execute(status -> {
+            Game game = new Game();
+            game.setStatus(GameStatus.UPCOMING);
+            entityManager.persist(game);
+            Bet bet = new Bet();
+            bet.setGame(game);
+            bet.setBetable(true);
+            bet.setLastCall(BetLastCall.GAME_START);
+            bet.setDescription("winner");
+            entityManager.persist(bet);
+            BetOption betOption = new BetOption();
+            betOption.setBet(bet);
+            betOption.setDescription("party one");
+            entityManager.persist(betOption);
+            Odd odd = new Odd();
+            odd.setBetOption(betOption);
+            odd.setGame(game);
+            odd.setCreated(LocalDateTime.now());
+            odd.setValue(BigDecimal.valueOf(1.5));
+            odd.setVersion(1L);
+            entityManager.persist(odd);
+            betOption.setCurrentOdd(odd);
+            betOption.setOddVersion(1L);
+            gameId = game.getId();
+            betId = bet.getId();
+            betOptionId = betOption.getId();
+            oddId = odd.getId();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("UPDATE bet_option SET current_odd_id = NULL WHERE id = ?", betOptionId);
+        jdbcTemplate.update("DELETE FROM odd WHERE id = ?", oddId);
+        jdbcTemplate.update("DELETE FROM bet_option WHERE id = ?", betOptionId);
+        jdbcTemplate.update("DELETE FROM bet WHERE id = ?", betId);
+        jdbcTemplate.update("DELETE FROM game WHERE id = ?", gameId);
+    }
+
+    @Test
+    public void findAllBetable_GivenUpcomingGame_ShouldReturnBetsWithOptions() {
+        // when
+        List<MarketBet> bets = marketIndex.findAllBetable(gameId);
+        // then
+        assertEquals(1, bets.size());
+        assertEquals(betId, bets.get(0).getId());
+        assertEquals(1, bets.get(0).getBetOptions().size());
+        assertEquals("party one", bets.get(0).getBetOptions().get(0).getDescription());
+    }
+
+    @Test(expected = BaseEntityNotFoundException.class)
+    public void findAllBetable_GivenUnknownGame_ShouldThrowException() {
+        // when
+        marketIndex.findAllBetable(-1L);
+    }
+
+    @Test
+    public void findAllBetable_GivenBetOptionChangeCommitted_ShouldReturnChangedOption() {
+        // given
+        marketIndex.findAllBetable(gameId);
+        // when
+        transactionTemplate.execute(status -> {
+            entityManager.find(BetOption.class, betOptionId).setDescription("changed");
+            return null;
+        });
+        // then
+        assertEquals("changed", marketIndex.findAllBetable(gameId).get(0).getBetOptions().get(0).getDescription());
+    }
+
+    @Test
+    public void findAllBetable_GivenBetChangeCommitted_ShouldNotReturnClosedBet() {
+        // given
+        marketIndex.findAllBetable(gameId);
+        // when
+        transactionTemplate.execute(status -> {
+            entityManager.find(Bet.class, betId).setBetable(false);
+            return null;
+        });
+        // then
+        assertTrue(marketIndex.findAllBetable(gameId).isEmpty());
+    }
+
+    @Test
+    public void findAllBetable_GivenGameStartCommitted_ShouldNotReturnBetsClosedAtGameStart() {
+        // given
+        marketIndex.findAllBetable(gameId);
+        // when
+        transactionTemplate.execute(status -> {
+            entityManager.find(Game.class, gameId).setStatus(GameStatus.LIVE);
+            return null;
+        });
+        // then
+        assertTrue(marketIndex.findAllBetable(gameId).isEmpty());
+    }
+
+    @Test
+    public void findAllBetable_GivenOddPublicationCommitted_ShouldNotReloadGame() {
+        // given
+        marketIndex.findAllBetable(gameId);
+        long loads = marketIndex.getLoads();
+        // when
+        transactionTemplate.execute(status -> {
+            entityManager.find(BetOption.class, betOptionId).setOddVersion(2L);
+            return null;
+        });
+        marketIndex.findAllBetable(gameId);
+        // then
+        assertEquals(loads, marketIndex.getLoads());
+    }
+
+    @Test
+    public void closeBets_GivenGroup_ShouldCloseAtOnceAndWriteBetableFlag() throws Exception {
+        // when
+        marketIndex.closeBets(gameId, BetLastCall.GAME_START);
+        // then
+        assertTrue(marketIndex.findAllBetable(gameId).isEmpty());
+        assertFalse(marketIndex.findAllForPlacement(Arrays.asList(betOptionId)).get(betOptionId).isBetable());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (marketIndex.getPendingWrites() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, marketIndex.getFailedWrites());
+        assertFalse(new JdbcTemplate(dataSource).queryForObject("SELECT betable FROM bet WHERE id = ?", Boolean.class, betId));
+    }
+
+    @Test
+    public void findAllForPlacement_GivenKnownAndUnknownBetOptions_ShouldReturnKnownOnes() {
+        // when
+        Map<Long, BetOptionForPlacement> result = marketIndex.findAllForPlacement(Arrays.asList(betOptionId, -1L));
+        // then
+        assertEquals(1, result.size());
+        BetOptionForPlacement placement = result.get(betOptionId);
+        assertEquals(betId, placement.getBetId());
+        assertTrue(placement.isBetable());
+        assertEquals(GameStatus.UPCOMING, placement.getGameStatus());
+    }
+
+}
@@ -0,0 +1,164 @@
+package pl.maciejpajak.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import pl.maciejpajak.domain.notification.Notification;
+import pl.maciejpajak.repository.NotificationRepository;
+
+public class NotificationStreamRegistryTest {
+
+    private static final Long USER_ID = 1L;
+    private static final int BUFFER_SIZE = 4;
+    private static final int CATCH_UP_LIMIT = 10;
+
+    private NotificationRepository notificationRepositoryMock;
+
+    private RecordingEmitter emitter;
+
+    private NotificationStreamRegistry registry;
+
+    @Before
+    public void setUp() {
+        notificationRepositoryMock = mock(NotificationRepository.class);
+        emitter = new RecordingEmitter();
+        registry = new NotificationStreamRegistry() {
+            @Override
+            SseEmitter newEmitter() {
+                return emitter;
+            }
+        };
+        ReflectionTestUtils.setField(registry, "notificationRepository", notificationRepositoryMock);
+        ReflectionTestUtils.setField(registry, "timeoutMs", 60000L);
+        ReflectionTestUtils.setField(registry, "bufferSize", BUFFER_SIZE);
+        ReflectionTestUtils.setField(registry, "senderThreads", 2);
+        ReflectionTestUtils.setField(registry, "heartbeatIntervalMs", 60000L);
+        ReflectionTestUtils.setField(registry, "catchUpLimit", CATCH_UP_LIMIT);
+        registry.init();
+    }
+
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void subscribe_GivenLastId_ShouldSendMissedNotificationsInOrderBeforeLiveOnes() throws Exception {
+        // given
+        when(notificationRepositoryMock.findAllByUserIdAndIdGreaterThanOrderByIdDesc(eq(USER_ID), eq(1L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(notification(3L), notification(2L)));
+        // when
+        registry.subscribe(USER_ID, 1L);
+        registry.publish(USER_ID, notification(4L));
+        // then
+        awaitSent(3);
+        assertEquals(Arrays.asList(2L, 3L, 4L), emitter.sentIds);
+    }
+
+    @Test
+    public void subscribe_GivenNoLastId_ShouldSendNewestUnreadNotificationsUpToLimit() throws Exception {
+        // given
+        when(notificationRepositoryMock.findAllByUserIdAndReadOrderByIdDesc(eq(USER_ID), eq(false), any(Pageable.class)))
+                .thenReturn(Arrays.asList(notification(8L), notification(7L)));
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        // when
+        registry.subscribe(USER_ID, null);
+        // then
+        awaitSent(2);
+        assertEquals(Arrays.asList(7L, 8L), emitter.sentIds);
+        verify(notificationRepositoryMock).findAllByUserIdAndReadOrderByIdDesc(eq(USER_ID), eq(false), pageable.capture());
+        assertEquals(0, pageable.getValue().getPageNumber());
+        assertEquals(CATCH_UP_LIMIT, pageable.getValue().getPageSize());
+    }
+
+    @Test
+    public void publish_GivenNotificationSentDuringCatchUp_ShouldNotSendItAgain() throws Exception {
+        // given
+        CountDownLatch caughtUp = new CountDownLatch(1);
+        when(notificationRepositoryMock.findAllByUserIdAndIdGreaterThanOrderByIdDesc(eq(USER_ID), eq(4L), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    caughtUp.await(5, TimeUnit.SECONDS);
+                    return Collections.singletonList(notification(5L));
+                });
+        // when
+        registry.subscribe(USER_ID, 4L);
+        // committed before catch up query, published after it
+        registry.publish(USER_ID, notification(5L));
+        registry.publish(USER_ID, notification(6L));
+        caughtUp.countDown();
+        // then
+        awaitSent(2);
+        assertEquals(Arrays.asList(5L, 6L), emitter.sentIds);
+    }
+
+    @Test
+    public void publish_GivenBufferFullWhileCatchingUp_ShouldCloseConnection() throws Exception {
+        // given
+        CountDownLatch caughtUp = new CountDownLatch(1);
+        when(notificationRepositoryMock.findAllByUserIdAndIdGreaterThanOrderByIdDesc(eq(USER_ID), eq(0L), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    caughtUp.await(5, TimeUnit.SECONDS);
+                    return Collections.emptyList();
+                });
+        registry.subscribe(USER_ID, 0L);
+        // when
+        for (long id = 1 ; id <= BUFFER_SIZE + 1 ; id++) {
+            registry.publish(USER_ID, notification(id));
+        }
+        caughtUp.countDown();
+        // then
+        assertEquals(1, registry.getOverflows());
+        assertEquals(0, registry.getConnections());
+        assertEquals(0, registry.getConnectedUsers());
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.sentIds.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // nothing more is sent
+        Thread.sleep(50);
+    }
+
+    private static Notification notification(Long id) {
+        return Notification.builder().id(id).message("message " + id).created(LocalDateTime.now()).build();
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Long> sentIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof Notification) {
+                    sentIds.add(((Notification) data.getData()).getId());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package pl.maciejpajak.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import pl.maciejpajak.domain.user.Transaction;
+import pl.maciejpajak.domain.user.TransactionType;
+import pl.maciejpajak.domain.user.User;
+import pl.maciejpajak.repository.TransactionRepository;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class TransactionServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private Wallet walletMock;
+
+    private TransactionService transactionService;
+
+    private User first;
+    private User second;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        walletMock = mock(Wallet.class);
+        transactionService = new TransactionService(transactionRepository, walletMock, jdbcTemplate);
+        first = user("first");
+        second = user("second");
+    }
+
+    @Test
+    public void commitPayouts_GivenJournalCommittedTwice_ShouldPayOutOnce() {
+        // given
+        PayoutJournal journal = new PayoutJournal();
+        journal.add(1L, first.getId(), new BigDecimal("10.50"));
+        journal.add(2L, first.getId(), new BigDecimal("2.00"));
+        journal.add(2L, second.getId(), new BigDecimal("3.00"));
+        transactionService.commitPayouts(journal);
+        // when
+        transactionService.commitPayouts(journal);
+        // then
+        assertEquals(Integer.valueOf(3), countPayouts());
+        verify(walletMock).apply(first.getId(), 1250L);
+        verify(walletMock).apply(second.getId(), 300L);
+    }
+
+    @Test
+    public void commitPayouts_GivenDuplicatedPayoutInJournal_ShouldPayOutOnce() {
+        // given
+        PayoutJournal journal = new PayoutJournal();
+        journal.add(1L, first.getId(), new BigDecimal("10.00"));
+        journal.add(1L, first.getId(), new BigDecimal("10.00"));
+        // when
+        transactionService.commitPayouts(journal);
+        // then
+        assertEquals(Integer.valueOf(1), countPayouts());
+        verify(walletMock).apply(first.getId(), 1000L);
+    }
+
+    @Test
+    public void commitPayouts_GivenAlreadyPaidPayout_ShouldNotChangeBalance() {
+        // given
+        PayoutJournal paid = new PayoutJournal();
+        paid.add(1L, first.getId(), new BigDecimal("10.00"));
+        transactionService.commitPayouts(paid);
+        PayoutJournal retried = new PayoutJournal();
+        retried.add(1L, first.getId(), new BigDecimal("10.00"));
+        retried.add(3L, second.getId(), new BigDecimal("5.00"));
+        // when
+        transactionService.commitPayouts(retried);
+        // then
+        assertEquals(Integer.valueOf(2), countPayouts());
+        verify(walletMock).apply(first.getId(), 1000L);
+        verify(walletMock).apply(second.getId(), 500L);
+    }
+
+    @Test
+    public void commitPayouts_GivenEmptyJournal_ShouldNotChangeBalances() {
+        // when
+        transactionService.commitPayouts(new PayoutJournal());
+        // then
+        assertEquals(Integer.valueOf(0), countPayouts());
+        verify(walletMock, never()).apply(anyLong(), anyLong());
+    }
+
+    @Test
+    public void commitPayouts_GivenPayout_ShouldWriteTypeReadAsWinByJpa() {
+        // given
+        PayoutJournal journal = new PayoutJournal();
+        journal.add(1L, first.getId(), new BigDecimal("10.00"));
+        // when
+        transactionService.commitPayouts(journal);
+        // then
+        List<Transaction> transactions = transactionRepository.findAll();
+        assertEquals(1, transactions.size());
+        assertEquals(TransactionType.WIN, transactions.get(0).getType());
+        assertEquals("WIN:1:" + first.getId(), transactions.get(0).getPayoutKey());
+        assertEquals(new BigDecimal("10.00"), transactions.get(0).getAmount());
+    }
+
+    private Integer countPayouts() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE payout_key IS NOT NULL", Integer.class);
+    }
+
+    private User user(String login) {
+        return entityManager.persistAndFlush(User.builder()
+                .visible(true)
+                .login(login)
+                .email(login + "@example.com")
+                .password("x")
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+}